@@ -0,0 +1,40 @@
+package org.product.catalog.analyzer.enrollment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.fixture.CatalogGenerator;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Date;
+
+/**
+ * Состояние бенчмарков сериализации: дерево каталога глубины {@code depth} и ширины {@code fanOut},
+ * собранное в памяти без базы данных. Сериализатор собирается {@link Jackson2ObjectMapperBuilder}
+ * с настройками, которые Spring Boot применяет к сериализатору приложения, так что бенчмарк измеряет
+ * ту же конфигурацию модулей и свойств, что и ответы контроллеров.
+ *
+ * @author Stepanenko Stanislav
+ */
+@State(Scope.Benchmark)
+public class CatalogTreeState {
+
+    @Param("3")
+    public int depth;
+
+    @Param("4")
+    public int fanOut;
+
+    public ObjectMapper objectMapper;
+    public Node tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS,
+                        SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+                .build();
+        tree = CatalogGenerator.wide(depth, fanOut).tree(new Date());
+    }
+}
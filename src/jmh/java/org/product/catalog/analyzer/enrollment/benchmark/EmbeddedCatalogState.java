@@ -0,0 +1,69 @@
+package org.product.catalog.analyzer.enrollment.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.fixture.CatalogGenerator;
+import org.product.catalog.analyzer.enrollment.repository.NodeRepositoryImpl;
+import org.product.catalog.analyzer.enrollment.repository.RepositoryMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Состояние бенчмарков, работающих с базой данных: встроенный Postgres с применёнными миграциями,
+ * пул соединений, репозиторий и сгенерированный каталог глубины {@code depth} и ширины {@code fanOut},
+ * сохранённый в базу данных.
+ *
+ * @author Stepanenko Stanislav
+ */
+@State(Scope.Benchmark)
+public class EmbeddedCatalogState {
+
+    @Param("3")
+    public int depth;
+
+    @Param("4")
+    public int fanOut;
+
+    public JdbcTemplate jdbcTemplate;
+    public TransactionTemplate transactionTemplate;
+    public NodeRepositoryImpl nodeRepository;
+    public List<Node> catalog;
+    public UUID rootId;
+
+    private EmbeddedPostgres postgres;
+    private HikariDataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        final HikariConfig config = new HikariConfig();
+        config.setDataSource(postgres.getPostgresDatabase());
+        config.setMaximumPoolSize(4);
+        dataSource = new HikariDataSource(config);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        nodeRepository = new NodeRepositoryImpl(jdbcTemplate, new RepositoryMetrics(new SimpleMeterRegistry()));
+        catalog = CatalogGenerator.wide(depth, fanOut).nodes(new Date());
+        transactionTemplate.executeWithoutResult(status -> nodeRepository.saveAll(catalog));
+        rootId = catalog.get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataSource.close();
+        postgres.close();
+    }
+}
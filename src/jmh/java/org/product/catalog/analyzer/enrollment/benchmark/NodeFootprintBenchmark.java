@@ -0,0 +1,75 @@
+package org.product.catalog.analyzer.enrollment.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.fixture.CatalogGenerator;
+import org.product.catalog.analyzer.enrollment.repository.CompactNode;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк размера узлов каталога в памяти: узлы в виде {@link Node}, прочитанные из базы данных,
+ * против компактного представления {@link CompactNode}. Размер графа объектов измеряется JOL
+ * без учёта названий узлов, общих для обоих представлений, и выводится дополнительными счётчиками
+ * в байтах на узел. Для каталога в миллион узлов: {@code -PjmhDepth=7 -PjmhFanOut=10}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NodeFootprintBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CatalogState {
+
+        @Param("3")
+        public int depth;
+
+        @Param("4")
+        public int fanOut;
+
+        public List<Node> nodes;
+        public double nodeBytes;
+        public double nameBytes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            nodes = CatalogGenerator.wide(depth, fanOut).nodes(new Date())
+                    .stream()
+                    .map(node -> new Node(
+                            node.getId(),
+                            node.getType(),
+                            node.getName(),
+                            node.getParentId(),
+                            node.getParentId(),
+                            node.getPrice(),
+                            new Timestamp(node.getDate().getTime()),
+                            null,
+                            node.getOfferCount(),
+                            node.getSum()))
+                    .toList();
+            nameBytes = GraphLayout.parseInstance(nodes.stream().map(Node::getName).toArray()).totalSize();
+            nodeBytes = GraphLayout.parseInstance(nodes.toArray()).totalSize() - nameBytes;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double nodeBytesPerNode;
+        public double compactBytesPerNode;
+    }
+
+    @Benchmark
+    public Object[] compact(CatalogState state, Footprint footprint) {
+        final Object[] compactNodes = state.nodes.stream().map(CompactNode::of).toArray();
+        final int size = state.nodes.size();
+        footprint.nodeBytesPerNode = state.nodeBytes / size;
+        footprint.compactBytesPerNode = (GraphLayout.parseInstance(compactNodes).totalSize() - state.nameBytes) / size;
+        return compactNodes;
+    }
+}
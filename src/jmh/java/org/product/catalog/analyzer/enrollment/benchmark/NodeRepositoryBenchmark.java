@@ -0,0 +1,60 @@
+package org.product.catalog.analyzer.enrollment.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки методов репозитория на встроенном Postgres.
+ * Сохранение выполняется в транзакции, которая откатывается, так что каталог и история цен
+ * не меняются между вызовами. Сдвиг цены хранится в состоянии потока бенчмарка.
+ *
+ * @author Stepanenko Stanislav
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NodeRepositoryBenchmark {
+
+    private int priceShift;
+
+    @Benchmark
+    public Node findDepthNodeById(EmbeddedCatalogState state) {
+        return state.nodeRepository.findDepthNodeById(state.rootId);
+    }
+
+    @Benchmark
+    public Node findDepthNodeByIdIteratively(EmbeddedCatalogState state) {
+        return state.nodeRepository.findDepthNodeByIdIteratively(state.rootId);
+    }
+
+    @Benchmark
+    public Integer saveAll(EmbeddedCatalogState state) {
+        final int shift = ++priceShift;
+        final Date updateDate = new Date();
+        final List<Node> offers = state.catalog
+                .stream()
+                .filter(node -> NodeType.OFFER.equals(node.getType()))
+                .map(node -> new Node(
+                        node.getId(),
+                        node.getType(),
+                        node.getName(),
+                        node.getParentId(),
+                        node.getParentId(),
+                        node.getPrice() + shift,
+                        updateDate,
+                        null,
+                        0,
+                        0))
+                .toList();
+        return state.transactionTemplate.execute(status -> {
+            final int result = state.nodeRepository.saveAll(offers);
+            status.setRollbackOnly();
+            return result;
+        });
+    }
+}
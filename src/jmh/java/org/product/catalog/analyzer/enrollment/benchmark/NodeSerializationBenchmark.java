@@ -0,0 +1,21 @@
+package org.product.catalog.analyzer.enrollment.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк сериализации дерева каталога в JSON, так как оно возвращается методом получения узла.
+ *
+ * @author Stepanenko Stanislav
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NodeSerializationBenchmark {
+
+    @Benchmark
+    public byte[] writeTree(CatalogTreeState state) throws JsonProcessingException {
+        return state.objectMapper.writeValueAsBytes(state.tree);
+    }
+}
@@ -0,0 +1,110 @@
+package org.product.catalog.analyzer.enrollment.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.product.catalog.analyzer.enrollment.fixture.CatalogGenerator;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк обновления дат предков при импорте всех товаров каталога: по одному запросу на родительскую
+ * категорию, как до объединения, и одним запросом методом {@code updateAllParentCategory(Collection, Date)}.
+ * Каталог формы {@code deep} - цепочка из {@code DEEP_DEPTH} категорий с товарами на каждом уровне,
+ * формы {@code wide} - дерево глубины {@code WIDE_DEPTH} и ширины {@code WIDE_FAN_OUT}.
+ * Количество обновлённых строк выводится счётчиками {@code rows} и {@code imports},
+ * обновления выполняются в транзакции, которая откатывается.
+ *
+ * @author Stepanenko Stanislav
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParentCategoryBenchmark {
+
+    private static final int DEEP_DEPTH = 64;
+    private static final int DEEP_OFFERS = 256;
+    private static final int WIDE_DEPTH = 5;
+    private static final int WIDE_FAN_OUT = 4;
+
+    @Param({"deep", "wide"})
+    public String shape;
+
+    private List<UUID> parentIds;
+
+    @Setup(Level.Trial)
+    public void setUp(EmbeddedCatalogState state) {
+        final CatalogGenerator generator = "deep".equals(shape)
+                ? new CatalogGenerator("chain", DEEP_DEPTH, 1, DEEP_OFFERS, DEEP_DEPTH)
+                : CatalogGenerator.wide(WIDE_DEPTH, WIDE_FAN_OUT);
+        final List<Node> catalog = generator.nodes(new Date());
+        state.transactionTemplate.executeWithoutResult(status -> state.nodeRepository.saveAll(catalog));
+        parentIds = catalog.stream()
+                .filter(node -> NodeType.OFFER.equals(node.getType()))
+                .map(Node::getParentId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    @Benchmark
+    public int perParent(EmbeddedCatalogState state, RowCounter counter) {
+        final Timestamp updateDate = new Timestamp(System.currentTimeMillis());
+        final int rows = state.transactionTemplate.execute(status -> {
+            int result = 0;
+            for (UUID id : parentIds) {
+                result += state.jdbcTemplate.update("""
+                                UPDATE
+                                  node
+                                SET date = ?::timestamp with time zone
+                                WHERE
+                                  id
+                                IN (SELECT unnest(path) FROM node WHERE id = ?::uuid)""",
+                        updateDate,
+                        id);
+            }
+            status.setRollbackOnly();
+            return result;
+        });
+        return counter.add(rows);
+    }
+
+    @Benchmark
+    public int coalesced(EmbeddedCatalogState state, RowCounter counter) {
+        final Date updateDate = new Date();
+        final int rows = state.transactionTemplate.execute(status -> {
+            final int result = state.nodeRepository.updateAllParentCategory(parentIds, updateDate);
+            status.setRollbackOnly();
+            return result;
+        });
+        return counter.add(rows);
+    }
+
+    /**
+     * Счётчики обновлённых строк и выполненных импортов за итерацию,
+     * их отношение - количество строк, обновлённых одним импортом.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RowCounter {
+        public long rows;
+        public long imports;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            imports = 0;
+        }
+
+        int add(int count) {
+            rows += count;
+            imports++;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.product.catalog.analyzer.enrollment.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.product.catalog.analyzer.enrollment.benchmark.EmbeddedCatalogState;
+import org.product.catalog.analyzer.enrollment.validation.exception.ArgumentNotValidException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк проверки импорта всего сгенерированного каталога, уже сохранённого в базе данных.
+ *
+ * @author Stepanenko Stanislav
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NodeServiceBenchmark {
+
+    @Benchmark
+    public int validateImportNodes(EmbeddedCatalogState state) throws ArgumentNotValidException {
+        new NodeServiceImpl(state.nodeRepository).validateImportNodes(state.catalog);
+        return state.catalog.size();
+    }
+}
@@ -2,13 +2,17 @@ package org.product.catalog.analyzer.enrollment;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
 
 /**
  * Основной класс приложения, описывает "входную точку" от куда начинается запуск.
+ * Автоконфигурация R2DBC отключена: пул соединений R2DBC создаётся только в профиле {@code reactive},
+ * а единственным менеджером транзакций остаётся JDBC.
  *
  * @author Stepanenko Stanislav
  */
-@SpringBootApplication
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 public class EnrollmentApplication {
 
 	/**
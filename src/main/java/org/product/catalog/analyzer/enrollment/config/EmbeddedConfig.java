@@ -0,0 +1,31 @@
+package org.product.catalog.analyzer.enrollment.config;
+
+import org.product.catalog.analyzer.enrollment.repository.EmbeddedNodeRepository;
+import org.product.catalog.analyzer.enrollment.repository.EmbeddedTransactionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Конфигурационный класс профиля {@code embedded}: каталог хранится встроенным репозиторием
+ * {@link EmbeddedNodeRepository} без Postgres, источник данных, JdbcTemplate и миграции Flyway
+ * отключены в application-embedded.yaml.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Configuration
+@Profile("embedded")
+public class EmbeddedConfig {
+
+    /**
+     * Метод создает менеджер транзакций, через синхронизацию которого встроенный репозиторий
+     * фиксирует и откатывает изменения транзакционных методов сервиса.
+     *
+     * @return менеджер транзакций встроенного хранилища.
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager() {
+        return new EmbeddedTransactionManager();
+    }
+}
@@ -0,0 +1,127 @@
+package org.product.catalog.analyzer.enrollment.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.controller.ReactiveNodeHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+import org.springframework.web.servlet.function.support.RouterFunctionMapping;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * Конфигурационный класс профиля {@code reactive}: неблокирующий пул соединений R2DBC
+ * и маршруты чтения узлов и товаров, обслуживаемые {@link ReactiveNodeHandler}.
+ * Параметры подключения R2DBC определяются по основному JDBC-источнику данных,
+ * поэтому профиль не требует отдельной настройки адреса базы данных.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    /**
+     * Метод создает пул соединений R2DBC к той же базе данных и схеме, что и основной источник данных.
+     *
+     * @param dataSource - основной JDBC-источник соединений с базой данных.
+     * @param properties - настройки основного источника данных, из которых берётся пароль.
+     * @param poolSize   - размер пула соединений.
+     * @return пул соединений R2DBC.
+     * @throws SQLException если не удалось получить параметры подключения основного источника данных.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory(
+            DataSource dataSource,
+            DataSourceProperties properties,
+            @Value("${repository.reactive.pool-size:20}") int poolSize
+    ) throws SQLException {
+        final String url;
+        final String username;
+        try (Connection connection = dataSource.getConnection()) {
+            final DatabaseMetaData metaData = connection.getMetaData();
+            url = metaData.getURL();
+            username = metaData.getUserName();
+        }
+        final URI uri = URI.create(url.substring("jdbc:".length()));
+        final PostgresqlConnectionConfiguration.Builder builder = PostgresqlConnectionConfiguration.builder()
+                .host(uri.getHost())
+                .port(uri.getPort() == -1 ? 5432 : uri.getPort())
+                .database(uri.getPath().substring(1))
+                .username(username)
+                .password(properties.getPassword());
+        if (uri.getQuery() != null) {
+            for (String parameter : uri.getQuery().split("&")) {
+                if (parameter.startsWith("currentSchema=")) builder.schema(parameter.substring("currentSchema=".length()));
+            }
+        }
+        log.info("Reactive connection pool to {}:{}{} with size {}", uri.getHost(), uri.getPort(), uri.getPath(), poolSize);
+        return new ConnectionPool(ConnectionPoolConfiguration
+                .builder(new PostgresqlConnectionFactory(builder.build()))
+                .initialSize(poolSize)
+                .maxSize(poolSize)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionPool connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    /**
+     * Метод описывает маршруты реактивного чтения узлов и товаров.
+     *
+     * @param handler  - обработчик реактивных запросов.
+     * @param nodesUrl - адрес получения узла по идентификатору.
+     * @param salesUrl - адрес получения обновлённых товаров.
+     * @return маршруты реактивных запросов.
+     */
+    @Bean
+    public RouterFunction<ServerResponse> reactiveNodeRoutes(
+            ReactiveNodeHandler handler,
+            @Value("${urls.nodes}") String nodesUrl,
+            @Value("${urls.sales}") String salesUrl
+    ) {
+        return RouterFunctions.route()
+                .GET(nodesUrl + "/{id}", handler::getNode)
+                .GET(salesUrl, handler::salesNode)
+                .build();
+    }
+
+    /**
+     * Метод регистрирует реактивные маршруты с приоритетом выше аннотированных контроллеров,
+     * так что в профиле {@code reactive} они заменяют соответствующие методы {@code NodeController},
+     * остальные запросы обслуживаются контроллером как обычно.
+     *
+     * @param reactiveNodeRoutes - маршруты реактивных запросов.
+     * @param converters         - http-конвертеры приложения.
+     * @return отображение запросов на реактивные маршруты.
+     */
+    @Bean
+    public RouterFunctionMapping reactiveRouterFunctionMapping(
+            RouterFunction<ServerResponse> reactiveNodeRoutes,
+            HttpMessageConverters converters
+    ) {
+        final RouterFunctionMapping mapping = new RouterFunctionMapping(reactiveNodeRoutes);
+        mapping.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        mapping.setMessageConverters(converters.getConverters());
+        return mapping;
+    }
+}
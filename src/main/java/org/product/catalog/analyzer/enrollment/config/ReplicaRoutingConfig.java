@@ -0,0 +1,94 @@
+package org.product.catalog.analyzer.enrollment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.product.catalog.analyzer.enrollment.datasource.ReadWriteRoutingDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Конфигурационный класс разделения чтения и записи между основной базой данных и репликой.
+ * Основной пул настраивается блоком {@code spring.datasource}, пул реплики блоком {@code repository.replica}.
+ * Транзакции только для чтения (поиск узла, обновлённые товары, статистика) выполняются на реплике,
+ * импорт и удаление на основной базе данных.
+ * Включается свойством {@code repository.replica.enabled}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Configuration
+@ConditionalOnProperty(name = "repository.replica.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    /**
+     * Метод создает основной пул соединений по настройкам {@code spring.datasource}.
+     *
+     * @param properties - настройки основного источника данных.
+     * @return основной пул соединений.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        final HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * Метод создает пул соединений реплики по настройкам {@code repository.replica}.
+     *
+     * @param properties - настройки основного источника данных, из которых берётся драйвер.
+     * @param url        - адрес реплики.
+     * @param username   - имя пользователя реплики.
+     * @param password   - пароль пользователя реплики.
+     * @param poolSize   - размер пула соединений реплики.
+     * @return пул соединений реплики.
+     */
+    @Bean
+    public HikariDataSource replicaDataSource(
+            DataSourceProperties properties,
+            @Value("${repository.replica.url}") String url,
+            @Value("${repository.replica.username:${spring.datasource.username:}}") String username,
+            @Value("${repository.replica.password:${spring.datasource.password:}}") String password,
+            @Value("${repository.replica.pool-size:10}") int poolSize
+    ) {
+        final HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    /**
+     * Метод создает основной источник данных приложения, маршрутизирующий соединения
+     * по признаку транзакции только для чтения. Получение соединения откладывается до первого запроса.
+     *
+     * @param primary              - основной пул соединений.
+     * @param replica              - пул соединений реплики.
+     * @param readYourWritesMillis - интервал чтения из основной базы после записи, {@code 0} отключает режим.
+     * @return источник данных с маршрутизацией чтения на реплику.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("primaryDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") DataSource replica,
+            @Value("${repository.replica.read-your-writes-ms:0}") long readYourWritesMillis
+    ) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, readYourWritesMillis));
+    }
+}
@@ -0,0 +1,33 @@
+package org.product.catalog.analyzer.enrollment.config;
+
+import org.product.catalog.analyzer.enrollment.statistic.CountingJdbcTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Конфигурационный класс, заменяющий JdbcTemplate приложения на {@link CountingJdbcTemplate},
+ * который учитывает SQL-запросы каждого http-запроса.
+ * Подсчёт строк оборачивает каждый ResultSet в прокси, поэтому статистика диагностическая
+ * и включается только явно свойством {@code repository.statistic.enabled}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Configuration
+@ConditionalOnProperty(name = "repository.statistic.enabled", havingValue = "true")
+public class StatementStatisticConfig {
+
+    /**
+     * Метод создает JdbcTemplate, учитывающий количество запросов, строк и время работы с базой данных.
+     *
+     * @param dataSource - источник соединений с базой данных.
+     * @return JdbcTemplate с учётом статистики запросов.
+     */
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new CountingJdbcTemplate(dataSource);
+    }
+}
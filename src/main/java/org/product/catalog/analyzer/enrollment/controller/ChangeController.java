@@ -0,0 +1,188 @@
+package org.product.catalog.analyzer.enrollment.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.ChangesResponse;
+import org.product.catalog.analyzer.enrollment.dto.NodeChange;
+import org.product.catalog.analyzer.enrollment.service.ChangeFeed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Класс, реализующий REST-контролер ленты изменений узлов для подписчиков на поддерево корневой категории.
+ * Изменения передаются как Server-Sent Events, либо длинным опросом для клиентов без поддержки SSE.
+ * Клиент возобновляет ленту с курсора последнего полученного изменения и не перечитывает каталог.
+ * События SSE отправляются не потоком ленты, а отдельными потоками отправки из ограниченной очереди подписчика,
+ * поэтому медленный клиент не задерживает остальных.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "repository.change-feed.enabled", havingValue = "true", matchIfMissing = true)
+@Api(tags = "Лента изменений", protocols = "http,https")
+public class ChangeController {
+
+    private final ChangeFeed changeFeed;
+    @Value("${repository.change-feed.stream-timeout:5m}")
+    private Duration streamTimeout;
+    @Value("${repository.change-feed.poll-timeout:30s}")
+    private Duration pollTimeout;
+    @Value("${repository.change-feed.subscriber-queue-size:10000}")
+    private int subscriberQueueSize;
+    private final ExecutorService sender = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "change-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void stop() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Метод обрабатывает GET-запрос подписки на изменения как Server-Sent Events.
+     * Каждое изменение передаётся событием с именем операции и идентификатором, равным курсору изменения,
+     * поэтому при переподключении браузер сам передаёт курсор в заголовке {@code Last-Event-ID}.
+     *
+     * @param rootId      - идентификатор корневой категории, либо {@code null} для всего каталога.
+     * @param cursor      - курсор, после которого передаются изменения, по умолчанию последнее изменение.
+     * @param lastEventId - курсор последнего полученного события при переподключении.
+     * @return поток событий изменений.
+     */
+    @GetMapping(value = "${urls.changes}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation(value = "- подписка на изменения поддерева (SSE)", notes = """
+            Передаёт добавления, обновления (UPSERT) и удаления (DELETE) узлов поддерева категории root, включая саму категорию и её предков, чьи цены изменились.
+            Идентификатор события - монотонно возрастающий курсор, с которого лента возобновляется параметром cursor или заголовком Last-Event-ID.
+            """)
+    public SseEmitter streamChanges(
+            @RequestParam(value = "root", required = false) UUID rootId,
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        final long start = lastEventId != null ? lastEventId : cursor != null ? cursor : changeFeed.findLastCursor();
+        log.info("Subscribe to changes of root: {} from cursor: {}", rootId, start);
+        final SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        final EmitterSubscription subscription = new EmitterSubscription(rootId, start, emitter);
+        emitter.onCompletion(() -> changeFeed.unsubscribe(subscription));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> changeFeed.unsubscribe(subscription));
+        changeFeed.subscribe(subscription);
+        return emitter;
+    }
+
+    /**
+     * Метод обрабатывает GET-запрос длинного опроса изменений.
+     * Ответ возвращается, как только появятся изменения поддерева после курсора,
+     * либо по истечении времени ожидания с пустым списком и продвинутым курсором.
+     *
+     * @param rootId - идентификатор корневой категории, либо {@code null} для всего каталога.
+     * @param cursor - курсор, после которого передаются изменения, по умолчанию последнее изменение.
+     * @return отложенный ответ с изменениями и курсором следующего запроса.
+     */
+    @GetMapping("${urls.changes}")
+    @ApiOperation(value = "- длинный опрос изменений поддерева", notes = """
+            Возвращает изменения поддерева категории root после курсора cursor и курсор следующего запроса. Если изменений нет, ответ ожидает их до истечения времени опроса.
+            """)
+    public DeferredResult<ChangesResponse> pollChanges(
+            @RequestParam(value = "root", required = false) UUID rootId,
+            @RequestParam(value = "cursor", required = false) Long cursor
+    ) {
+        final long start = cursor != null ? cursor : changeFeed.findLastCursor();
+        log.info("Poll changes of root: {} from cursor: {}", rootId, start);
+        final DeferredResult<ChangesResponse> result = new DeferredResult<>(pollTimeout.toMillis());
+        final ChangeFeed.Subscription subscription = new ChangeFeed.Subscription(rootId, start) {
+            @Override
+            protected boolean deliver(List<NodeChange> changes, long next) {
+                if (changes.isEmpty()) return !result.isSetOrExpired();
+                result.setResult(new ChangesResponse(changes, next));
+                return false;
+            }
+        };
+        result.onTimeout(() -> result.setResult(new ChangesResponse(List.of(), subscription.getCursor())));
+        result.onCompletion(() -> changeFeed.unsubscribe(subscription));
+        changeFeed.subscribe(subscription);
+        return result;
+    }
+
+    /**
+     * Подписка SSE с ограниченной очередью изменений. Поток ленты только ставит изменения в очередь,
+     * события отправляются клиенту потоком отправки, не более одного на подписчика.
+     * Если клиент не успевает читать и очередь переполнена, поток событий завершается,
+     * и клиент переподключается с курсора последнего полученного события.
+     */
+    private class EmitterSubscription extends ChangeFeed.Subscription {
+        private final SseEmitter emitter;
+        private final BlockingQueue<NodeChange> queue = new ArrayBlockingQueue<>(subscriberQueueSize);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean closed;
+
+        EmitterSubscription(UUID rootId, long cursor, SseEmitter emitter) {
+            super(rootId, cursor);
+            this.emitter = emitter;
+        }
+
+        @Override
+        protected boolean deliver(List<NodeChange> changes, long next) {
+            if (closed) return false;
+            for (NodeChange change : changes) {
+                if (!queue.offer(change)) {
+                    log.info("Subscription to changes of root: {} is overflowed and closed", getRootId());
+                    closed = true;
+                    queue.clear();
+                    emitter.complete();
+                    return false;
+                }
+            }
+            if (!changes.isEmpty()) send();
+            return true;
+        }
+
+        /**
+         * Приватный метод отправки изменений из очереди потоком отправки,
+         * если очередь подписчика ещё не отправляется.
+         */
+        private void send() {
+            if (!sending.compareAndSet(false, true)) return;
+            sender.execute(() -> {
+                try {
+                    NodeChange change;
+                    while (!closed && (change = queue.poll()) != null) {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(change.cursor()))
+                                .name(change.operation())
+                                .data(change, MediaType.APPLICATION_JSON));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    log.info("Subscription to changes of root: {} is closed: {}", getRootId(), e.getMessage());
+                    closed = true;
+                } finally {
+                    sending.set(false);
+                }
+                if (!closed && !queue.isEmpty()) send();
+            });
+        }
+    }
+}
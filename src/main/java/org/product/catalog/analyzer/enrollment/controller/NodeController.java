@@ -1,6 +1,8 @@
 package org.product.catalog.analyzer.enrollment.controller;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -10,16 +12,25 @@ import org.product.catalog.analyzer.enrollment.dto.ImportRequest;
 import org.product.catalog.analyzer.enrollment.dto.Item;
 import org.product.catalog.analyzer.enrollment.dto.Node;
 import org.product.catalog.analyzer.enrollment.dto.SalesResponse;
+import org.product.catalog.analyzer.enrollment.dto.StatisticResponse;
+import org.product.catalog.analyzer.enrollment.service.ImportCoordinator;
 import org.product.catalog.analyzer.enrollment.service.NodeService;
 import org.product.catalog.analyzer.enrollment.validation.exception.ArgumentNotValidException;
 import org.product.catalog.analyzer.enrollment.validation.exception.NotFindNodeException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -39,9 +50,17 @@ import java.util.stream.Collectors;
 public class NodeController {
 
     private final NodeService nodeService;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<ImportCoordinator> importCoordinator;
+    @Value("${repository.stream-depth-node:false}")
+    private boolean streamDepthNode;
+    @Value("${repository.fetch-size:1000}")
+    private int salePageSize;
 
     /**
      * Метод обрабатывает POST-запрос на импортирование  узлов в каталог товаров.
+     * При включенном групповом импорте ({@code repository.group-commit.enabled}) запрос сохраняется
+     * вместе с другими запросами, поступившими одновременно, через {@link ImportCoordinator}.
      *
      * @param importRequest - запрос на пакетный импорт узлов.
      * @throws ArgumentNotValidException если какой либо из аргументов запроса не прошёл проверку.
@@ -68,7 +87,9 @@ public class NodeController {
         final List<Node> nodes = importRequest.getItems();
         log.info("Received request to import nodes: {} update date: {}.", nodes.size(), importRequest.getUpdateDate());
         nodes.forEach(node -> node.setDate(importRequest.getUpdateDate()));
-        nodeService.importNodes(nodes);
+        final ImportCoordinator coordinator = importCoordinator.getIfAvailable();
+        if (coordinator != null) coordinator.importNodes(nodes);
+        else nodeService.importNodes(nodes);
     }
 
     /**
@@ -95,10 +116,19 @@ public class NodeController {
     /**
      * Метод обрабатывает GET-запрос на поиск узла в полную глубину по идентификатору.
      * Метод возвращает узел со всеми потомками, полностью отображая структуру каталога товаров.
+     * В потоковом режиме ({@code repository.stream-depth-node}) узлы записываются в ответ
+     * по мере чтения поддерева из базы данных, без построения дерева в памяти.
+     * Ответ содержит строгий ETag с версией поддерева, если версия совпадает с заголовком
+     * {@code If-None-Match}, возвращается 304 без чтения потомков,
+     * а при включенном кэше версия поддерева читается из кэша без обращения к базе данных.
      *
-     * @param id - идентификатор корневого узла(товара/категории)
-     * @return ответ в котором содержится узел в JSON формате со всеми потомками
+     * @param id         - идентификатор корневого узла(товара/категории)
+     * @param webRequest - http-запрос, по которому проверяется заголовок {@code If-None-Match}.
+     * @param response   - http-ответ, в который в потоковом режиме записывается JSON.
+     * @return ответ в котором содержится узел в JSON формате со всеми потомками,
+     * либо {@code null} если ответ уже записан в потоковом режиме или узел не изменился.
      * @throws NotFindNodeException если элемент не найден.
+     * @throws IOException          если не удалось записать ответ.
      */
     @GetMapping("${urls.nodes}/{id}")
     @ApiOperation(value = "- предоставляет информацию об элементе по идентификатору", notes = """
@@ -108,8 +138,24 @@ public class NodeController {
               - цена категории - это средняя цена всех её товаров, включая товары дочерних категорий. Если категория не содержит товаров цена равна null. При обновлении цены товара, средняя цена категории, которая содержит этот товар, тоже обновляется.
                             
             """)
-    public ResponseEntity<Node> getNode(@PathVariable UUID id) throws NotFindNodeException {
+    public ResponseEntity<Node> getNode(@PathVariable UUID id, WebRequest webRequest, HttpServletResponse response) throws NotFindNodeException, IOException {
         log.info("Get request info for node by id: {}", id);
+        if (webRequest.checkNotModified(nodeService.findVersionById(id))) {
+            log.info("Node with ID: {} is not modified", id);
+            return null;
+        }
+        if (streamDepthNode) {
+            try (NodeTreeWriter writer = new NodeTreeWriter(objectMapper, response)) {
+                nodeService.findById(id, node -> {
+                    try {
+                        writer.write(node);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            return null;
+        }
         final Node result = nodeService.findById(id);
         log.info("Find node with ID: {}", result.getId());
         return new ResponseEntity<>(result, HttpStatus.OK);
@@ -118,21 +164,83 @@ public class NodeController {
     /**
      * Метод обрабатывает Get-запрос Получение списка товаров,
      * цена которых была обновлена за последние 24 часа включительно [now() - 24h, now()] от времени переданном в запросе.
+     * Товары читаются страницами размером {@code repository.fetch-size} из одного снимка данных
+     * и записываются в ответ между чтениями страниц, так что в памяти находится не больше одной страницы,
+     * а товар, обновлённый во время ответа, не повторяется и не пропадает. Если чтение страницы
+     * завершилось ошибкой, JSON ответа не закрывается:
+     * до отправки заголовков клиент получит код ошибки, а после - оборванный ответ,
+     * который нельзя принять за полный список.
      *
-     * @param date - указанная дата.
-     * @throws ArgumentNotValidException если какой либо из аргументов запроса не прошёл проверку.
+     * @param date     - указанная дата.
+     * @param response - http-ответ, в который потоково записывается JSON.
+     * @throws IOException если не удалось записать ответ.
      */
     @GetMapping("${urls.sales}")
     @Tag(name = "Дополнительные задачи")
-    @ApiOperation(value = "- получение списка товаров", notes = """
+    @ApiOperation(value = "- получение списка товаров", response = SalesResponse.class, notes = """
             Получение списка товаров, цена которых была обновлена за последние 24 часа включительно [now() - 24h, now()] от времени переданном в запросе. Обновление цены не означает её изменение. Обновления цен удаленных товаров недоступны. При обновлении цены товара, средняя цена категории, которая содержит этот товар, тоже обновляется.
             """)
-    public SalesResponse salesNode(
+    public void salesNode(
             @RequestParam("date")
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date date
-    ) {
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date date,
+            HttpServletResponse response
+    ) throws IOException {
         log.info("Received request to find sale date: {} ", date);
-        return new SalesResponse(nodeService.findSaleList(date).stream().map(node -> new Item(
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        final JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(response.getOutputStream())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("items");
+        nodeService.findSaleList(date, salePageSize, page -> {
+            try {
+                for (Node node : page) {
+                    generator.writeObject(new Item(
+                            node.getId(),
+                            node.getType(),
+                            node.getName(),
+                            node.getParentId(),
+                            node.getPrice(),
+                            node.getDate()));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+
+    /**
+     * Метод обрабатывает Get-запрос получения статистики (истории обновлений)
+     * по товару/категории за заданный полуинтервал [dateStart, dateEnd).
+     *
+     * @param id        - идентификатор товара/категории.
+     * @param dateStart - начало интервала включительно.
+     * @param dateEnd   - конец интервала не включительно.
+     * @return история обновлений элемента.
+     * @throws NotFindNodeException      если элемент не найден.
+     * @throws ArgumentNotValidException если какой либо из аргументов запроса не прошёл проверку.
+     */
+    @GetMapping("${urls.statistic}/{id}/statistic")
+    @Tag(name = "Дополнительные задачи")
+    @ApiOperation(value = "- получение статистики по элементу", notes = """
+            Получение статистики (истории обновлений) по товару/категории за заданный полуинтервал [from, to). Статистика по удаленным элементам недоступна.
+                            
+              - цена категории - это средняя цена всех её товаров, включая товары дочерних категорий.Если категория не содержит товаров цена равна null. При обновлении цены товара, средняя цена категории, которая содержит этот товар, тоже обновляется.
+              - можно получить статистику за всё время.
+            """)
+    public StatisticResponse statisticNode(
+            @PathVariable UUID id,
+            @RequestParam(value = "dateStart", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date dateStart,
+            @RequestParam(value = "dateEnd", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date dateEnd
+    ) throws NotFindNodeException, ArgumentNotValidException {
+        log.info("Received request to find statistic of node: {} from: {} to: {}", id, dateStart, dateEnd);
+        return new StatisticResponse(nodeService.findStatisticList(id, dateStart, dateEnd).stream().map(node -> new Item(
                 node.getId(),
                 node.getType(),
                 node.getName(),
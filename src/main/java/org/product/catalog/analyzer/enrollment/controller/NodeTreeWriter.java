@@ -0,0 +1,96 @@
+package org.product.catalog.analyzer.enrollment.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Класс, реализующий потоковую запись узла со всеми потомками в http-ответ в формате JSON.
+ * Узлы поддерева принимаются без потомков в порядке обхода в глубину и записываются сразу,
+ * в памяти хранится только стек идентификаторов открытых категорий, размер которого ограничен глубиной дерева.
+ * Ответ фиксируется при записи первого узла, поэтому если узлов нет, ответ остаётся свободным для ошибки.
+ * Поля узлов сериализуются настроенным ObjectMapper приложения, так что формат ответа
+ * совпадает с ответом, построенным из дерева в памяти.
+ *
+ * @author Stepanenko Stanislav
+ */
+public class NodeTreeWriter implements AutoCloseable {
+
+    private static final String CHILDREN = "children";
+
+    private final ObjectMapper objectMapper;
+    private final HttpServletResponse response;
+    private final Deque<UUID> categoryStack = new ArrayDeque<>();
+    private JsonGenerator generator;
+
+    public NodeTreeWriter(ObjectMapper objectMapper, HttpServletResponse response) {
+        this.objectMapper = objectMapper;
+        this.response = response;
+    }
+
+    /**
+     * Запись очередного узла. Категории, поддеревья которых закончились, закрываются
+     * до тех пор, пока на вершине стека не окажется родитель узла.
+     *
+     * @param node - очередной узел поддерева без потомков.
+     * @throws IOException если не удалось записать ответ.
+     */
+    public void write(Node node) throws IOException {
+        if (generator == null) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            generator = objectMapper.createGenerator(response.getOutputStream());
+        }
+        while (!categoryStack.isEmpty() && !categoryStack.peek().equals(node.getParentId())) {
+            closeCategory();
+        }
+        if (!NodeType.CATEGORY.equals(node.getType())) {
+            generator.writeObject(node);
+            return;
+        }
+        final ObjectNode fields = objectMapper.valueToTree(node);
+        fields.remove(CHILDREN);
+        generator.writeStartObject();
+        final Iterator<Map.Entry<String, JsonNode>> iterator = fields.fields();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, JsonNode> field = iterator.next();
+            generator.writeFieldName(field.getKey());
+            generator.writeTree(field.getValue());
+        }
+        generator.writeArrayFieldStart(CHILDREN);
+        categoryStack.push(node.getId());
+    }
+
+    private void closeCategory() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        categoryStack.pop();
+    }
+
+    /**
+     * Закрытие всех открытых категорий и завершение записи ответа.
+     *
+     * @throws IOException если не удалось записать ответ.
+     */
+    @Override
+    public void close() throws IOException {
+        if (generator == null) return;
+        while (!categoryStack.isEmpty()) {
+            closeCategory();
+        }
+        generator.close();
+    }
+}
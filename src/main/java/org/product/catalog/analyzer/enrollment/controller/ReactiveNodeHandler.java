@@ -0,0 +1,151 @@
+package org.product.catalog.analyzer.enrollment.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.Item;
+import org.product.catalog.analyzer.enrollment.service.ReactiveNodeService;
+import org.product.catalog.analyzer.enrollment.validation.exception.ExceptionResponse;
+import org.product.catalog.analyzer.enrollment.validation.exception.NotFindNodeException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Класс, реализующий обработчик реактивных запросов чтения узлов и товаров в профиле {@code reactive}.
+ * Запросы обрабатываются асинхронно: поток сервлет-контейнера освобождается на время чтения из базы данных,
+ * узел записывается после получения результата неблокирующего запроса R2DBC,
+ * товары записываются в ответ по мере получения строк.
+ * Формат ответов и ошибок совпадает с {@link NodeController}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Component
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveNodeHandler {
+
+    private final ReactiveNodeService reactiveNodeService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Метод обрабатывает GET-запрос на поиск узла в полную глубину по идентификатору.
+     * Если версия поддерева совпадает с заголовком {@code If-None-Match}, возвращается 304 без чтения потомков.
+     *
+     * @param request - http-запрос с идентификатором узла в пути.
+     * @return асинхронный ответ в котором содержится узел в JSON формате со всеми потомками.
+     */
+    public ServerResponse getNode(ServerRequest request) {
+        final UUID id;
+        try {
+            id = UUID.fromString(request.pathVariable("id"));
+        } catch (IllegalArgumentException e) {
+            return validationFailed(e);
+        }
+        log.info("Get reactive request info for node by id: {}", id);
+        return ServerResponse.async(reactiveNodeService.findVersionById(id)
+                .flatMap(version -> request.checkNotModified(version)
+                        .map(Mono::just)
+                        .orElseGet(() -> reactiveNodeService.findById(id)
+                                .map(node -> ServerResponse.ok()
+                                        .eTag(version)
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .body(node))))
+                .onErrorResume(NotFindNodeException.class, e -> {
+                    log.info("{}: {}", e.getClass().getSimpleName(), e.getMessage());
+                    return Mono.just(ServerResponse.status(HttpStatus.NOT_FOUND)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(new ExceptionResponse(HttpStatus.NOT_FOUND.value(), "Item not found")));
+                }));
+    }
+
+    /**
+     * Метод обрабатывает GET-запрос получения списка товаров,
+     * цена которых была обновлена за последние 24 часа включительно [now() - 24h, now()] от времени переданном в запросе.
+     * Тело ответа - поток фрагментов JSON: каждый товар сериализуется и записывается в ответ по мере получения
+     * из базы данных, список товаров в памяти не собирается. Если чтение завершилось ошибкой после начала записи,
+     * JSON ответа не закрывается, и оборванный ответ нельзя принять за полный список.
+     *
+     * @param request - http-запрос с датой в параметре {@code date}.
+     * @return асинхронный ответ со списком товаров в JSON формате.
+     */
+    public ServerResponse salesNode(ServerRequest request) {
+        final Date date;
+        try {
+            date = Date.from(OffsetDateTime.parse(request.param("date").orElseThrow()).toInstant());
+        } catch (NoSuchElementException | DateTimeParseException e) {
+            return validationFailed(e);
+        }
+        log.info("Received reactive request to find sale date: {} ", date);
+        final Flux<JsonFragment> items = reactiveNodeService.findSaleList(date)
+                .map(node -> new Item(
+                        node.getId(),
+                        node.getType(),
+                        node.getName(),
+                        node.getParentId(),
+                        node.getPrice(),
+                        node.getDate()))
+                .index()
+                .map(item -> new JsonFragment((item.getT1() == 0 ? "" : ",") + toJson(item.getT2())));
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Flux.concat(
+                        Mono.just(new JsonFragment("{\"items\":[")),
+                        items,
+                        Mono.just(new JsonFragment("]}"))));
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ServerResponse validationFailed(Exception e) {
+        log.info("{}: {}", e.getClass().getSimpleName(), e.getMessage());
+        return ServerResponse.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ExceptionResponse(HttpStatus.BAD_REQUEST.value(), "Validation Failed"));
+    }
+
+    /**
+     * Готовый фрагмент JSON, который записывается в ответ без изменений.
+     * Элементы потокового тела ответа записываются по одному, поэтому разделители
+     * и обрамление списка передаются такими же фрагментами.
+     *
+     * @param json - фрагмент JSON.
+     */
+    private record JsonFragment(String json) implements JsonSerializable {
+
+        @Override
+        public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+            generator.writeRawValue(json);
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer) throws IOException {
+            serialize(generator, serializers);
+        }
+    }
+}
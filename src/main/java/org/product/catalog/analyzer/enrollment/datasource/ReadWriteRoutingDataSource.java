@@ -0,0 +1,67 @@
+package org.product.catalog.analyzer.enrollment.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Источник данных, направляющий соединения транзакций только для чтения в пул реплики,
+ * а все остальные соединения в основной пул.
+ * Решение принимается в момент получения соединения, поэтому источник должен использоваться
+ * через {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * откладывающий получение соединения до первого запроса, когда признак транзакции уже известен.
+ * <p>
+ * В режиме чтения своих записей ({@code readYourWritesMillis > 0}) после фиксации каждой пишущей транзакции
+ * чтение в течение заданного интервала выполняется из основного пула, пока реплика догоняет основную базу.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+    private final long readYourWritesNanos;
+    private final AtomicLong lastWriteNanos = new AtomicLong();
+    private volatile boolean written;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, long readYourWritesMillis) {
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Определение пула для соединения текущей транзакции.
+     * Для пишущей транзакции регистрируется отметка времени фиксации для режима чтения своих записей.
+     *
+     * @return ключ основного пула либо пула реплики.
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (readYourWritesNanos > 0 && TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        lastWriteNanos.set(System.nanoTime());
+                        written = true;
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (written && System.nanoTime() - lastWriteNanos.get() < readYourWritesNanos) {
+            log.debug("Read-only transaction is routed to primary after recent write");
+            return PRIMARY;
+        }
+        return REPLICA;
+    }
+}
@@ -0,0 +1,10 @@
+package org.product.catalog.analyzer.enrollment.dto;
+
+import java.util.List;
+
+/**
+ * Ответ на запрос ленты изменений: изменения и курсор, с которого следует продолжить чтение.
+ *
+ * @author Stepanenko Stanislav
+ */
+public record ChangesResponse(List<NodeChange> items, long cursor) {}
@@ -49,5 +49,5 @@ public class Node {
     @JsonIgnore
     private int offerCount;
     @JsonIgnore
-    private int sum;
+    private long sum;
 }
@@ -0,0 +1,53 @@
+package org.product.catalog.analyzer.enrollment.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Изменение узла в ленте изменений: новое состояние узла либо его удаление.
+ * Курсор присваивается изменению при публикации, после завершения всех более ранних транзакций,
+ * и монотонно возрастает в порядке этих транзакций.
+ *
+ * @author Stepanenko Stanislav
+ */
+public record NodeChange(
+        long cursor,
+
+        String operation,
+
+        UUID id,
+
+        String type,
+
+        String name,
+
+        UUID parentId,
+
+        Integer price,
+
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+        Date date,
+
+        @JsonIgnore
+        UUID[] path
+) {
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+
+    /**
+     * Признак изменения узла, входящего в поддерево заданного корня, включая сам корень.
+     *
+     * @param rootId - идентификатор корневой категории, либо {@code null} для всего каталога.
+     * @return {@code true} если узел входит в поддерево.
+     */
+    public boolean isDescendantOf(UUID rootId) {
+        if (rootId == null) return true;
+        for (UUID ancestorId : path) {
+            if (rootId.equals(ancestorId)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,5 @@
+package org.product.catalog.analyzer.enrollment.dto;
+
+import java.util.List;
+
+public record StatisticResponse(List<Item> items) {}
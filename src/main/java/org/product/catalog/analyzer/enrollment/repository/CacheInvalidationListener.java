@@ -0,0 +1,182 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Слушатель оповещений Postgres об изменении узлов другими экземплярами приложения.
+ * Импорт и удаление отправляют идентификаторы изменённых узлов и их предков в канал
+ * {@code repository.invalidation.channel} в той же транзакции, поэтому оповещение приходит только
+ * после фиксации изменений. Слушатель держит собственное соединение вне пула, открытое по параметрам
+ * подключения основного источника данных, чтобы не занимать соединение пула, и одним потоком
+ * передаёт идентификаторы из всех полученных за раз оповещений в {@link CachingNodeRepository#evictAll(java.util.Collection)}.
+ * Оповещения, отправленные во время разрыва соединения, теряются, поэтому после переподключения
+ * кэш очищается полностью. Включается свойством {@code repository.invalidation.enabled} при включенном кэше.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${repository.cache.enabled:true} and ${repository.invalidation.enabled:true}")
+public class CacheInvalidationListener {
+
+    private final DataSource dataSource;
+    private final String password;
+    private final CachingNodeRepository cachingNodeRepository;
+    private final String channel;
+    private final int pollMillis;
+    private final long retryMillis;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "cache-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private String url;
+    private String username;
+
+    public CacheInvalidationListener(DataSource dataSource,
+                                     DataSourceProperties properties,
+                                     CachingNodeRepository cachingNodeRepository,
+                                     @Value("${repository.invalidation.channel:node_changed}") String channel,
+                                     @Value("${repository.invalidation.poll-ms:500}") int pollMillis,
+                                     @Value("${repository.invalidation.retry-ms:5000}") long retryMillis) {
+        this.dataSource = dataSource;
+        this.password = properties.getPassword();
+        this.cachingNodeRepository = cachingNodeRepository;
+        this.channel = channel;
+        this.pollMillis = pollMillis;
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * Подписка на канал выполняется до начальной загрузки индекса обновлённых товаров,
+     * чтобы изменения, зафиксированные во время загрузки, не были пропущены.
+     */
+    @PostConstruct
+    public void start() {
+        Connection connection = null;
+        try {
+            connection = listen();
+        } catch (SQLException | RuntimeException e) {
+            log.error("Cache invalidation listener is failed to connect!", e);
+        }
+        final Connection initial = connection;
+        executor.execute(() -> run(initial));
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Приватный метод цикла слушателя: оповещения ожидаются не дольше {@code poll-ms},
+     * чтобы поток своевременно замечал остановку приложения, при ошибке соединение
+     * открывается повторно через {@code retry-ms}.
+     *
+     * @param initial - соединение, подписанное на канал при старте, либо {@code null}.
+     */
+    private void run(Connection initial) {
+        Connection connection = initial;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (connection == null) {
+                    connection = listen();
+                    cachingNodeRepository.evictAll();
+                    log.info("Cache invalidation listener is reconnected, cache is cleared");
+                }
+                final PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(pollMillis);
+                if (notifications != null) handle(notifications);
+            } catch (SQLException | RuntimeException e) {
+                log.error("Cache invalidation listener is failed!", e);
+                close(connection);
+                connection = null;
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        close(connection);
+    }
+
+    /**
+     * Приватный метод открытия соединения вне пула и подписки на канал оповещений.
+     * Адрес базы данных и пользователь определяются по соединению основного источника данных,
+     * которое сразу возвращается в пул, пароль берётся из настроек источника данных.
+     *
+     * @return соединение, подписанное на канал.
+     * @throws SQLException если соединение не удалось открыть.
+     */
+    private Connection listen() throws SQLException {
+        if (url == null) {
+            try (Connection pooled = dataSource.getConnection()) {
+                final DatabaseMetaData metaData = pooled.getMetaData();
+                username = metaData.getUserName();
+                url = metaData.getURL();
+            }
+        }
+        final Properties info = new Properties();
+        if (username != null) info.setProperty("user", username);
+        if (password != null) info.setProperty("password", password);
+        final Connection connection = DriverManager.getConnection(url, info);
+        try (Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            statement.execute("LISTEN \"" + channel.replace("\"", "\"\"") + "\"");
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            close(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Приватный метод обработки полученных оповещений, собственные оповещения экземпляра пропускаются.
+     *
+     * @param notifications - оповещения в формате {@code <экземпляр>:<id>,<id>,...}.
+     */
+    private void handle(PGNotification[] notifications) {
+        final Set<UUID> ids = new HashSet<>();
+        for (PGNotification notification : notifications) {
+            final String payload = notification.getParameter();
+            final int separator = payload.indexOf(':');
+            if (separator < 0 || payload.substring(0, separator).equals(NodeRepositoryImpl.INSTANCE_ID)) continue;
+            for (String id : payload.substring(separator + 1).split(",")) {
+                if (!id.isEmpty()) ids.add(UUID.fromString(id));
+            }
+        }
+        if (ids.isEmpty()) return;
+        log.info("Evict {} nodes changed by other instances", ids.size());
+        cachingNodeRepository.evictAll(ids);
+    }
+
+    private static void close(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Cache invalidation listener connection is failed to close: {}", e.getMessage());
+        }
+    }
+}
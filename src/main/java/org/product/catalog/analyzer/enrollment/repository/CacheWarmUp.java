@@ -0,0 +1,286 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Прогрев кэша узлов при старте приложения. После запуска деревья корневых категорий параллельно,
+ * по задаче на корень в пуле fork/join размером {@code repository.warm-up.parallelism}, читаются
+ * потоковым запросом основного репозитория, поддеревья собираются в том же пуле с пересчётом агрегатов
+ * категорий и сохраняются в {@link NodeCache}. Задачи делят общий остаток места в кэше размером
+ * {@code repository.cache.max-size}: дерево накапливается, пока помещается в остаток, и занимает его
+ * только после полного чтения, дерево, которое уже не помещается, дочитывается без накопления и не прогревается,
+ * а после заполнения кэша оставшиеся задачи не читают деревья.
+ * До окончания прогрева индикатор {@code cacheWarmUp}, входящий в группу готовности,
+ * сообщает OUT_OF_SERVICE, и экземпляр не получает запросов с холодным кэшем.
+ * Ошибка прогрева не выводит экземпляр из работы, так как запросы обслуживаются и с холодным кэшем,
+ * но передаётся индикатором в подробностях состояния.
+ * Включается свойством {@code repository.warm-up.enabled} при включенном кэше.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${repository.cache.enabled:true} and ${repository.warm-up.enabled:false}")
+public class CacheWarmUp implements HealthIndicator, MeterBinder {
+
+    private final NodeRepository nodeRepository;
+    private final NodeCache nodeCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxSize;
+    private final int parallelism;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "cache-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean ready;
+    private volatile Exception failure;
+    private volatile int nodeCount;
+    private volatile long durationMillis;
+
+    public CacheWarmUp(@Qualifier("nodeRepositoryImpl") NodeRepository nodeRepository,
+                       NodeCache nodeCache,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${repository.cache.max-size:10000}") int maxSize,
+                       @Value("${repository.warm-up.parallelism:0}") int parallelism) {
+        this.nodeRepository = nodeRepository;
+        this.nodeCache = nodeCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.maxSize = maxSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.execute(() -> {
+            try {
+                warmUp();
+            } catch (RuntimeException e) {
+                log.error("Cache warm-up failed, the node cache stays cold", e);
+                failure = e;
+            } finally {
+                ready = true;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Прогрев кэша: параллельное потоковое чтение деревьев корневых категорий, их сборка и сохранение в кэш,
+     * пока в кэше есть место. Деревья не сохраняются, если за время прогрева кэш был инвалидирован,
+     * и не учитываются в количестве прогретых узлов. Первая ошибка чтения прерывает прогрев после завершения
+     * уже начатых задач.
+     *
+     * @return количество узлов, сохранённых в кэш.
+     */
+    int warmUp() {
+        final long start = System.nanoTime();
+        final long generation = nodeCache.getGeneration();
+        final List<UUID> rootIds = transactionTemplate.execute(status -> nodeRepository.findAllRootId());
+        final AtomicInteger remaining = new AtomicInteger(maxSize);
+        final AtomicInteger cached = new AtomicInteger();
+        final AtomicInteger stale = new AtomicInteger();
+        final AtomicInteger roots = new AtomicInteger();
+        final AtomicReference<RuntimeException> error = new AtomicReference<>();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final List<ForkJoinTask<?>> tasks = new ArrayList<>(rootIds.size());
+            for (UUID rootId : rootIds) {
+                tasks.add(pool.submit(() -> {
+                    if (error.get() != null || remaining.get() <= 0) return;
+                    try {
+                        final Subtree subtree = load(rootId, remaining);
+                        if (subtree == null || !reserve(remaining, subtree.size())) return;
+                        if (!nodeCache.putTree(subtree.node(), generation)) {
+                            remaining.addAndGet(subtree.size());
+                            return;
+                        }
+                        cached.addAndGet(subtree.size());
+                        stale.addAndGet(subtree.stale());
+                        roots.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        error.compareAndSet(null, e);
+                    }
+                }));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (error.get() != null) throw error.get();
+        nodeCount = cached.get();
+        durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (stale.get() > 0) log.warn("Cache warm-up found {} categories with stale aggregates", stale.get());
+        log.info("Cache warm-up finished with {} nodes in {} of {} roots in {} ms",
+                cached.get(), roots.get(), rootIds.size(), durationMillis);
+        return cached.get();
+    }
+
+    @Override
+    public Health health() {
+        if (!ready) return Health.outOfService().withDetail("cache", "warming up").build();
+        if (failure != null) {
+            return Health.up()
+                    .withDetail("cache", "cold")
+                    .withException(failure)
+                    .build();
+        }
+        return Health.up()
+                .withDetail("nodes", nodeCount)
+                .withDetail("durationMs", durationMillis)
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.warmup.nodes", this, warmUp -> warmUp.nodeCount)
+                .tag("cache", "node")
+                .description("The number of nodes loaded into the cache at startup")
+                .register(registry);
+        TimeGauge.builder("cache.warmup.duration", this, TimeUnit.MILLISECONDS, warmUp -> warmUp.durationMillis)
+                .tag("cache", "node")
+                .description("The duration of the cache warm-up at startup")
+                .register(registry);
+    }
+
+    /**
+     * Приватный метод потокового чтения дерева корневого узла и его сборки в текущем пуле fork/join.
+     * Узлы не накапливаются, как только дерево перестаёт помещаться в остаток места в кэше, такое дерево не собирается.
+     *
+     * @param rootId    - идентификатор корневого узла.
+     * @param remaining - остаток места в кэше, общий для всех задач прогрева.
+     * @return собранное дерево, либо {@code null} если дерево удалено или не помещается в кэш.
+     */
+    private Subtree load(UUID rootId, AtomicInteger remaining) {
+        final Node[] root = new Node[1];
+        final Map<UUID, List<Node>> childrenMap = new HashMap<>();
+        final boolean[] overflow = new boolean[1];
+        final Integer size = transactionTemplate.execute(status -> nodeRepository.findDepthNodeById(rootId, new Consumer<>() {
+            private int count;
+
+            @Override
+            public void accept(Node node) {
+                if (overflow[0]) return;
+                if (++count > remaining.get()) {
+                    overflow[0] = true;
+                    root[0] = null;
+                    childrenMap.clear();
+                    return;
+                }
+                if (rootId.equals(node.getId())) {
+                    root[0] = node;
+                } else {
+                    childrenMap.computeIfAbsent(node.getParentId(), key -> new ArrayList<>()).add(node);
+                }
+            }
+        }));
+        if (root[0] == null || size == null || overflow[0]) return null;
+        return new SubtreeTask(root[0], childrenMap).invoke();
+    }
+
+    /**
+     * Приватный метод занятия места в кэше под собранное дерево.
+     *
+     * @param remaining - остаток места в кэше, общий для всех задач прогрева.
+     * @param size      - количество узлов дерева.
+     * @return {@code true} если место занято, {@code false} если дерево уже не помещается.
+     */
+    private static boolean reserve(AtomicInteger remaining, int size) {
+        int current;
+        do {
+            current = remaining.get();
+            if (size > current) return false;
+        } while (!remaining.compareAndSet(current, current - size));
+        return true;
+    }
+
+    /**
+     * Собранное поддерево с суммой и количеством товаров, числом узлов
+     * и числом категорий, агрегаты которых в базе данных разошлись с пересчитанными.
+     */
+    private record Subtree(Node node, long offerSum, int offerCount, int size, int stale) {
+    }
+
+    /**
+     * Задача сборки поддерева категории: дочерние категории собираются отдельными задачами,
+     * товары учитываются на месте, после чего пересчитываются сумма, количество и средняя цена товаров категории.
+     */
+    private static class SubtreeTask extends RecursiveTask<Subtree> {
+        private final Node node;
+        private final Map<UUID, List<Node>> childrenMap;
+
+        SubtreeTask(Node node, Map<UUID, List<Node>> childrenMap) {
+            this.node = node;
+            this.childrenMap = childrenMap;
+        }
+
+        @Override
+        protected Subtree compute() {
+            if (!NodeType.CATEGORY.equals(node.getType())) {
+                return new Subtree(node, node.getSum(), node.getOfferCount(), 1, 0);
+            }
+            final List<Node> children = childrenMap.getOrDefault(node.getId(), new ArrayList<>());
+            final List<SubtreeTask> tasks = new ArrayList<>();
+            long sum = 0;
+            int count = 0;
+            int size = 1;
+            int stale = 0;
+            for (Node child : children) {
+                if (NodeType.CATEGORY.equals(child.getType())) {
+                    tasks.add(new SubtreeTask(child, childrenMap));
+                } else {
+                    sum += child.getSum();
+                    count += child.getOfferCount();
+                    size++;
+                }
+            }
+            invokeAll(tasks);
+            for (SubtreeTask task : tasks) {
+                final Subtree subtree = task.join();
+                sum += subtree.offerSum();
+                count += subtree.offerCount();
+                size += subtree.size();
+                stale += subtree.stale();
+            }
+            if (sum != node.getSum() || count != node.getOfferCount()) stale++;
+            node.setChildren(children);
+            node.setSum(sum);
+            node.setOfferCount(count);
+            node.setPrice(count == 0 ? null : (int) (sum / count));
+            return new Subtree(node, sum, count, size, stale);
+        }
+    }
+}
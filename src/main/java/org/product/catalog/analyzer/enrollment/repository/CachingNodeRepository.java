@@ -0,0 +1,501 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeChange;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Реализация интерфейса взаимодействия с базой данных, кэширующая узлы каталога в памяти приложения.
+ * Чтение узлов и деревьев категорий обслуживается из {@link NodeCache}, промахи загружаются
+ * основным репозиторием и сохраняются в кэш. При включенной реплике ({@code repository.replica.enabled})
+ * узлы, прочитанные в транзакциях только для чтения, в кэш не сохраняются: такие транзакции обслуживает реплика,
+ * которая может отставать, и кэш заполняется только чтениями из основной базы данных. Изменения каталога записываются в кэш после фиксации транзакции:
+ * изменённые узлы и все их предки перечитываются внутри транзакции и записываются в кэш с версией изменения,
+ * выданной до фиксации, списки потомков затронутых категорий и удалённые узлы из кэша удаляются.
+ * При включенном индексе обновлённых товаров {@link SaleIndex} он загружается при старте приложения
+ * и поддерживается сохранением и удалением узлов после фиксации транзакции с версией изменения,
+ * выданной до фиксации, так что изменения применяются в порядке фиксации транзакций.
+ * Изменения, выполненные другими экземплярами приложения, вытесняются из кэша по оповещениям
+ * {@link CacheInvalidationListener}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Primary
+@Repository
+@ConditionalOnProperty(name = "repository.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CachingNodeRepository implements NodeRepository, SmartInitializingSingleton {
+
+    private final NodeRepository nodeRepository;
+    private final NodeCache nodeCache;
+    private final SaleIndex saleIndex;
+    private final boolean replicaEnabled;
+
+    public CachingNodeRepository(NodeRepository nodeRepository, NodeCache nodeCache) {
+        this(nodeRepository, nodeCache, (SaleIndex) null);
+    }
+
+    public CachingNodeRepository(NodeRepository nodeRepository, NodeCache nodeCache, SaleIndex saleIndex) {
+        this(nodeRepository, nodeCache, saleIndex, false);
+    }
+
+    public CachingNodeRepository(NodeRepository nodeRepository, NodeCache nodeCache, SaleIndex saleIndex, boolean replicaEnabled) {
+        this.nodeRepository = nodeRepository;
+        this.nodeCache = nodeCache;
+        this.saleIndex = saleIndex;
+        this.replicaEnabled = replicaEnabled;
+    }
+
+    @Autowired
+    public CachingNodeRepository(@Qualifier("nodeRepositoryImpl") NodeRepository nodeRepository,
+                                 NodeCache nodeCache,
+                                 ObjectProvider<SaleIndex> saleIndex,
+                                 @Value("${repository.replica.enabled:false}") boolean replicaEnabled) {
+        this(nodeRepository, nodeCache, saleIndex.getIfAvailable(), replicaEnabled);
+    }
+
+    /**
+     * Начальная загрузка индекса обновлённых товаров после создания всех компонентов приложения,
+     * до начала обработки запросов.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (saleIndex == null) return;
+        final List<Node> offers = new ArrayList<>();
+        nodeRepository.findRecentOfferNodeList(saleIndex.getWindow(), offers::add);
+        saleIndex.load(offers);
+        log.info("Sale index is loaded with {} offers", saleIndex.getSize());
+    }
+
+    /**
+     * Вытеснение узлов, изменённых другим экземпляром приложения, по оповещению {@link CacheInvalidationListener}.
+     * Узлы и списки потомков удаляются из кэша и будут загружены при следующем чтении,
+     * индекс обновлённых товаров исправляется по узлам, перечитанным одним запросом:
+     * сохранённые товары записываются в индекс, отсутствующие в базе данных из индекса удаляются.
+     *
+     * @param ids - идентификаторы изменённых узлов, их предков и удалённых потомков.
+     */
+    public void evictAll(Collection<UUID> ids) {
+        nodeCache.invalidate(ids, ids);
+        if (saleIndex == null) return;
+        final long version = saleIndex.nextVersion();
+        try {
+            final List<Node> nodes = nodeRepository.findAllPlainNodeById(ids);
+            final Set<UUID> removedIds = new HashSet<>(ids);
+            nodes.forEach(node -> removedIds.remove(node.getId()));
+            saleIndex.removeAll(removedIds, version);
+            saleIndex.putAll(nodes, version);
+        } finally {
+            saleIndex.release(version);
+        }
+    }
+
+    /**
+     * Полная очистка кэша и перезагрузка индекса обновлённых товаров, когда оповещения об изменениях
+     * могли быть пропущены, например после переподключения слушателя {@link CacheInvalidationListener}.
+     */
+    public void evictAll() {
+        nodeCache.clear();
+        afterSingletonsInstantiated();
+    }
+
+    /**
+     * Реализация метода поиска узла в полную глубину по идентификатору.
+     * Если в кэше есть всё поддерево узла, оно собирается без обращения к базе данных,
+     * иначе поддерево загружается основным репозиторием и целиком сохраняется в кэш.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return узел со всеми потомками, или {@code null} если узел не найден.
+     */
+    @Override
+    public Node findDepthNodeById(UUID id) {
+        final Node cached = nodeCache.getTree(id);
+        if (cached != null) {
+            log.info("Depth node with id:{} found in cache", id);
+            return cached;
+        }
+        final long generation = nodeCache.getGeneration();
+        final Node result = nodeRepository.findDepthNodeById(id);
+        if (result != null && readFromPrimary()) nodeCache.putTree(result, generation);
+        return result;
+    }
+
+    @Override
+    public int findDepthNodeById(UUID id, Consumer<Node> consumer) {
+        return nodeRepository.findDepthNodeById(id, consumer);
+    }
+
+    @Override
+    public Node findDepthNodeByIdIteratively(UUID id) {
+        return nodeRepository.findDepthNodeByIdIteratively(id);
+    }
+
+    /**
+     * Реализация метода поиска узла без каких-либо потомков по идентификатору
+     * с обращением к базе данных только при промахе кэша.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return узел каталога товаров, или {@code null} если узел не найден.
+     */
+    @Override
+    public Node findPlainNodeById(UUID id) {
+        final Node cached = nodeCache.get(id);
+        if (cached != null) return cached;
+        final long generation = nodeCache.getGeneration();
+        final Node result = nodeRepository.findPlainNodeById(id);
+        if (result != null && readFromPrimary()) nodeCache.putAll(List.of(result), generation);
+        return result;
+    }
+
+    /**
+     * Реализация метода получения версии поддерева узла для условных запросов.
+     * Версия из кэша возвращается без обращения к базе данных, промах загружается основным репозиторием
+     * и сохраняется в кэш до следующей инвалидации.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return версия поддерева, или {@code null} если узел не найден.
+     */
+    @Override
+    public String findVersionById(UUID id) {
+        final String cached = nodeCache.getVersion(id);
+        if (cached != null) return cached;
+        final long generation = nodeCache.getGeneration();
+        final String result = nodeRepository.findVersionById(id);
+        if (result != null && readFromPrimary()) nodeCache.putVersion(id, result, generation);
+        return result;
+    }
+
+    /**
+     * Реализация метода поиска списка узлов без каких-либо потомков по идентификаторам.
+     * Узлы, отсутствующие в кэше, загружаются основным репозиторием одним запросом.
+     *
+     * @param ids - идентификаторы узлов(товаров/категорий).
+     * @return список найденных узлов каталога товаров.
+     */
+    @Override
+    public List<Node> findAllPlainNodeById(Collection<UUID> ids) {
+        final List<Node> result = new ArrayList<>(ids.size());
+        final List<UUID> missIds = new ArrayList<>();
+        for (UUID id : ids) {
+            final Node cached = nodeCache.get(id);
+            if (cached != null) result.add(cached);
+            else missIds.add(id);
+        }
+        if (missIds.isEmpty()) return result;
+        final long generation = nodeCache.getGeneration();
+        final List<Node> loaded = nodeRepository.findAllPlainNodeById(missIds);
+        if (readFromPrimary()) nodeCache.putAll(loaded, generation);
+        result.addAll(loaded);
+        return result;
+    }
+
+    @Override
+    public List<Node> findAllParentNodeById(Collection<UUID> ids) {
+        return nodeRepository.findAllParentNodeById(ids);
+    }
+
+    @Override
+    public Set<UUID> lockAllRootById(Collection<UUID> ids) {
+        return nodeRepository.lockAllRootById(ids);
+    }
+
+    @Override
+    public void lockAll() {
+        nodeRepository.lockAll();
+    }
+
+    @Override
+    public int publishAllChange() {
+        return nodeRepository.publishAllChange();
+    }
+
+    @Override
+    public List<NodeChange> findChangeList(UUID rootId, long cursor, int limit) {
+        return nodeRepository.findChangeList(rootId, cursor, limit);
+    }
+
+    @Override
+    public long findLastChangeCursor() {
+        return nodeRepository.findLastChangeCursor();
+    }
+
+    @Override
+    public int deleteAllChangeBefore(Date date) {
+        return nodeRepository.deleteAllChangeBefore(date);
+    }
+
+    @Override
+    public int save(Node node) {
+        return saveAll(List.of(node));
+    }
+
+    /**
+     * Реализация метода сохранения списка узлов с записью в кэш.
+     * Сохранённые узлы, их прежние и новые родители со всеми предками перечитываются одним запросом
+     * и записываются в кэш после фиксации транзакции, списки потомков прежних и новых родителей удаляются.
+     *
+     * @param nodes - список узлов, который необходимо добавить в каталог.
+     * @return количество сохранённых позиций.
+     */
+    @Override
+    public int saveAll(List<Node> nodes) {
+        final Set<UUID> affectedIds = new HashSet<>();
+        final Set<UUID> parentIds = new HashSet<>();
+        for (Node node : nodes) {
+            affectedIds.add(node.getId());
+            if (node.getParentId() != null) parentIds.add(node.getParentId());
+            if (node.getOldParentId() != null) parentIds.add(node.getOldParentId());
+            final Node cached = nodeCache.peek(node.getId());
+            if (cached != null && cached.getParentId() != null) parentIds.add(cached.getParentId());
+        }
+        affectedIds.addAll(parentIds);
+        nodeCache.invalidate(affectedIds, parentIds);
+
+        final int result = nodeRepository.saveAll(nodes);
+        final List<Node> actualNodes = nodeRepository.findAllParentNodeById(affectedIds);
+        afterCompletion(affectedIds, parentIds, actualNodes);
+        afterCommitSaleIndex((index, version) -> index.putAll(nodes, version));
+        return result;
+    }
+
+    /**
+     * Реализация метода обновления агрегатов всех родительских категорий с записью в кэш.
+     * Обновлённые категории перечитываются одним запросом и записываются в кэш после фиксации транзакции.
+     *
+     * @param id              - идентификатор родительской категории с которой необходимо начать обновление.
+     * @param offerSumDelta   - приращение суммы цен товаров.
+     * @param offerCountDelta - приращение количества товаров.
+     * @return количество обновленных категорий.
+     */
+    @Override
+    public int updateAllParentAggregate(UUID id, long offerSumDelta, int offerCountDelta) {
+        final int result = nodeRepository.updateAllParentAggregate(id, offerSumDelta, offerCountDelta);
+        if (result == 0) return result;
+        final List<Node> actualNodes = nodeRepository.findAllParentNodeById(List.of(id));
+        final List<UUID> actualIds = actualNodes.stream().map(Node::getId).toList();
+        nodeCache.invalidate(actualIds, List.of());
+        afterCompletion(actualIds, List.of(), actualNodes);
+        return result;
+    }
+
+    /**
+     * Реализация метода удаления узла по идентификатору с удалением узла
+     * и списка потомков его родителя из кэша.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return количество удалённых узлов.
+     */
+    @Override
+    public int deleteNodeById(UUID id) {
+        final Node cached = nodeCache.peek(id);
+        final List<UUID> childrenIds = cached == null || cached.getParentId() == null
+                ? List.of(id)
+                : List.of(id, cached.getParentId());
+        nodeCache.invalidate(List.of(id), childrenIds);
+        final int result = nodeRepository.deleteNodeById(id);
+        afterCompletion(committed -> nodeCache.invalidate(List.of(id), childrenIds));
+        afterCommitSaleIndex((index, version) -> index.removeAll(List.of(id), version));
+        return result;
+    }
+
+    /**
+     * Реализация метода удаления всех потомков заданного узла с удалением из кэша
+     * всех узлов, которые могут принадлежать поддереву.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return количество удалённых узлов потомков.
+     */
+    @Override
+    public int deleteAllDescendantById(UUID id) {
+        final Set<UUID> descendantIds = nodeCache.findAllDescendantId(id);
+        final Set<UUID> childrenIds = new HashSet<>(descendantIds);
+        childrenIds.add(id);
+        nodeCache.invalidate(descendantIds, childrenIds);
+        final List<UUID> offerIds = saleIndex == null ? List.of() : nodeRepository.findAllDescendantOfferId(id);
+        final int result = nodeRepository.deleteAllDescendantById(id);
+        afterCompletion(committed -> nodeCache.invalidate(nodeCache.findAllDescendantId(id), childrenIds));
+        afterCommitSaleIndex((index, version) -> index.removeAll(offerIds, version));
+        return result;
+    }
+
+    @Override
+    public int notifyAllChanged(Collection<UUID> ids, boolean descendants) {
+        return nodeRepository.notifyAllChanged(ids, descendants);
+    }
+
+    @Override
+    public List<UUID> findAllDescendantOfferId(UUID id) {
+        return nodeRepository.findAllDescendantOfferId(id);
+    }
+
+    /**
+     * Реализация метода получения товаров, цена которых была обновлена за последние 24 часа включительно
+     * [now() - 24h, now()] от времени переданном в запросе. Если интервал лежит в окне индекса
+     * обновлённых товаров, список собирается из индекса без обращения к базе данных.
+     *
+     * @param date - дата, от которой отсчитываются 24 часа.
+     * @return список товаров которые были обновлены.
+     */
+    @Override
+    public List<Node> findSaleNodeList(Date date) {
+        final List<Node> indexed = saleIndex == null ? null : saleIndex.find(date);
+        if (indexed != null) return indexed;
+        return nodeRepository.findSaleNodeList(date);
+    }
+
+    /**
+     * Реализация метода получения страницы обновлённых товаров. В транзакции страницы читаются из снимка индекса,
+     * взятого первым чтением, а если интервал не лежит в окне индекса - все страницы читаются из базы данных
+     * в снимке её транзакции, поэтому изменения между чтениями страниц не приводят к повтору или пропуску товара.
+     *
+     * @param date  - дата, от которой отсчитываются 24 часа.
+     * @param after - последний товар предыдущей страницы, либо {@code null} для первой страницы.
+     * @param limit - наибольшее количество товаров на странице.
+     * @return товары страницы.
+     */
+    @Override
+    public List<Node> findSaleNodeList(Date date, Node after, int limit) {
+        if (saleIndex != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            final List<Node> snapshot = SaleSnapshot.find(saleIndex, date, () -> saleIndex.find(date));
+            if (snapshot != null) return SaleSnapshot.page(snapshot, after, limit);
+            return nodeRepository.findSaleNodeList(date, after, limit);
+        }
+        final List<Node> indexed = saleIndex == null ? null : saleIndex.find(date, after, limit);
+        if (indexed != null) return indexed;
+        return nodeRepository.findSaleNodeList(date, after, limit);
+    }
+
+    @Override
+    public void findRecentOfferNodeList(Duration window, Consumer<Node> consumer) {
+        nodeRepository.findRecentOfferNodeList(window, consumer);
+    }
+
+    @Override
+    public List<UUID> findAllRootId() {
+        return nodeRepository.findAllRootId();
+    }
+
+    @Override
+    public List<Node> findStatisticNodeList(UUID id, Date dateStart, Date dateEnd) {
+        return nodeRepository.findStatisticNodeList(id, dateStart, dateEnd);
+    }
+
+    /**
+     * Приватный метод проверки, что узлы прочитаны из основной базы данных и могут быть сохранены в кэш.
+     *
+     * @return {@code false} если чтение выполнено в транзакции только для чтения при включенной реплике.
+     */
+    private boolean readFromPrimary() {
+        return !replicaEnabled || !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * Приватный метод выполнения действия над кэшем после завершения текущей транзакции.
+     * Вне транзакции действие выполняется сразу, как после успешной фиксации.
+     *
+     * @param action - действие, принимающее признак успешной фиксации транзакции.
+     */
+    private void afterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    /**
+     * Приватный метод записи изменённых узлов в кэш после завершения текущей транзакции.
+     * Узлы и списки потомков удаляются из кэша в любом случае, а после фиксации актуальные узлы записываются
+     * с версией изменения, выданной перед фиксацией, пока транзакция удерживает блокировки изменённых строк,
+     * так что обработчик более старой транзакции не перезапишет узлы, записанные более новой.
+     * Вне транзакции узлы записываются сразу с новой версией.
+     *
+     * @param nodeIds     - идентификаторы узлов, которые необходимо удалить из кэша.
+     * @param childrenIds - идентификаторы категорий, списки потомков которых необходимо удалить из кэша.
+     * @param actualNodes - актуальные узлы, прочитанные внутри транзакции.
+     */
+    private void afterCompletion(Collection<UUID> nodeIds, Collection<UUID> childrenIds, List<Node> actualNodes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            nodeCache.invalidate(nodeIds, childrenIds);
+            nodeCache.writeAll(actualNodes);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long version;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                version = nodeCache.nextVersion();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    nodeCache.invalidate(nodeIds, childrenIds);
+                    if (status == STATUS_COMMITTED && version != 0) nodeCache.writeAll(actualNodes, version);
+                } finally {
+                    if (version != 0) nodeCache.release(version);
+                }
+            }
+        });
+    }
+
+    /**
+     * Приватный метод изменения индекса обновлённых товаров после фиксации текущей транзакции.
+     * Версия изменения выдаётся перед фиксацией, пока транзакция удерживает блокировки изменённых строк,
+     * и освобождается после применения изменения либо отката транзакции.
+     * Вне транзакции изменение применяется сразу с новой версией.
+     *
+     * @param action - изменение индекса, принимающее индекс и версию изменения.
+     */
+    private void afterCommitSaleIndex(BiConsumer<SaleIndex, Long> action) {
+        if (saleIndex == null) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            final long version = saleIndex.nextVersion();
+            try {
+                action.accept(saleIndex, version);
+            } finally {
+                saleIndex.release(version);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long version;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                version = saleIndex.nextVersion();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (version == 0) return;
+                try {
+                    if (status == STATUS_COMMITTED) action.accept(saleIndex, version);
+                } finally {
+                    saleIndex.release(version);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Компактное внутреннее представление узла каталога без потомков для долгого хранения в памяти.
+ * Идентификаторы хранятся парами long, цена примитивом с признаком отсутствия,
+ * дата количеством миллисекунд от начала эпохи, тип одним байтом.
+ * В отличие от {@link Node} не содержит объектов-обёрток, поэтому занимает одно выделение памяти
+ * (не считая названия) вместо шести.
+ *
+ * @author Stepanenko Stanislav
+ */
+public record CompactNode(
+        long idMostSigBits,
+        long idLeastSigBits,
+        long parentIdMostSigBits,
+        long parentIdLeastSigBits,
+        boolean hasParent,
+        int price,
+        boolean hasPrice,
+        long date,
+        boolean hasDate,
+        byte type,
+        String name,
+        int offerCount,
+        long offerSum) {
+
+    private static final byte CATEGORY = 0;
+    private static final byte OFFER = 1;
+
+    /**
+     * Преобразование узла в компактное представление. Потомки узла не сохраняются.
+     *
+     * @param node - узел каталога.
+     * @return компактное представление узла.
+     */
+    public static CompactNode of(Node node) {
+        final UUID parentId = node.getParentId();
+        return new CompactNode(
+                node.getId().getMostSignificantBits(),
+                node.getId().getLeastSignificantBits(),
+                parentId == null ? 0 : parentId.getMostSignificantBits(),
+                parentId == null ? 0 : parentId.getLeastSignificantBits(),
+                parentId != null,
+                node.getPrice() == null ? 0 : node.getPrice(),
+                node.getPrice() != null,
+                node.getDate() == null ? 0 : node.getDate().getTime(),
+                node.getDate() != null,
+                NodeType.CATEGORY.equals(node.getType()) ? CATEGORY : OFFER,
+                node.getName(),
+                node.getOfferCount(),
+                node.getSum());
+    }
+
+    public UUID id() {
+        return new UUID(idMostSigBits, idLeastSigBits);
+    }
+
+    public UUID parentId() {
+        return hasParent ? new UUID(parentIdMostSigBits, parentIdLeastSigBits) : null;
+    }
+
+    public boolean isCategory() {
+        return type == CATEGORY;
+    }
+
+    /**
+     * Проверка, является ли узел непосредственным потомком заданной категории, без создания UUID.
+     *
+     * @param id - идентификатор категории.
+     * @return {@code true} если родитель узла совпадает с категорией.
+     */
+    public boolean isChildOf(UUID id) {
+        return hasParent
+                && parentIdMostSigBits == id.getMostSignificantBits()
+                && parentIdLeastSigBits == id.getLeastSignificantBits();
+    }
+
+    /**
+     * Преобразование в узел API без потомков. Прежний родитель совпадает с текущим,
+     * так же как у узлов, прочитанных из базы данных.
+     *
+     * @return узел каталога.
+     */
+    public Node toNode() {
+        final UUID parentId = parentId();
+        return new Node(
+                id(),
+                isCategory() ? NodeType.CATEGORY : NodeType.OFFER,
+                name,
+                parentId,
+                parentId,
+                hasPrice ? price : null,
+                hasDate ? new Date(date) : null,
+                null,
+                offerCount,
+                offerSum);
+    }
+}
@@ -0,0 +1,936 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeChange;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.product.catalog.analyzer.enrollment.repository.EmbeddedNodeStore.ChangeRecord;
+import org.product.catalog.analyzer.enrollment.repository.EmbeddedNodeStore.HistoryRecord;
+import org.product.catalog.analyzer.enrollment.repository.EmbeddedNodeStore.NodeRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Встроенная реализация интерфейса взаимодействия приложения с хранилищем каталога для одного экземпляра
+ * приложения без Postgres, включается профилем {@code embedded}. Каталог целиком хранится в памяти
+ * в {@link EmbeddedNodeStore}, изменения каждой транзакции дописываются одним кадром
+ * в отображённый в память журнал {@link WriteAheadLog} до её фиксации, а состояние хранилища
+ * периодически ({@code repository.embedded.snapshot-interval}) и при заполнении половины журнала
+ * ({@code repository.embedded.wal-size}) записывается в снимок, после чего журнал начинается заново.
+ * При старте хранилище восстанавливается из последнего снимка и журнала, записанного после него.
+ * <p>
+ * Чтение выполняется под блокировкой чтения, изменение захватывает блокировку записи до конца
+ * транзакции Spring, которая открывается {@link EmbeddedTransactionManager}: при откате транзакции
+ * изменения в памяти отменяются в обратном порядке. Блокировка записи общая для всего каталога,
+ * поэтому блокировки корней {@link #lockAllRootById(Collection)} сводятся к ней.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Repository
+@Profile("embedded")
+public class EmbeddedNodeRepository implements NodeRepository {
+    final private static String SNAPSHOT = "catalog.snapshot";
+    final private static String SNAPSHOT_TMP = "catalog.snapshot.tmp";
+    final private static String LOG = "catalog.wal";
+    final private static int SNAPSHOT_MAGIC = 0x4e534e31;
+    final private static byte NODE_PUT = 1;
+    final private static byte NODE_REMOVE = 2;
+    final private static byte HISTORY_PUT = 3;
+    final private static byte CHANGE_PUT = 4;
+    final private static byte CHANGE_PRUNE = 5;
+    final private static long SALE_PERIOD = TimeUnit.HOURS.toMillis(24);
+
+    private final Path directory;
+    private final int walSize;
+    private final Duration snapshotInterval;
+    private final boolean fsync;
+    private final RepositoryMetrics metrics;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private final Object saleSnapshotKey = new Object();
+    private EmbeddedNodeStore store = new EmbeddedNodeStore();
+    private WriteAheadLog wal;
+    private ScheduledExecutorService executor;
+    @Value("${repository.change-feed.enabled:true}")
+    private boolean changeFeed = true;
+
+    public EmbeddedNodeRepository(@Value("${repository.embedded.directory:data}") String directory,
+                                  @Value("${repository.embedded.wal-size:64MB}") DataSize walSize,
+                                  @Value("${repository.embedded.snapshot-interval:5m}") Duration snapshotInterval,
+                                  @Value("${repository.embedded.fsync:true}") boolean fsync,
+                                  RepositoryMetrics metrics) {
+        this.directory = Paths.get(directory);
+        this.walSize = (int) Math.min(walSize.toBytes(), Integer.MAX_VALUE);
+        this.snapshotInterval = snapshotInterval;
+        this.fsync = fsync;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Восстановление хранилища из снимка и журнала. Журнал применяется, только если его поколение
+     * совпадает с поколением снимка: журнал другого поколения остался от сбоя между записью снимка
+     * и сбросом журнала, и все его изменения уже есть в снимке.
+     */
+    @PostConstruct
+    public void open() {
+        final long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(directory);
+            final Path snapshotFile = directory.resolve(SNAPSHOT);
+            final long generation = Files.exists(snapshotFile) ? readSnapshot(snapshotFile) : 0;
+            wal = new WriteAheadLog(directory.resolve(LOG), walSize, fsync);
+            int frames = 0;
+            if (wal.getGeneration() == generation) {
+                frames = wal.replay(this::redo);
+            } else {
+                log.warn("Write-ahead log of generation {} is discarded, snapshot generation is {}", wal.getGeneration(), generation);
+                wal.reset(generation);
+            }
+            final Duration duration = Duration.ofNanos(System.nanoTime() - start);
+            metrics.timer("recover").record(duration);
+            log.info("Embedded catalog with {} nodes is recovered from snapshot {} and {} log frames in {} ms",
+                    store.size(), generation, frames, duration.toMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Embedded catalog is failed to open in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "embedded-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!snapshotInterval.isZero() && !snapshotInterval.isNegative()) {
+            executor.scheduleWithFixedDelay(this::scheduledSnapshot,
+                    snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Остановка хранилища: после завершения фоновых снимков записывается последний снимок,
+     * поэтому следующий старт не применяет журнал.
+     */
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        snapshot();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Запись снимка хранилища под блокировкой чтения: чтение каталога продолжается,
+     * изменения ожидают окончания записи. Снимок записывается во временный файл и атомарно
+     * заменяет предыдущий, после чего журнал сбрасывается с поколением нового снимка.
+     */
+    public synchronized void snapshot() {
+        lock.readLock().lock();
+        try {
+            final long start = System.nanoTime();
+            final long generation = wal.getGeneration() + 1;
+            writeSnapshot(generation);
+            wal.reset(generation);
+            log.info("Snapshot {} of {} nodes is written in {} ms",
+                    generation, store.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Snapshot is failed to write in " + directory, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Реализация метода поиска узла в полную глубину по идентификатору обходом индекса потомков.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return узел со всеми потомками, или {@code null} если узел не найден.
+     */
+    @Override
+    public Node findDepthNodeById(UUID id) {
+        return metrics.timed("findDepthNodeById", () -> {
+            log.info("Start find depth node by id:{}", id);
+            final List<Node> subtree = read(() -> findSubtree(id));
+            final Node result = NodeRepositoryImpl.buildTree(id, subtree);
+            log.info("Finish find depth node by id:{} with {} nodes", id, subtree.size());
+            return result;
+        });
+    }
+
+    /**
+     * Реализация метода поиска узла в полную глубину, совпадает с {@link #findDepthNodeById(UUID)}.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return узел со всеми потомками, или {@code null} если узел не найден.
+     */
+    @Override
+    public Node findDepthNodeByIdIteratively(UUID id) {
+        return findDepthNodeById(id);
+    }
+
+    /**
+     * Реализация метода потокового поиска узла в полную глубину по идентификатору.
+     * Поддерево копируется под блокировкой чтения, а обработчику передаётся после её снятия,
+     * чтобы медленный клиент не задерживал изменения каталога.
+     *
+     * @param id       - идентификатор корневого узла(товара/категории).
+     * @param consumer - обработчик, которому передаётся каждый узел поддерева.
+     * @return количество узлов поддерева, {@code 0} если узел не найден.
+     */
+    @Override
+    public int findDepthNodeById(UUID id, Consumer<Node> consumer) {
+        return metrics.timed("findDepthNodeByIdStreaming", () -> {
+            final List<Node> subtree = read(() -> findSubtree(id));
+            subtree.forEach(consumer);
+            return subtree.size();
+        });
+    }
+
+    @Override
+    public Node findPlainNodeById(UUID id) {
+        return read(() -> {
+            final NodeRecord record = store.get(id);
+            return record == null ? null : toNode(record);
+        });
+    }
+
+    @Override
+    public String findVersionById(UUID id) {
+        return read(() -> {
+            final NodeRecord record = store.get(id);
+            return record == null ? null : NodeRepositoryImpl.version(record.date(), record.version());
+        });
+    }
+
+    @Override
+    public List<Node> findAllPlainNodeById(Collection<UUID> ids) {
+        return read(() -> {
+            final List<Node> result = new ArrayList<>();
+            for (UUID id : new LinkedHashSet<>(ids)) {
+                final NodeRecord record = store.get(id);
+                if (record != null) result.add(toNode(record));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public List<Node> findAllParentNodeById(Collection<UUID> ids) {
+        return read(() -> {
+            final Map<UUID, Node> result = new LinkedHashMap<>();
+            for (UUID id : ids) {
+                final List<NodeRecord> ancestors = store.findAllAncestor(id);
+                for (int i = ancestors.size() - 1; i >= 0; i--) {
+                    result.computeIfAbsent(ancestors.get(i).id(), key -> toNode(store.get(key)));
+                }
+            }
+            return new ArrayList<>(result.values());
+        });
+    }
+
+    /**
+     * Реализация метода блокировки корневых категорий: блокировка записи встроенного хранилища
+     * общая для всего каталога и удерживается до конца транзакции.
+     *
+     * @param ids - идентификаторы узлов(товаров/категорий).
+     * @return идентификаторы корней узлов.
+     */
+    @Override
+    public Set<UUID> lockAllRootById(Collection<UUID> ids) {
+        final Set<UUID> nodeIds = new HashSet<>(ids);
+        nodeIds.remove(null);
+        if (nodeIds.isEmpty()) return new HashSet<>();
+        return metrics.timed("lockAllRootById", () -> {
+            return write(unit -> {
+                final Set<UUID> result = new HashSet<>();
+                for (UUID id : nodeIds) {
+                    final UUID[] path = store.path(id);
+                    result.add(path == null ? id : path[0]);
+                }
+                log.info("Locked {} roots of {} nodes", result.size(), nodeIds.size());
+                return result;
+            });
+        });
+    }
+
+    @Override
+    public void lockAll() {
+        metrics.timed("lockAll", () -> {
+            write(unit -> null);
+        });
+    }
+
+    /**
+     * Встроенное хранилище обслуживает один экземпляр приложения, оповещать некого.
+     *
+     * @param ids         - идентификаторы изменяемых узлов и их новых родителей.
+     * @param descendants - признак оповещения и обо всех потомках узлов.
+     * @return {@code 0}.
+     */
+    @Override
+    public int notifyAllChanged(Collection<UUID> ids, boolean descendants) {
+        return 0;
+    }
+
+    @Override
+    public int save(Node node) {
+        log.info("Start save node:{}", node.getId());
+        final int result = saveAll(List.of(node));
+        log.info("Finish save node:{}", node.getId());
+        return result;
+    }
+
+    /**
+     * Реализация метода сохранения списка узлов тем же алгоритмом, что и {@link NodeRepositoryImpl#saveAll(List)}:
+     * агрегаты и пути вычисляются в памяти общими методами, новое состояние каждого узла
+     * записывается в хранилище и журнал один раз, после чего обновляются даты предков, история и лента изменений.
+     *
+     * @param nodes - список узлов, который необходимо добавить в каталог.
+     * @return количество сохранённых позиций.
+     */
+    @Override
+    public int saveAll(List<Node> nodes) {
+        return metrics.timed("saveAll", () -> {
+            log.info("Start save nodes!");
+            final int count = write(unit -> saveAll(unit, nodes));
+            log.info("Finish save {} nodes!", count);
+            return count;
+        });
+    }
+
+    private int saveAll(Unit unit, List<Node> nodes) {
+        final Date updateDate = nodes.get(0).getDate();
+        final Map<UUID, NodeRepositoryImpl.Aggregate> aggregates = new HashMap<>();
+        for (Node node : nodes) {
+            putAllAncestorAggregate(aggregates, node.getId());
+            putAllAncestorAggregate(aggregates, node.getParentId());
+        }
+        NodeRepositoryImpl.moveAllAggregate(nodes, aggregates);
+        final Map<UUID, UUID[]> pathMap = new HashMap<>();
+        nodes.forEach(node -> pathMap.put(node.getId(), NodeRepositoryImpl.buildPath(aggregates, node.getId())));
+        final Set<UUID> affectedIdSet = NodeRepositoryImpl.findAllAffectedId(nodes, aggregates, pathMap);
+
+        final Map<UUID, NodeRecord> pending = new LinkedHashMap<>();
+        nodes.stream()
+                .sorted(Comparator.comparingInt(node -> pathMap.get(node.getId()).length))
+                .forEach(node -> {
+                    final NodeRecord stored = store.get(node.getId());
+                    final NodeRepositoryImpl.Aggregate aggregate = aggregates.get(node.getId());
+                    pending.put(node.getId(), new NodeRecord(node.getId(), node.getType(), node.getName(), node.getParentId(),
+                            node.getPrice(), copy(node.getDate()), aggregate.offerSum, aggregate.offerCount,
+                            stored == null ? 0 : stored.version()));
+                });
+        aggregates.forEach((id, aggregate) -> {
+            if (pending.containsKey(id) || !aggregate.isChanged()) return;
+            final NodeRecord stored = store.get(id);
+            if (stored != null) pending.put(id, stored.withAggregate(aggregate.offerSum, aggregate.offerCount));
+        });
+        for (UUID id : affectedIdSet) {
+            final NodeRecord record = pending.containsKey(id) ? pending.get(id) : store.get(id);
+            if (record != null) pending.put(id, record.withVersion(record.version() + 1));
+        }
+        pending.values().forEach(unit::putNode);
+
+        final Set<UUID> parentCategorySet = new HashSet<>();
+        for (Node node : nodes) {
+            if (NodeType.CATEGORY.equals(node.getType()) && !store.hasChildren(node.getId())) continue;
+            parentCategorySet.add(node.getParentId());
+            parentCategorySet.add(node.getOldParentId());
+        }
+        parentCategorySet.remove(null);
+        updateAllParentCategory(unit, parentCategorySet, updateDate);
+        saveAllHistory(unit, nodes, parentCategorySet);
+        if (changeFeed) {
+            nodes.stream()
+                    .filter(node -> aggregates.get(node.getId()).initialPath != null)
+                    .filter(node -> !Arrays.equals(aggregates.get(node.getId()).initialPath, pathMap.get(node.getId())))
+                    .forEach(node -> {
+                        final UUID[] initialPath = aggregates.get(node.getId()).initialPath;
+                        addChange(unit, NodeChange.DELETE, store.get(node.getId()),
+                                initialPath.length > 1 ? initialPath[initialPath.length - 2] : null, initialPath);
+                    });
+            affectedIdSet.stream()
+                    .map(store::get)
+                    .filter(Objects::nonNull)
+                    .map(record -> Map.entry(record, store.path(record.id())))
+                    .sorted(Comparator.comparingInt(entry -> entry.getValue().length))
+                    .forEach(entry -> addChange(unit, NodeChange.UPSERT, entry.getKey(), entry.getValue()));
+        }
+        return nodes.size();
+    }
+
+    /**
+     * Приватный метод обновления даты всех предков родительских категорий импорта включительно,
+     * общие предки обновляются один раз, совпадающая дата не перезаписывается.
+     *
+     * @param unit       - изменения текущей транзакции.
+     * @param ids        - идентификаторы родительских категорий.
+     * @param updateDate - дата обновления.
+     */
+    private void updateAllParentCategory(Unit unit, Set<UUID> ids, Date updateDate) {
+        if (updateDate == null) return;
+        final Set<UUID> visited = new HashSet<>();
+        for (UUID id : ids) {
+            for (NodeRecord record : store.findAllAncestor(id)) {
+                if (!visited.add(record.id())) continue;
+                if (record.date() == null || record.date().getTime() != updateDate.getTime()) {
+                    unit.putNode(record.withDate(copy(updateDate)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Приватный метод записи в историю текущего состояния импортируемых узлов и всех предков
+     * их родительских категорий, для категорий записывается средняя цена.
+     *
+     * @param unit              - изменения текущей транзакции.
+     * @param nodes             - список импортируемых узлов.
+     * @param parentCategorySet - идентификаторы родительских категорий импорта.
+     */
+    private void saveAllHistory(Unit unit, List<Node> nodes, Set<UUID> parentCategorySet) {
+        final Set<UUID> ids = new LinkedHashSet<>(parentCategorySet);
+        nodes.forEach(node -> ids.add(node.getId()));
+        final Set<UUID> visited = new HashSet<>();
+        for (UUID id : ids) {
+            for (NodeRecord record : store.findAllAncestor(id)) {
+                if (!visited.add(record.id()) || record.date() == null) continue;
+                unit.putHistory(new HistoryRecord(record.id(), record.type(), record.name(), record.parentId(),
+                        record.averagePrice(), record.date()));
+            }
+        }
+    }
+
+    /**
+     * Приватный метод загрузки агрегатов и путей узла и всех его предков, ещё не загруженных в карту.
+     *
+     * @param aggregates - агрегаты узлов и их предков до импорта.
+     * @param id         - идентификатор узла, либо {@code null}.
+     */
+    private void putAllAncestorAggregate(Map<UUID, NodeRepositoryImpl.Aggregate> aggregates, UUID id) {
+        if (id == null || aggregates.containsKey(id)) return;
+        final UUID[] path = store.path(id);
+        if (path == null) return;
+        for (int i = 0; i < path.length; i++) {
+            if (aggregates.containsKey(path[i])) continue;
+            final NodeRecord record = store.get(path[i]);
+            aggregates.put(path[i], new NodeRepositoryImpl.Aggregate(record.parentId(), record.offerSum(), record.offerCount(),
+                    Arrays.copyOf(path, i + 1)));
+        }
+    }
+
+    @Override
+    public int updateAllParentAggregate(UUID id, long offerSumDelta, int offerCountDelta) {
+
+        if (id == null || (offerSumDelta == 0 && offerCountDelta == 0)) return 0;
+
+        log.info("Start to update aggregate of all parent category begins with ID: {}", id);
+        final int result = write(unit -> {
+            final List<NodeRecord> ancestors = store.findAllAncestor(id);
+            for (NodeRecord record : ancestors) {
+                unit.putNode(record.withAggregate(record.offerSum() + offerSumDelta, record.offerCount() + offerCountDelta));
+            }
+            return ancestors.size();
+        });
+        log.info("{} parent category aggregate update begins with ID: {}", result, id);
+        return result;
+    }
+
+    /**
+     * Реализация метода удаления узла по идентификатору: в ленту изменений записывается удаление узла
+     * и новое состояние его предков, счётчик изменений предков увеличивается, потомки узла остаются в хранилище.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return количество удалённых узлов.
+     */
+    @Override
+    public int deleteNodeById(UUID id) {
+        log.info("Start to delete only root node with ID: {}", id);
+        return write(unit -> {
+            final List<NodeRecord> ancestors = store.findAllAncestor(id);
+            if (ancestors.isEmpty()) return 0;
+            final UUID[] path = store.path(id);
+            for (int i = ancestors.size() - 1; i >= 0; i--) {
+                final NodeRecord record = ancestors.get(i);
+                if (changeFeed) {
+                    addChange(unit, i == ancestors.size() - 1 ? NodeChange.DELETE : NodeChange.UPSERT, record,
+                            Arrays.copyOf(path, i + 1));
+                }
+                if (i < ancestors.size() - 1) unit.putNode(record.withVersion(record.version() + 1));
+            }
+            unit.removeNode(id);
+            return 1;
+        });
+    }
+
+    @Override
+    public List<UUID> findAllDescendantOfferId(UUID id) {
+        return read(() -> {
+            final List<UUID> result = new ArrayList<>();
+            store.forEachDescendant(id, false, (record, depth) -> {
+                if (NodeType.OFFER.equals(record.type())) result.add(record.id());
+            });
+            return result;
+        });
+    }
+
+    /**
+     * Метод удаляет всех потомков заданного узла, начиная с самых глубоких,
+     * предварительно записывая их удаление в ленту изменений.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return количество удалённых узлов потомков.
+     */
+    @Override
+    public int deleteAllDescendantById(UUID id) {
+        return metrics.timed("deleteAllDescendantById", () -> {
+            log.info("Start to delete all descendants node with ID: {}", id);
+            return write(unit -> {
+                final List<Map.Entry<NodeRecord, Integer>> descendants = new ArrayList<>();
+                store.forEachDescendant(id, false, (record, depth) -> descendants.add(Map.entry(record, depth)));
+                descendants.sort(Comparator.comparingInt(entry -> -entry.getValue()));
+                for (Map.Entry<NodeRecord, Integer> entry : descendants) {
+                    if (changeFeed) addChange(unit, NodeChange.DELETE, entry.getKey(), store.path(entry.getKey().id()));
+                    unit.removeNode(entry.getKey().id());
+                }
+                return descendants.size();
+            });
+        });
+    }
+
+    @Override
+    public List<Node> findSaleNodeList(Date date) {
+        return findSaleNodeList(date, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Реализация метода получения страницы товаров, обновлённых за интервал [date - 24h, date] включительно,
+     * полным просмотром хранилища под блокировкой чтения. Товары упорядочиваются по дате обновления
+     * и идентификатору в том же порядке, что и в базе данных. В транзакции хранилище просматривается
+     * один раз, и страницы читаются из снимка, взятого первым чтением.
+     *
+     * @param date  - дата, от которой отсчитываются 24 часа.
+     * @param after - последний товар предыдущей страницы, либо {@code null} для первой страницы.
+     * @param limit - наибольшее количество товаров на странице.
+     * @return товары страницы.
+     */
+    @Override
+    public List<Node> findSaleNodeList(Date date, Node after, int limit) {
+        return metrics.timed("findSaleNodeList", () -> {
+            log.info("Start find sale nodes by date: {} after: {}", date, after == null ? null : after.getId());
+            final long end = date.getTime();
+            final List<Node> snapshot = SaleSnapshot.find(saleSnapshotKey, date, () -> findOffers(end - SALE_PERIOD, end)
+                    .stream()
+                    .sorted(SaleSnapshot.ORDER)
+                    .toList());
+            return SaleSnapshot.page(snapshot, after, limit);
+        });
+    }
+
+    @Override
+    public void findRecentOfferNodeList(Duration window, Consumer<Node> consumer) {
+        log.info("Start find offer nodes updated within {} of the latest update", window);
+        final List<Node> result = read(() -> {
+            final long[] latest = {Long.MIN_VALUE};
+            store.forEach(record -> {
+                if (NodeType.OFFER.equals(record.type()) && record.date() != null) {
+                    latest[0] = Math.max(latest[0], record.date().getTime());
+                }
+            });
+            if (latest[0] == Long.MIN_VALUE) return Collections.<Node>emptyList();
+            return findOffers(latest[0] - window.toMillis(), Long.MAX_VALUE);
+        });
+        result.forEach(consumer);
+    }
+
+    @Override
+    public List<UUID> findAllRootId() {
+        return read(() -> {
+            final List<UUID> result = new ArrayList<>();
+            store.forEach(record -> {
+                if (record.parentId() == null) result.add(record.id());
+            });
+            return result;
+        });
+    }
+
+    /**
+     * Реализация метода публикации изменений узлов. Изменения встроенного хранилища
+     * получают курсор при фиксации под блокировкой записи и публикуются сразу.
+     *
+     * @return {@code 0}, так как неопубликованных изменений нет.
+     */
+    @Override
+    public int publishAllChange() {
+        return 0;
+    }
+
+    @Override
+    public List<NodeChange> findChangeList(UUID rootId, long cursor, int limit) {
+        return metrics.timed("findChangeList", () -> {
+            return read(() -> store.findChanges(rootId, cursor, limit));
+        });
+    }
+
+    @Override
+    public long findLastChangeCursor() {
+        return read(store::getLastChangeSeq);
+    }
+
+    @Override
+    public int deleteAllChangeBefore(Date date) {
+        return write(unit -> unit.pruneChanges(date.getTime()));
+    }
+
+    @Override
+    public List<Node> findStatisticNodeList(UUID id, Date dateStart, Date dateEnd) {
+        log.info("Start find statistic of node with ID: {} from {} to {}", id, dateStart, dateEnd);
+        return read(() -> {
+            NavigableMap<Long, HistoryRecord> history = store.findHistory(id);
+            if (dateStart != null) history = history.tailMap(dateStart.getTime(), true);
+            if (dateEnd != null) history = history.headMap(dateEnd.getTime(), false);
+            final List<Node> result = new ArrayList<>(history.size());
+            for (HistoryRecord record : history.values()) {
+                result.add(new Node(record.id(), record.type(), record.name(), record.parentId(), record.parentId(),
+                        record.price(), copy(record.date()), null, 0, 0));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Приватный метод поиска товаров с датой обновления в интервале [start, end] включительно.
+     * Вызывается под блокировкой чтения либо сам её захватывает.
+     *
+     * @param start - начало интервала в миллисекундах.
+     * @param end   - конец интервала в миллисекундах.
+     * @return список товаров.
+     */
+    private List<Node> findOffers(long start, long end) {
+        return read(() -> {
+            final List<Node> result = new ArrayList<>();
+            store.forEach(record -> {
+                if (!NodeType.OFFER.equals(record.type()) || record.date() == null) return;
+                final long time = record.date().getTime();
+                if (time >= start && time <= end) result.add(toNode(record));
+            });
+            return result;
+        });
+    }
+
+    /**
+     * Приватный метод копирования поддерева узла в порядке обхода в глубину, вызывается под блокировкой чтения.
+     *
+     * @param id - идентификатор корня поддерева.
+     * @return узлы поддерева без потомков, пустой список если узел не найден.
+     */
+    private List<Node> findSubtree(UUID id) {
+        if (store.get(id) == null) return Collections.emptyList();
+        final List<Node> result = new ArrayList<>();
+        store.forEachDescendant(id, true, (record, depth) -> result.add(toNode(record)));
+        return result;
+    }
+
+    private void addChange(Unit unit, String operation, NodeRecord record, UUID[] path) {
+        addChange(unit, operation, record, record.parentId(), path);
+    }
+
+    private void addChange(Unit unit, String operation, NodeRecord record, UUID parentId, UUID[] path) {
+        unit.addChange(new ChangeRecord(new NodeChange(store.getLastChangeSeq() + 1, operation, record.id(), record.type(),
+                record.name(), parentId, record.averagePrice(), copy(record.date()), path), System.currentTimeMillis()));
+    }
+
+    private static Node toNode(NodeRecord record) {
+        return new Node(record.id(), record.type(), record.name(), record.parentId(), record.parentId(),
+                record.averagePrice(), copy(record.date()), null, record.offerCount(), record.offerSum());
+    }
+
+    private static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Приватный метод выполнения изменения хранилища. Внутри транзакции Spring блокировка записи
+     * захватывается при первом изменении и освобождается после завершения транзакции, изменения
+     * записываются в журнал перед фиксацией и отменяются при откате. Вне транзакции каждый вызов
+     * фиксируется сразу.
+     *
+     * @param action - изменение хранилища.
+     * @return результат изменения.
+     */
+    private <T> T write(Function<Unit, T> action) {
+        final Unit current = (Unit) TransactionSynchronizationManager.getResource(this);
+        if (current != null) return action.apply(current);
+        lock.writeLock().lock();
+        final Unit unit = new Unit();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.bindResource(this, unit);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    unit.commit();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status != STATUS_COMMITTED) unit.rollback();
+                    } finally {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(EmbeddedNodeRepository.this);
+                        unlock();
+                    }
+                }
+            });
+            return action.apply(unit);
+        }
+        try {
+            final T result = action.apply(unit);
+            unit.commit();
+            return result;
+        } catch (RuntimeException | Error e) {
+            unit.rollback();
+            throw e;
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Приватный метод освобождения блокировки записи. При заполнении половины журнала
+     * запись снимка запускается в фоне, пока в отображении журнала есть место для новых транзакций.
+     * После закрытия репозитория снимок в фоне не запускается.
+     */
+    private void unlock() {
+        final boolean full = wal.getSize() > walSize / 2;
+        lock.writeLock().unlock();
+        if (full && !executor.isShutdown() && snapshotScheduled.compareAndSet(false, true)) {
+            executor.execute(this::scheduledSnapshot);
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Snapshot is failed!", e);
+        } finally {
+            snapshotScheduled.set(false);
+        }
+    }
+
+    /**
+     * Приватный метод чтения снимка с проверкой контрольной суммы.
+     *
+     * @param file - файл снимка.
+     * @return поколение снимка.
+     * @throws IOException если снимок не удалось прочитать либо он повреждён.
+     */
+    private long readSnapshot(Path file) throws IOException {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            final CheckedInputStream checked = new CheckedInputStream(input, new CRC32());
+            final DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("File " + file + " is not a snapshot");
+            final long generation = in.readLong();
+            final EmbeddedNodeStore snapshot = EmbeddedNodeStore.read(in);
+            final int checksum = (int) checked.getChecksum().getValue();
+            if (in.readInt() != checksum) throw new IOException("Snapshot " + file + " is corrupted");
+            store = snapshot;
+            return generation;
+        }
+    }
+
+    private void writeSnapshot(long generation) throws IOException {
+        final Path tmp = directory.resolve(SNAPSHOT_TMP);
+        try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            final CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)), new CRC32());
+            final DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(generation);
+            store.write(out);
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT), REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    /**
+     * Приватный метод применения кадра журнала при восстановлении.
+     *
+     * @param frame - тело кадра.
+     */
+    private void redo(ByteBuffer frame) {
+        final byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            while (in.available() > 0) {
+                final byte operation = in.readByte();
+                switch (operation) {
+                    case NODE_PUT -> store.putNode(EmbeddedNodeStore.readNode(in));
+                    case NODE_REMOVE -> store.removeNode(EmbeddedNodeStore.readUuid(in));
+                    case HISTORY_PUT -> store.putHistory(EmbeddedNodeStore.readHistory(in));
+                    case CHANGE_PUT -> store.addChange(EmbeddedNodeStore.readChange(in));
+                    case CHANGE_PRUNE -> store.pruneChanges(in.readLong());
+                    default -> throw new IOException("Unknown write-ahead log operation: " + operation);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Запись операции журнала в тело кадра.
+     */
+    private interface Redo {
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Изменения одной транзакции: операции отмены в памяти и тело кадра журнала.
+     */
+    private final class Unit {
+        private final List<Runnable> undo = new ArrayList<>();
+        private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(frame);
+
+        void putNode(NodeRecord record) {
+            final NodeRecord previous = store.get(record.id());
+            store.putNode(record);
+            undo.add(previous == null ? () -> store.removeNode(record.id()) : () -> store.putNode(previous));
+            append(NODE_PUT, output -> EmbeddedNodeStore.writeNode(output, record));
+        }
+
+        void removeNode(UUID id) {
+            final NavigableMap<Long, HistoryRecord> history = store.findHistory(id);
+            final NodeRecord previous = store.removeNode(id);
+            if (previous == null) return;
+            undo.add(() -> {
+                store.putNode(previous);
+                store.restoreHistory(id, history);
+            });
+            append(NODE_REMOVE, output -> EmbeddedNodeStore.writeUuid(output, id));
+        }
+
+        void putHistory(HistoryRecord record) {
+            final HistoryRecord previous = store.putHistory(record);
+            undo.add(previous == null ? () -> store.removeHistory(record.id(), record.date()) : () -> store.putHistory(previous));
+            append(HISTORY_PUT, output -> EmbeddedNodeStore.writeHistory(output, record));
+        }
+
+        void addChange(ChangeRecord record) {
+            store.addChange(record);
+            undo.add(store::removeLastChange);
+            append(CHANGE_PUT, output -> EmbeddedNodeStore.writeChange(output, record));
+        }
+
+        int pruneChanges(long before) {
+            final List<ChangeRecord> removed = store.pruneChanges(before);
+            if (removed.isEmpty()) return 0;
+            undo.add(() -> store.restoreChanges(removed));
+            append(CHANGE_PRUNE, output -> output.writeLong(before));
+            return removed.size();
+        }
+
+        void commit() {
+            if (frame.size() == 0) return;
+            try {
+                wal.append(frame.toByteArray());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Write-ahead log is failed to append", e);
+            }
+        }
+
+        void rollback() {
+            for (int i = undo.size() - 1; i >= 0; i--) undo.get(i).run();
+        }
+
+        private void append(byte operation, Redo redo) {
+            try {
+                out.writeByte(operation);
+                redo.write(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
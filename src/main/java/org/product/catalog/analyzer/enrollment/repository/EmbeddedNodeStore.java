@@ -0,0 +1,528 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.product.catalog.analyzer.enrollment.dto.NodeChange;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Хранилище каталога в памяти для {@link EmbeddedNodeRepository}: узлы, история их состояний и лента изменений.
+ * Узлы располагаются в массивах по целочисленным слотам, для каждого слота хранится слот родителя
+ * и массив слотов прямых потомков, поэтому обход поддерева и подъём к корню выполняются
+ * по примитивным индексам без поиска в хеш-таблице на каждом шаге.
+ * Узел, родитель которого отсутствует, ожидает родителя в списке сирот и присоединяется к нему при появлении,
+ * так же как строки таблицы node ссылаются на удалённого родителя до удаления всего поддерева.
+ * Хранилище не синхронизировано, блокировки и журналирование изменений выполняет репозиторий.
+ *
+ * @author Stepanenko Stanislav
+ */
+final class EmbeddedNodeStore {
+    final private static int NO_SLOT = -1;
+    final private static int[] NO_CHILDREN = new int[0];
+    final private static int SNAPSHOT_VERSION = 1;
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private final Map<UUID, Set<Integer>> orphans = new HashMap<>();
+    private final Map<UUID, TreeMap<Long, HistoryRecord>> histories = new HashMap<>();
+    private final List<ChangeRecord> changes = new ArrayList<>();
+    private NodeRecord[] records = new NodeRecord[16];
+    private int[] parents = new int[16];
+    private int[][] children = new int[16][];
+    private int[] childCounts = new int[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+    private long lastChangeSeq;
+
+    /**
+     * Состояние узла каталога. Средняя цена категории не хранится, а вычисляется из суммы и количества товаров.
+     */
+    record NodeRecord(UUID id, String type, String name, UUID parentId, Integer price, Date date,
+                      long offerSum, int offerCount, long version) {
+
+        Integer averagePrice() {
+            if (price != null) return price;
+            return offerCount == 0 ? null : (int) (offerSum / offerCount);
+        }
+
+        NodeRecord withAggregate(long offerSum, int offerCount) {
+            return new NodeRecord(id, type, name, parentId, price, date, offerSum, offerCount, version);
+        }
+
+        NodeRecord withDate(Date date) {
+            return new NodeRecord(id, type, name, parentId, price, date, offerSum, offerCount, version);
+        }
+
+        NodeRecord withVersion(long version) {
+            return new NodeRecord(id, type, name, parentId, price, date, offerSum, offerCount, version);
+        }
+    }
+
+    /**
+     * Состояние узла в истории обновлений на дату обновления.
+     */
+    record HistoryRecord(UUID id, String type, String name, UUID parentId, Integer price, Date date) {
+    }
+
+    /**
+     * Изменение ленты изменений вместе с датой его записи, по которой устаревшие изменения удаляются.
+     */
+    record ChangeRecord(NodeChange change, long created) {
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    NodeRecord get(UUID id) {
+        final Integer slot = slots.get(id);
+        return slot == null ? null : records[slot];
+    }
+
+    boolean hasChildren(UUID id) {
+        final Integer slot = slots.get(id);
+        return slot != null && childCounts[slot] > 0;
+    }
+
+    /**
+     * Добавление либо замена узла. При смене родителя узел вместе с поддеревом переносится
+     * в массив потомков нового родителя, ожидающие узел сироты присоединяются к нему.
+     *
+     * @param record - новое состояние узла.
+     */
+    void putNode(NodeRecord record) {
+        final Integer existing = slots.get(record.id());
+        if (existing != null) {
+            final NodeRecord old = records[existing];
+            records[existing] = record;
+            if (!Objects.equals(old.parentId(), record.parentId())) {
+                unlink(existing, old.parentId());
+                link(existing, record.parentId());
+            }
+            return;
+        }
+        final int slot = allocate();
+        slots.put(record.id(), slot);
+        records[slot] = record;
+        final Set<Integer> adopted = orphans.remove(record.id());
+        if (adopted != null) {
+            for (int child : adopted) addChild(slot, child);
+        }
+        link(slot, record.parentId());
+    }
+
+    /**
+     * Удаление узла вместе с его историей, потомки узла становятся сиротами.
+     *
+     * @param id - идентификатор узла.
+     * @return удалённое состояние узла, либо {@code null} если узел не найден.
+     */
+    NodeRecord removeNode(UUID id) {
+        final Integer slot = slots.remove(id);
+        if (slot == null) return null;
+        final NodeRecord record = records[slot];
+        unlink(slot, record.parentId());
+        if (childCounts[slot] > 0) {
+            final Set<Integer> waiting = orphans.computeIfAbsent(id, key -> new HashSet<>());
+            for (int i = 0; i < childCounts[slot]; i++) {
+                parents[children[slot][i]] = NO_SLOT;
+                waiting.add(children[slot][i]);
+            }
+        }
+        release(slot);
+        histories.remove(id);
+        return record;
+    }
+
+    /**
+     * Поиск узла и всех его предков.
+     *
+     * @param id - идентификатор узла.
+     * @return узлы от корня до самого узла, пустой список если узел не найден.
+     */
+    List<NodeRecord> findAllAncestor(UUID id) {
+        final Integer slot = slots.get(id);
+        if (slot == null) return Collections.emptyList();
+        final NodeRecord[] result = new NodeRecord[depth(slot)];
+        for (int s = slot, i = result.length - 1; s != NO_SLOT; s = parents[s], i--) result[i] = records[s];
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Материализованный путь узла от корня до самого узла.
+     *
+     * @param id - идентификатор узла.
+     * @return путь узла, либо {@code null} если узел не найден.
+     */
+    UUID[] path(UUID id) {
+        final Integer slot = slots.get(id);
+        if (slot == null) return null;
+        final UUID[] result = new UUID[depth(slot)];
+        for (int s = slot, i = result.length - 1; s != NO_SLOT; s = parents[s], i--) result[i] = records[s].id();
+        return result;
+    }
+
+    /**
+     * Обход поддерева в глубину: каждая категория передаётся раньше своих потомков.
+     * Для отсутствующего узла обходятся поддеревья ожидающих его сирот.
+     *
+     * @param id       - идентификатор корня поддерева.
+     * @param self     - признак передачи обработчику самого корня.
+     * @param consumer - обработчик узла и его глубины относительно корня.
+     */
+    void forEachDescendant(UUID id, boolean self, ObjIntConsumer<NodeRecord> consumer) {
+        final Integer root = slots.get(id);
+        int[] stack = new int[32];
+        int size = 0;
+        if (root != null) {
+            stack[size++] = root;
+            stack[size++] = 0;
+        } else {
+            for (int orphan : orphans.getOrDefault(id, Collections.emptySet())) {
+                if (size + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[size++] = orphan;
+                stack[size++] = 1;
+            }
+        }
+        while (size > 0) {
+            final int depth = stack[--size];
+            final int slot = stack[--size];
+            if (depth > 0 || self) consumer.accept(records[slot], depth);
+            for (int i = childCounts[slot] - 1; i >= 0; i--) {
+                if (size + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[size++] = children[slot][i];
+                stack[size++] = depth + 1;
+            }
+        }
+    }
+
+    /**
+     * Обход всех узлов хранилища в произвольном порядке.
+     *
+     * @param consumer - обработчик узла.
+     */
+    void forEach(Consumer<NodeRecord> consumer) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (records[slot] != null) consumer.accept(records[slot]);
+        }
+    }
+
+    /**
+     * Запись состояния узла в историю, состояние на ту же дату заменяется.
+     *
+     * @param record - состояние узла.
+     * @return заменённое состояние, либо {@code null}.
+     */
+    HistoryRecord putHistory(HistoryRecord record) {
+        return histories.computeIfAbsent(record.id(), key -> new TreeMap<>()).put(record.date().getTime(), record);
+    }
+
+    void removeHistory(UUID id, Date date) {
+        final TreeMap<Long, HistoryRecord> history = histories.get(id);
+        if (history == null) return;
+        history.remove(date.getTime());
+        if (history.isEmpty()) histories.remove(id);
+    }
+
+    NavigableMap<Long, HistoryRecord> findHistory(UUID id) {
+        final NavigableMap<Long, HistoryRecord> history = histories.get(id);
+        return history == null ? Collections.emptyNavigableMap() : history;
+    }
+
+    /**
+     * Восстановление истории узла целиком, используется при отмене удаления узла.
+     *
+     * @param id      - идентификатор узла.
+     * @param history - история узла.
+     */
+    void restoreHistory(UUID id, NavigableMap<Long, HistoryRecord> history) {
+        if (!history.isEmpty()) histories.put(id, new TreeMap<>(history));
+    }
+
+    long getLastChangeSeq() {
+        return lastChangeSeq;
+    }
+
+    void addChange(ChangeRecord record) {
+        changes.add(record);
+        lastChangeSeq = Math.max(lastChangeSeq, record.change().cursor());
+    }
+
+    /**
+     * Отмена последнего записанного изменения, номер изменения при этом не возвращается,
+     * как и номер последовательности Postgres при откате транзакции.
+     */
+    void removeLastChange() {
+        changes.remove(changes.size() - 1);
+    }
+
+    /**
+     * Удаление изменений, записанных раньше заданной даты.
+     *
+     * @param before - дата записи в миллисекундах.
+     * @return удалённые изменения в порядке номеров.
+     */
+    List<ChangeRecord> pruneChanges(long before) {
+        final List<ChangeRecord> removed = new ArrayList<>();
+        changes.removeIf(record -> record.created() < before && removed.add(record));
+        return removed;
+    }
+
+    /**
+     * Возврат удалённых изменений в ленту с сохранением порядка номеров.
+     *
+     * @param records - изменения, удалённые {@link #pruneChanges(long)}.
+     */
+    void restoreChanges(List<ChangeRecord> records) {
+        if (records.isEmpty()) return;
+        changes.addAll(records);
+        changes.sort((first, second) -> Long.compare(first.change().cursor(), second.change().cursor()));
+    }
+
+    /**
+     * Поиск изменений после курсора двоичным поиском по номеру изменения.
+     *
+     * @param rootId - идентификатор корневой категории, либо {@code null} для всего каталога.
+     * @param cursor - курсор последнего полученного изменения.
+     * @param limit  - наибольшее количество изменений.
+     * @return список изменений.
+     */
+    List<NodeChange> findChanges(UUID rootId, long cursor, int limit) {
+        int low = 0;
+        int high = changes.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (changes.get(middle).change().cursor() <= cursor) low = middle + 1;
+            else high = middle;
+        }
+        final List<NodeChange> result = new ArrayList<>();
+        for (int i = low; i < changes.size() && result.size() < limit; i++) {
+            final NodeChange change = changes.get(i).change();
+            if (change.isDescendantOf(rootId)) result.add(change);
+        }
+        return result;
+    }
+
+    /**
+     * Запись снимка хранилища. Узлы записываются обходом от корней, поэтому при чтении
+     * родитель всегда добавляется раньше потомков.
+     *
+     * @param out - поток снимка.
+     * @throws IOException при ошибке записи.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(SNAPSHOT_VERSION);
+        final List<NodeRecord> ordered = new ArrayList<>(slots.size());
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (records[slot] != null && parents[slot] == NO_SLOT) {
+                forEachDescendant(records[slot].id(), true, (record, depth) -> ordered.add(record));
+            }
+        }
+        out.writeInt(ordered.size());
+        for (NodeRecord record : ordered) writeNode(out, record);
+        int historySize = 0;
+        for (TreeMap<Long, HistoryRecord> history : histories.values()) historySize += history.size();
+        out.writeInt(historySize);
+        for (TreeMap<Long, HistoryRecord> history : histories.values()) {
+            for (HistoryRecord record : history.values()) writeHistory(out, record);
+        }
+        out.writeLong(lastChangeSeq);
+        out.writeInt(changes.size());
+        for (ChangeRecord record : changes) writeChange(out, record);
+    }
+
+    /**
+     * Чтение снимка хранилища, записанного {@link #write(DataOutput)}.
+     *
+     * @param in - поток снимка.
+     * @return хранилище.
+     * @throws IOException при ошибке чтения либо неизвестной версии снимка.
+     */
+    static EmbeddedNodeStore read(DataInput in) throws IOException {
+        final int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) throw new IOException("Unsupported snapshot version: " + version);
+        final EmbeddedNodeStore store = new EmbeddedNodeStore();
+        for (int i = in.readInt(); i > 0; i--) store.putNode(readNode(in));
+        for (int i = in.readInt(); i > 0; i--) store.putHistory(readHistory(in));
+        store.lastChangeSeq = in.readLong();
+        for (int i = in.readInt(); i > 0; i--) store.addChange(readChange(in));
+        return store;
+    }
+
+    static void writeNode(DataOutput out, NodeRecord record) throws IOException {
+        writeUuid(out, record.id());
+        out.writeUTF(record.type());
+        out.writeUTF(record.name());
+        writeUuid(out, record.parentId());
+        writeInteger(out, record.price());
+        writeDate(out, record.date());
+        out.writeLong(record.offerSum());
+        out.writeInt(record.offerCount());
+        out.writeLong(record.version());
+    }
+
+    static NodeRecord readNode(DataInput in) throws IOException {
+        return new NodeRecord(readUuid(in), in.readUTF(), in.readUTF(), readUuid(in), readInteger(in), readDate(in),
+                in.readLong(), in.readInt(), in.readLong());
+    }
+
+    static void writeHistory(DataOutput out, HistoryRecord record) throws IOException {
+        writeUuid(out, record.id());
+        out.writeUTF(record.type());
+        out.writeUTF(record.name());
+        writeUuid(out, record.parentId());
+        writeInteger(out, record.price());
+        writeDate(out, record.date());
+    }
+
+    static HistoryRecord readHistory(DataInput in) throws IOException {
+        return new HistoryRecord(readUuid(in), in.readUTF(), in.readUTF(), readUuid(in), readInteger(in), readDate(in));
+    }
+
+    static void writeChange(DataOutput out, ChangeRecord record) throws IOException {
+        final NodeChange change = record.change();
+        out.writeLong(change.cursor());
+        out.writeUTF(change.operation());
+        writeUuid(out, change.id());
+        out.writeUTF(change.type());
+        out.writeUTF(change.name());
+        writeUuid(out, change.parentId());
+        writeInteger(out, change.price());
+        writeDate(out, change.date());
+        out.writeInt(change.path().length);
+        for (UUID id : change.path()) writeUuid(out, id);
+        out.writeLong(record.created());
+    }
+
+    static ChangeRecord readChange(DataInput in) throws IOException {
+        final long cursor = in.readLong();
+        final String operation = in.readUTF();
+        final UUID id = readUuid(in);
+        final String type = in.readUTF();
+        final String name = in.readUTF();
+        final UUID parentId = readUuid(in);
+        final Integer price = readInteger(in);
+        final Date date = readDate(in);
+        final UUID[] path = new UUID[in.readInt()];
+        for (int i = 0; i < path.length; i++) path[i] = readUuid(in);
+        return new ChangeRecord(new NodeChange(cursor, operation, id, type, name, parentId, price, date, path), in.readLong());
+    }
+
+    static void writeUuid(DataOutput out, UUID id) throws IOException {
+        out.writeBoolean(id != null);
+        if (id == null) return;
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+
+    static void writeDate(DataOutput out, Date date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) out.writeLong(date.getTime());
+    }
+
+    static Date readDate(DataInput in) throws IOException {
+        return in.readBoolean() ? new Date(in.readLong()) : null;
+    }
+
+    private static void writeInteger(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeInt(value);
+    }
+
+    private static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    /**
+     * Приватный метод глубины узла с защитой от цикла в ссылках на родителей.
+     *
+     * @param slot - слот узла.
+     * @return количество узлов на пути от корня до узла включительно.
+     */
+    private int depth(int slot) {
+        int depth = 0;
+        for (int s = slot; s != NO_SLOT; s = parents[s]) {
+            if (++depth > slotCount) throw new IllegalStateException("Cycle in ancestors of node " + records[slot].id());
+        }
+        return depth;
+    }
+
+    private void link(int slot, UUID parentId) {
+        parents[slot] = NO_SLOT;
+        if (parentId == null) return;
+        final Integer parent = slots.get(parentId);
+        if (parent == null) {
+            orphans.computeIfAbsent(parentId, key -> new HashSet<>()).add(slot);
+        } else {
+            addChild(parent, slot);
+        }
+    }
+
+    private void unlink(int slot, UUID parentId) {
+        final int parent = parents[slot];
+        parents[slot] = NO_SLOT;
+        if (parent != NO_SLOT) {
+            final int[] siblings = children[parent];
+            final int last = --childCounts[parent];
+            for (int i = 0; i <= last; i++) {
+                if (siblings[i] == slot) {
+                    siblings[i] = siblings[last];
+                    break;
+                }
+            }
+        } else if (parentId != null) {
+            final Set<Integer> waiting = orphans.get(parentId);
+            if (waiting != null && waiting.remove(slot) && waiting.isEmpty()) orphans.remove(parentId);
+        }
+    }
+
+    private void addChild(int parent, int child) {
+        if (childCounts[parent] == children[parent].length) {
+            children[parent] = Arrays.copyOf(children[parent], Math.max(4, childCounts[parent] * 2));
+        }
+        children[parent][childCounts[parent]++] = child;
+        parents[child] = parent;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) return freeSlots[--freeCount];
+        if (slotCount == records.length) {
+            final int capacity = records.length * 2;
+            records = Arrays.copyOf(records, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            children = Arrays.copyOf(children, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+        }
+        children[slotCount] = NO_CHILDREN;
+        return slotCount++;
+    }
+
+    private void release(int slot) {
+        records[slot] = null;
+        parents[slot] = NO_SLOT;
+        children[slot] = NO_CHILDREN;
+        childCounts[slot] = 0;
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+}
@@ -0,0 +1,82 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.SmartTransactionObject;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Менеджер транзакций профиля {@code embedded}. Менеджер не хранит состояния транзакции,
+ * он только открывает синхронизацию транзакций Spring, через которую {@link EmbeddedNodeRepository}
+ * удерживает блокировку записи до завершения транзакции, записывает изменения в журнал перед фиксацией
+ * и отменяет их при откате.
+ *
+ * @author Stepanenko Stanislav
+ */
+public class EmbeddedTransactionManager extends AbstractPlatformTransactionManager {
+
+    public EmbeddedTransactionManager() {
+        setTransactionSynchronization(SYNCHRONIZATION_ALWAYS);
+    }
+
+    @Override
+    protected Object doGetTransaction() {
+        final Object transaction = TransactionSynchronizationManager.getResource(this);
+        return transaction != null ? transaction : new EmbeddedTransaction();
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return TransactionSynchronizationManager.getResource(this) == transaction;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        TransactionSynchronizationManager.bindResource(this, transaction);
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        return TransactionSynchronizationManager.unbindResource(this);
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        TransactionSynchronizationManager.bindResource(this, suspendedResources);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+        ((EmbeddedTransaction) status.getTransaction()).rollbackOnly = true;
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(this);
+    }
+
+    /**
+     * Транзакция, общая для всех участников, которые могут пометить её для отката.
+     */
+    private static class EmbeddedTransaction implements SmartTransactionObject {
+        private boolean rollbackOnly;
+
+        @Override
+        public boolean isRollbackOnly() {
+            return rollbackOnly;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный по размеру кэш узлов каталога в памяти приложения.
+ * Хранит узлы без потомков и списки идентификаторов прямых потомков категорий,
+ * из которых собирается полное дерево узла без обращения к базе данных, а также версии поддеревьев
+ * для условных запросов.
+ * При переполнении вытесняются давно не использованные записи.
+ * Узлы хранятся в компактном представлении {@link CompactNode}, списки потомков массивами пар long,
+ * наружу всегда возвращаются новые объекты, кэш не разделяет изменяемые объекты с вызывающим кодом.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Component
+@ManagedResource(objectName = "org.product.catalog.analyzer:type=Cache,name=nodeCache")
+public class NodeCache implements MeterBinder {
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final Map<UUID, CompactNode> nodeMap;
+    private final Map<UUID, long[]> childrenMap;
+    /**
+     * Версии поддеревьев узлов для условных запросов, действительные в пределах поколения кэша.
+     */
+    private final Map<UUID, String> subtreeVersionMap;
+    /**
+     * Идентификаторы узлов в кэше по идентификатору их родителя, в том числе отсутствующего в кэше.
+     */
+    private final Map<UUID, Set<UUID>> parentIndex = new HashMap<>();
+    /**
+     * Отсутствующие в кэше родители узлов, которые есть в кэше: цепочка родителей этих узлов неизвестна.
+     */
+    private final Set<UUID> orphanParentIds = new HashSet<>();
+    /**
+     * Версии последних записанных изменений узлов, нужные пока не освобождены более старые версии.
+     */
+    private final Map<UUID, Long> versionMap = new HashMap<>();
+    private final NavigableSet<Long> pendingVersions = new TreeSet<>();
+    private long generation;
+    private long version;
+
+    public NodeCache(@Value("${repository.cache.max-size:10000}") int maxSize) {
+        this.nodeMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CompactNode> eldest) {
+                if (size() <= maxSize) return false;
+                evictionCount.incrementAndGet();
+                remove(eldest.getKey());
+                unlink(eldest.getKey(), eldest.getValue().parentId());
+                return false;
+            }
+        };
+        this.childrenMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, long[]> eldest) {
+                if (size() <= maxSize) return false;
+                evictionCount.incrementAndGet();
+                return true;
+            }
+        };
+        this.subtreeVersionMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Текущее поколение кэша. Поколение увеличивается при каждой инвалидации,
+     * узлы прочитанные из базы данных до инвалидации в кэш не попадают.
+     *
+     * @return текущее поколение кэша.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Получение узла без потомков из кэша.
+     *
+     * @param id - идентификатор узла(товара/категории).
+     * @return копия узла, или {@code null} если узел отсутствует в кэше.
+     */
+    public synchronized Node get(UUID id) {
+        final CompactNode node = nodeMap.get(id);
+        if (node == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return node.toNode();
+    }
+
+    /**
+     * Получение узла без потомков из кэша без учёта в счётчиках попаданий и промахов,
+     * для служебных нужд инвалидации.
+     *
+     * @param id - идентификатор узла(товара/категории).
+     * @return копия узла, или {@code null} если узел отсутствует в кэше.
+     */
+    public synchronized Node peek(UUID id) {
+        final CompactNode node = nodeMap.get(id);
+        return node == null ? null : node.toNode();
+    }
+
+    /**
+     * Сборка узла со всеми потомками из кэша.
+     * Дерево собирается только если в кэше есть все узлы поддерева и списки потомков всех его категорий,
+     * иначе считается промахом.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return копия узла со всеми потомками, или {@code null} если поддерево в кэше неполное.
+     */
+    public synchronized Node getTree(UUID id) {
+        final Node result = buildTree(id);
+        if (result == null) missCount.incrementAndGet();
+        else hitCount.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Приватный метод сборки дерева узла обходом в глубину по спискам потомков.
+     * Потомок, родитель которого в кэше не совпадает с обходимой категорией,
+     * означает устаревший список потомков, такое поддерево считается неполным.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return копия узла со всеми потомками, или {@code null} если поддерево в кэше неполное.
+     */
+    private Node buildTree(UUID id) {
+        final CompactNode root = nodeMap.get(id);
+        if (root == null) return null;
+        final Node result = root.toNode();
+        final Deque<Node> stack = new ArrayDeque<>();
+        stack.push(result);
+        while (!stack.isEmpty()) {
+            final Node parent = stack.pop();
+            if (!NodeType.CATEGORY.equals(parent.getType())) continue;
+            final long[] childrenIds = childrenMap.get(parent.getId());
+            if (childrenIds == null) return null;
+            final List<Node> children = new ArrayList<>(childrenIds.length / 2);
+            for (int i = 0; i < childrenIds.length; i += 2) {
+                final CompactNode child = nodeMap.get(new UUID(childrenIds[i], childrenIds[i + 1]));
+                if (child == null || !child.isChildOf(parent.getId())) return null;
+                final Node childNode = child.toNode();
+                children.add(childNode);
+                stack.push(childNode);
+            }
+            parent.setChildren(children);
+        }
+        return result;
+    }
+
+    /**
+     * Получение версии поддерева узла из кэша.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return версия поддерева, или {@code null} если версии нет в кэше.
+     */
+    public synchronized String getVersion(UUID id) {
+        final String version = subtreeVersionMap.get(id);
+        if (version == null) missCount.incrementAndGet();
+        else hitCount.incrementAndGet();
+        return version;
+    }
+
+    /**
+     * Сохранение версии поддерева узла прочитанной из базы данных.
+     * Версия не сохраняется, если после её чтения кэш был инвалидирован.
+     *
+     * @param id         - идентификатор корневого узла(товара/категории).
+     * @param version    - версия поддерева.
+     * @param generation - поколение кэша на момент начала чтения.
+     */
+    public synchronized void putVersion(UUID id, String version, long generation) {
+        if (this.generation != generation) return;
+        subtreeVersionMap.put(id, version);
+    }
+
+    /**
+     * Сохранение узлов без потомков прочитанных из базы данных.
+     * Узлы не сохраняются, если после их чтения кэш был инвалидирован.
+     *
+     * @param nodes      - узлы, которые необходимо сохранить.
+     * @param generation - поколение кэша на момент начала чтения.
+     */
+    public synchronized void putAll(Collection<Node> nodes, long generation) {
+        if (this.generation != generation) return;
+        nodes.forEach(this::store);
+    }
+
+    /**
+     * Сохранение узла со всеми потомками прочитанного из базы данных:
+     * всех узлов поддерева и списков потомков всех его категорий.
+     * Дерево не сохраняется, если после его чтения кэш был инвалидирован.
+     *
+     * @param root       - узел со всеми потомками.
+     * @param generation - поколение кэша на момент начала чтения.
+     * @return {@code true} если дерево сохранено, {@code false} если кэш был инвалидирован.
+     */
+    public synchronized boolean putTree(Node root, long generation) {
+        if (this.generation != generation) return false;
+        final Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            final Node node = stack.pop();
+            store(node);
+            if (node.getChildren() == null) continue;
+            final long[] childrenIds = new long[node.getChildren().size() * 2];
+            int i = 0;
+            for (Node child : node.getChildren()) {
+                childrenIds[i++] = child.getId().getMostSignificantBits();
+                childrenIds[i++] = child.getId().getLeastSignificantBits();
+                stack.push(child);
+            }
+            childrenMap.put(node.getId(), childrenIds);
+        }
+        return true;
+    }
+
+    /**
+     * Выдача версии изменения кэша. Выданная версия должна быть освобождена методом
+     * {@link #release(long)} после записи изменения либо отката транзакции.
+     *
+     * @return версия изменения, больше всех ранее выданных.
+     */
+    public synchronized long nextVersion() {
+        pendingVersions.add(++version);
+        return version;
+    }
+
+    /**
+     * Освобождение версии изменения. Версии записанных изменений узлов, старше всех
+     * ещё не освобождённых версий, больше не нужны для сравнения и удаляются.
+     *
+     * @param version - версия изменения.
+     */
+    public synchronized void release(long version) {
+        pendingVersions.remove(version);
+        if (pendingVersions.isEmpty()) {
+            versionMap.clear();
+            return;
+        }
+        final long oldest = pendingVersions.first();
+        versionMap.values().removeIf(applied -> applied < oldest);
+    }
+
+    /**
+     * Запись актуальных узлов без потомков после изменения каталога с новой версией изменения.
+     *
+     * @param nodes - актуальные узлы.
+     */
+    public void writeAll(Collection<Node> nodes) {
+        final long version = nextVersion();
+        try {
+            writeAll(nodes, version);
+        } finally {
+            release(version);
+        }
+    }
+
+    /**
+     * Запись актуальных узлов без потомков после фиксации транзакции, независимо от поколения.
+     * Узлы, для которых уже записано более новое изменение, пропускаются: обработчики завершения
+     * транзакций могут выполняться не в порядке их фиксации.
+     *
+     * @param nodes   - актуальные узлы.
+     * @param version - версия изменения, выданная до фиксации транзакции.
+     */
+    public synchronized void writeAll(Collection<Node> nodes, long version) {
+        for (Node node : nodes) {
+            final Long applied = versionMap.get(node.getId());
+            if (applied != null && applied > version) continue;
+            versionMap.put(node.getId(), version);
+            store(node);
+        }
+    }
+
+    /**
+     * Инвалидация узлов и списков потомков категорий.
+     * Увеличивает поколение кэша, так что незавершённые чтения не смогут сохранить устаревшие данные.
+     * Версии поддеревьев удаляются все: изменение узла меняет версии всех его предков,
+     * цепочка которых в кэше может быть неполной.
+     *
+     * @param nodeIds     - идентификаторы узлов, которые необходимо удалить из кэша.
+     * @param childrenIds - идентификаторы категорий, списки потомков которых необходимо удалить из кэша.
+     */
+    public synchronized void invalidate(Collection<UUID> nodeIds, Collection<UUID> childrenIds) {
+        generation++;
+        subtreeVersionMap.clear();
+        nodeIds.forEach(this::drop);
+        childrenIds.forEach(childrenMap::remove);
+    }
+
+    /**
+     * Приватный метод сохранения узла с обновлением индекса узлов по родителю.
+     *
+     * @param node - узел без потомков.
+     */
+    private void store(Node node) {
+        final CompactNode previous = nodeMap.put(node.getId(), CompactNode.of(node));
+        if (previous != null) unlink(node.getId(), previous.parentId());
+        orphanParentIds.remove(node.getId());
+        if (node.getParentId() == null) return;
+        parentIndex.computeIfAbsent(node.getParentId(), key -> new HashSet<>()).add(node.getId());
+        if (!nodeMap.containsKey(node.getParentId())) orphanParentIds.add(node.getParentId());
+    }
+
+    /**
+     * Приватный метод удаления узла с обновлением индекса узлов по родителю.
+     *
+     * @param id - идентификатор узла.
+     */
+    private void drop(UUID id) {
+        final CompactNode previous = nodeMap.remove(id);
+        if (previous != null) unlink(id, previous.parentId());
+    }
+
+    /**
+     * Приватный метод удаления связи узла с прежним родителем из индекса узлов по родителю.
+     * Если узла больше нет в кэше, а его потомки остались, узел становится родителем с неизвестной цепочкой.
+     *
+     * @param id       - идентификатор узла.
+     * @param parentId - прежний родитель узла, либо {@code null}.
+     */
+    private void unlink(UUID id, UUID parentId) {
+        if (parentId != null) {
+            final Set<UUID> siblings = parentIndex.get(parentId);
+            if (siblings != null && siblings.remove(id) && siblings.isEmpty()) {
+                parentIndex.remove(parentId);
+                orphanParentIds.remove(parentId);
+            }
+        }
+        if (!nodeMap.containsKey(id) && parentIndex.containsKey(id)) orphanParentIds.add(id);
+    }
+
+    /**
+     * Поиск в кэше узлов, которые могут быть потомками заданного узла, обходом поддерева от заданного узла
+     * по спискам потомков категорий и индексу узлов по родителю, без просмотра всего кэша.
+     * Помимо найденных потомков, возвращаются и узлы под родителями, которых нет в кэше,
+     * так как их принадлежность поддереву неизвестна.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return идентификаторы возможных потомков без самого узла.
+     */
+    public synchronized Set<UUID> findAllDescendantId(UUID id) {
+        final Set<UUID> result = new HashSet<>();
+        collectDescendantId(id, result);
+        for (UUID parentId : new ArrayList<>(orphanParentIds)) {
+            if (!id.equals(parentId) && !result.contains(parentId)) collectDescendantId(parentId, result);
+        }
+        result.remove(id);
+        return result;
+    }
+
+    /**
+     * Приватный метод обхода в глубину поддерева узла по спискам потомков категорий и индексу узлов по родителю.
+     *
+     * @param id     - идентификатор корневого узла поддерева.
+     * @param result - множество, в которое добавляются идентификаторы потомков.
+     */
+    private void collectDescendantId(UUID id, Set<UUID> result) {
+        final Deque<UUID> stack = new ArrayDeque<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            final UUID parentId = stack.pop();
+            final long[] childrenIds = childrenMap.get(parentId);
+            if (childrenIds != null) {
+                for (int i = 0; i < childrenIds.length; i += 2) {
+                    final UUID childId = new UUID(childrenIds[i], childrenIds[i + 1]);
+                    if (result.add(childId)) stack.push(childId);
+                }
+            }
+            for (UUID childId : parentIndex.getOrDefault(parentId, Set.of())) {
+                if (result.add(childId)) stack.push(childId);
+            }
+        }
+    }
+
+    /**
+     * Полная очистка кэша.
+     */
+    @ManagedOperation
+    public synchronized void clear() {
+        generation++;
+        nodeMap.clear();
+        childrenMap.clear();
+        subtreeVersionMap.clear();
+        parentIndex.clear();
+        orphanParentIds.clear();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @ManagedAttribute
+    public synchronized int getSize() {
+        return nodeMap.size();
+    }
+
+    /**
+     * Регистрация счётчиков попаданий, промахов и вытеснений, а также размера кэша в реестре метрик.
+     *
+     * @param registry - реестр метрик.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hitCount, AtomicLong::get)
+                .tags("cache", "node", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", missCount, AtomicLong::get)
+                .tags("cache", "node", "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", evictionCount, AtomicLong::get)
+                .tags("cache", "node")
+                .register(registry);
+        Gauge.builder("cache.size", this, NodeCache::getSize)
+                .tags("cache", "node")
+                .register(registry);
+    }
+}
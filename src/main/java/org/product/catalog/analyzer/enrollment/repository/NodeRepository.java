@@ -1,10 +1,15 @@
 package org.product.catalog.analyzer.enrollment.repository;
 
 import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeChange;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс, описывающий методы взаимодействия приложения с базой данных.
@@ -23,6 +28,27 @@ public interface NodeRepository {
      */
     Node findDepthNodeById(UUID id);
 
+    /**
+     * Поиск узла в полную глубину по идентификатору обходом в глубину,
+     * с отдельным запросом прямых потомков каждой категории.
+     * Запасной вариант метода {@link #findDepthNodeById(UUID)}.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return узел со всеми потомками, или {@code null} если узел не найден.
+     */
+    Node findDepthNodeByIdIteratively(UUID id);
+
+    /**
+     * Потоковый поиск узла в полную глубину по идентификатору.
+     * Узлы поддерева передаются обработчику без потомков в порядке обхода в глубину:
+     * каждая категория предшествует своим потомкам, поддеревья не перемежаются.
+     *
+     * @param id       - идентификатор корневого узла(товара/категории).
+     * @param consumer - обработчик, которому передаётся каждый узел поддерева.
+     * @return количество узлов поддерева, {@code 0} если узел не найден.
+     */
+    int findDepthNodeById(UUID id, Consumer<Node> consumer);
+
     /**
      * Поиск узла без каких-либо потомков по идентификатору.
      * Метод возвращает узел без каких-либо потомков.
@@ -32,6 +58,62 @@ public interface NodeRepository {
      */
     public Node findPlainNodeById(UUID id);
 
+    /**
+     * Получение версии поддерева узла без чтения его потомков.
+     * Версия меняется при любом изменении поддерева: импорте узла поддерева,
+     * перемещении узла в поддерево или из него и удалении узла поддерева.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return версия поддерева, или {@code null} если узел не найден.
+     */
+    String findVersionById(UUID id);
+
+    /**
+     * Поиск списка узлов без каких-либо потомков по идентификаторам.
+     * Метод возвращает только найденные узлы, отсутствующие идентификаторы пропускаются.
+     *
+     * @param ids - идентификаторы узлов(товаров/категорий).
+     * @return список найденных узлов каталога товаров.
+     */
+    List<Node> findAllPlainNodeById(Collection<UUID> ids);
+
+    /**
+     * Поиск узлов и всех их родительских категорий без каких-либо потомков,
+     * начиная от самих узлов и заканчивая корневыми предками.
+     *
+     * @param ids - идентификаторы узлов(товаров/категорий).
+     * @return список найденных узлов и их предков, каждый узел встречается один раз.
+     */
+    List<Node> findAllParentNodeById(Collection<UUID> ids);
+
+    /**
+     * Блокировка корневых категорий узлов до конца текущей транзакции.
+     * Для отсутствующего в каталоге узла блокируется его собственный идентификатор.
+     * Блокировки берутся в детерминированном порядке, поэтому транзакции,
+     * блокирующие пересекающиеся наборы корней, выстраиваются в очередь без взаимных блокировок.
+     *
+     * @param ids - идентификаторы узлов(товаров/категорий).
+     * @return идентификаторы заблокированных корней.
+     */
+    Set<UUID> lockAllRootById(Collection<UUID> ids);
+
+    /**
+     * Блокировка всего каталога до конца текущей транзакции, независимо от блокировок корневых категорий.
+     */
+    void lockAll();
+
+    /**
+     * Оповещение других экземпляров приложения об изменении узлов через Postgres NOTIFY.
+     * Оповещение содержит идентификаторы узлов, всех их текущих предков и, при необходимости, потомков,
+     * и доставляется слушателям только при фиксации текущей транзакции.
+     * Вызывается до изменения узлов, пока материализованные пути указывают на прежних предков.
+     *
+     * @param ids         - идентификаторы изменяемых узлов и их новых родителей.
+     * @param descendants - признак оповещения и обо всех потомках узлов, например перед удалением.
+     * @return количество отправленных оповещений.
+     */
+    int notifyAllChanged(Collection<UUID> ids, boolean descendants);
+
     /**
      * Сохранение узла(товара/категории) в каталоге товаров,
      * путем добавленные новой позиций либо обновление текущей.
@@ -52,6 +134,17 @@ public interface NodeRepository {
      */
     int saveAll(List<Node> nodes);
 
+    /**
+     * Обновление агрегатов (суммы и количества товаров) всех родительских категорий,
+     * начиная от непосредственного родителя и заканчивая корневым предком.
+     *
+     * @param id              - идентификатор родительской категории с которой необходимо начать обновление.
+     * @param offerSumDelta   - приращение суммы цен товаров.
+     * @param offerCountDelta - приращение количества товаров.
+     * @return количество обновленных категорий.
+     */
+    int updateAllParentAggregate(UUID id, long offerSumDelta, int offerCountDelta);
+
     /**
      * Удаление узла по идентификатору.
      * Метод удаляет только узел без потомков.
@@ -69,6 +162,14 @@ public interface NodeRepository {
      */
     int deleteAllDescendantById(UUID id);
 
+    /**
+     * Поиск идентификаторов всех товаров-потомков заданного узла.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return идентификаторы товаров-потомков без самого узла.
+     */
+    List<UUID> findAllDescendantOfferId(UUID id);
+
     /**
      * Получение списка товаров, цена которых была обновлена за последние 24 часа включительно
      * [now() - 24h, now()] от времени переданном в запросе.
@@ -77,4 +178,82 @@ public interface NodeRepository {
      * @return список товаров которые были обновлены.
      */
     List<Node> findSaleNodeList(Date date);
+
+    /**
+     * Получение страницы товаров, цена которых была обновлена за последние 24 часа включительно
+     * [date - 24h, date], в порядке даты обновления и идентификатора. Страница начинается
+     * после последнего товара предыдущей страницы, поэтому каждая страница читается отдельным коротким запросом.
+     *
+     * @param date  - дата, от которой отсчитываются 24 часа.
+     * @param after - последний товар предыдущей страницы, либо {@code null} для первой страницы.
+     * @param limit - наибольшее количество товаров на странице.
+     * @return товары страницы.
+     */
+    List<Node> findSaleNodeList(Date date, Node after, int limit);
+
+    /**
+     * Потоковое получение товаров, дата обновления которых не раньше самой поздней
+     * даты обновления товара за вычетом заданного окна.
+     *
+     * @param window   - длина окна.
+     * @param consumer - обработчик, которому передаётся каждый найденный товар.
+     */
+    void findRecentOfferNodeList(Duration window, Consumer<Node> consumer);
+
+    /**
+     * Получение идентификаторов всех корневых узлов каталога.
+     *
+     * @return идентификаторы корневых узлов.
+     */
+    List<UUID> findAllRootId();
+
+    /**
+     * Публикация записанных изменений узлов: присвоение курсоров изменениям транзакций,
+     * раньше которых не осталось незавершённых транзакций, в порядке этих транзакций.
+     * Курсор опубликованного изменения больше курсоров всех ранее опубликованных,
+     * поэтому читатель, продвинувший курсор, не пропустит изменение.
+     * Метод должен выполняться внутри транзакции.
+     *
+     * @return количество опубликованных изменений.
+     */
+    int publishAllChange();
+
+    /**
+     * Получение опубликованных изменений узлов после заданного курсора в порядке курсора.
+     * Изменения записываются методами {@link #saveAll(List)}, {@link #deleteNodeById(UUID)}
+     * и {@link #deleteAllDescendantById(UUID)} в той же транзакции и становятся видны
+     * после публикации методом {@link #publishAllChange()}.
+     *
+     * @param rootId - идентификатор корневой категории, изменения поддерева которой необходимо получить,
+     *               либо {@code null} для всего каталога.
+     * @param cursor - курсор последнего полученного изменения.
+     * @param limit  - наибольшее количество изменений.
+     * @return список изменений.
+     */
+    List<NodeChange> findChangeList(UUID rootId, long cursor, int limit);
+
+    /**
+     * Получение курсора последнего опубликованного изменения узлов.
+     *
+     * @return курсор последнего изменения, {@code 0} если изменений нет.
+     */
+    long findLastChangeCursor();
+
+    /**
+     * Удаление изменений узлов, записанных раньше заданной даты.
+     *
+     * @param date - дата записи, изменения до которой удаляются.
+     * @return количество удалённых изменений.
+     */
+    int deleteAllChangeBefore(Date date);
+
+    /**
+     * Получение истории обновлений узла за полуинтервал [dateStart, dateEnd).
+     *
+     * @param id        - идентификатор узла(товара/категории).
+     * @param dateStart - начало интервала включительно, либо {@code null}.
+     * @param dateEnd   - конец интервала не включительно, либо {@code null}.
+     * @return список состояний узла, упорядоченный по дате.
+     */
+    List<Node> findStatisticNodeList(UUID id, Date dateStart, Date dateEnd);
 }
@@ -1,14 +1,26 @@
 package org.product.catalog.analyzer.enrollment.repository;
 
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeChange;
 import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
 
 
 /**
@@ -18,24 +30,157 @@ import java.util.*;
  */
 @Slf4j
 @Repository
-@AllArgsConstructor
+@Profile("!embedded")
+@RequiredArgsConstructor
 public class NodeRepositoryImpl implements NodeRepository {
     final private static byte WHITE = 0;
     final private static byte GRAY = -1;
     final private static byte BLACK = 1;
+    final private static RowMapper<Node> NODE_ROW_MAPPER = (rs, rowNum) -> new Node(
+            UUID.fromString(rs.getString("id")),
+            rs.getString("type"),
+            rs.getString("name"),
+            rs.getString("parent_id") == null ? null : UUID.fromString(rs.getString("parent_id")),
+            rs.getString("parent_id") == null ? null : UUID.fromString(rs.getString("parent_id")),
+            rs.getObject("price", Integer.class),
+            rs.getTimestamp("date"),
+            null,
+            rs.getInt("offer_count"),
+            rs.getLong("offer_sum")
+    );
+    final private static RowMapper<NodeChange> CHANGE_ROW_MAPPER = (rs, rowNum) -> new NodeChange(
+            rs.getLong("published_seq"),
+            rs.getString("operation"),
+            UUID.fromString(rs.getString("id")),
+            rs.getString("type"),
+            rs.getString("name"),
+            rs.getString("parent_id") == null ? null : UUID.fromString(rs.getString("parent_id")),
+            rs.getObject("price", Integer.class),
+            rs.getTimestamp("date"),
+            (UUID[]) rs.getArray("path").getArray()
+    );
+    final private static int ROOT_LOCK = 0x4e4f4445;
+    final private static int CATALOG_LOCK = 0x4e4f4446;
+    final private static int CHANGE_LOCK = 0x4e4f4447;
+    final private static int NOTIFY_CHUNK_SIZE = 200;
+    /**
+     * Идентификатор экземпляра приложения в оповещениях об изменении узлов.
+     */
+    final static String INSTANCE_ID = UUID.randomUUID().toString();
     private final JdbcTemplate jdbcTemplate;
+    private final RepositoryMetrics metrics;
+    @Value("${repository.batch-size:1000}")
+    private int batchSize = 1000;
+    @Value("${repository.fetch-size:1000}")
+    private int fetchSize = 1000;
+    @Value("${repository.change-feed.enabled:true}")
+    private boolean changeFeed = true;
+    @Value("${repository.invalidation.channel:node_changed}")
+    private String notifyChannel = "node_changed";
 
     /**
      * Реализация метода поиска узла в полную глубину по идентификатору.
      * Метод возвращает узел со всеми потомками, полностью отображая
-     * структуру каталога товаров.
+     * структуру каталога товаров. Всё поддерево загружается одним запросом по индексу
+     * материализованного пути,
+     * средние цены категорий вычисляются в SQL из колонок offer_sum/offer_count,
+     * после чего граф потомков собирается в памяти за один проход.
      *
      * @param id - идентификатор корневого узла(товара/категории).
      * @return узел со всеми потомками, или {@code null} если узел не найден.
      */
     @Override
     public Node findDepthNodeById(UUID id) {
-        log.info("Start find depth node by id:{}", id);
+        return metrics.timed("findDepthNodeById", () -> {
+            log.info("Start find depth node by id:{}", id);
+            final List<Node> subtree = jdbcTemplate.query("""
+                            SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer) AS price,
+                                   to_char(date, 'yyyy-mm-dd hh24:mi:ss') as date, offer_sum, offer_count
+                               FROM node
+                               WHERE path @> ARRAY[?::uuid]""",
+                    NODE_ROW_MAPPER,
+                    id);
+            metrics.visited("findDepthNodeById", subtree.size());
+            final Node result = buildTree(id, subtree);
+            log.info("Finish find depth node by id:{} with {} nodes", id, subtree.size());
+            return result;
+        });
+    }
+
+    /**
+     * Сборка графа потомков из плоского списка узлов поддерева за один проход.
+     * Используется также реактивным репозиторием {@link ReactiveNodeRepository}.
+     *
+     * @param id      - идентификатор корневого узла(товара/категории).
+     * @param subtree - все узлы поддерева без потомков в произвольном порядке.
+     * @return узел со всеми потомками, или {@code null} если поддерево пустое.
+     */
+    static Node buildTree(UUID id, List<Node> subtree) {
+        if (subtree.isEmpty()) return null;
+        final Map<UUID, Node> nodeMap = new HashMap<>(subtree.size() * 2);
+        for (Node node : subtree) {
+            if (NodeType.CATEGORY.equals(node.getType())) node.setChildren(new ArrayList<>());
+            nodeMap.put(node.getId(), node);
+        }
+        Node result = null;
+        for (Node node : subtree) {
+            if (id.equals(node.getId())) {
+                result = node;
+                continue;
+            }
+            nodeMap.get(node.getParentId()).getChildren().add(node);
+        }
+        return result;
+    }
+
+    /**
+     * Реализация метода потокового поиска узла в полную глубину по идентификатору.
+     * Поддерево читается курсором порциями размером {@code fetchSize}, упорядоченным по материализованному пути,
+     * что даёт порядок обхода в глубину, средние цены категорий вычисляются в SQL из колонок offer_sum/offer_count.
+     * Метод должен выполняться внутри транзакции.
+     *
+     * @param id       - идентификатор корневого узла(товара/категории).
+     * @param consumer - обработчик, которому передаётся каждый узел поддерева.
+     * @return количество узлов поддерева, {@code 0} если узел не найден.
+     */
+    @Override
+    public int findDepthNodeById(UUID id, Consumer<Node> consumer) {
+        return metrics.timed("findDepthNodeByIdStreaming", () -> {
+            log.info("Start stream depth node by id:{}", id);
+            final int[] count = new int[1];
+            jdbcTemplate.query(connection -> {
+                        final PreparedStatement ps = connection.prepareStatement("""
+                                SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer) AS price,
+                                       date, offer_sum, offer_count
+                                   FROM node
+                                   WHERE path @> ARRAY[?::uuid]
+                                   ORDER BY path""");
+                        ps.setFetchSize(fetchSize);
+                        ps.setObject(1, id);
+                        return ps;
+                    },
+                    (RowCallbackHandler) rs -> {
+                        count[0]++;
+                        consumer.accept(NODE_ROW_MAPPER.mapRow(rs, rs.getRow()));
+                    });
+            metrics.visited("findDepthNodeByIdStreaming", count[0]);
+            log.info("Finish stream depth node by id:{} with {} nodes", id, count[0]);
+            return count[0];
+        });
+    }
+
+    /**
+     * Реализация метода поиска узла в полную глубину по идентификатору обходом в глубину.
+     * Метод возвращает узел со всеми потомками, полностью отображая
+     * структуру каталога товаров. Прямые потомки каждой категории загружаются
+     * отдельным запросом, метод оставлен как запасной вариант.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return узел со всеми потомками, или {@code null} если узел не найден.
+     */
+    @Override
+    public Node findDepthNodeByIdIteratively(UUID id) {
+        log.info("Start find depth node iteratively by id:{}", id);
         final Node result = findPlainNodeById(id);
         if (result == null) return result;
         if (NodeType.OFFER.equals(result.getType())) return result;
@@ -58,29 +203,10 @@ public class NodeRepositoryImpl implements NodeRepository {
                                 colors.put(child.getId(), WHITE);
                             });
                 }
-                case GRAY -> {
-                    colors.put(parent.getId(), BLACK);
-                    if (parent.getChildren().isEmpty()) break;
-                    final int sum = parent.getChildren()
-                            .stream()
-                            .mapToInt(Node::getSum)
-                            .sum();
-                    final int offerCount = parent.getChildren()
-                            .stream()
-                            .mapToInt(Node::getOfferCount)
-                            .sum();
-                    log.info("parent with ID: {} Sum -> {} OfferCount -> {}", parent.getParentId(), sum, offerCount);
-                    parent.setSum(sum);
-                    parent.setOfferCount(offerCount);
-                    int price = sum;
-                    if (offerCount != 0) {
-                        price /= offerCount;
-                    }
-                    parent.setPrice(price);
-                }
+                case GRAY -> colors.put(parent.getId(), BLACK);
             }
         }
-        log.info("Finish find depth node by id:{}", id);
+        log.info("Finish find depth node iteratively by id:{}", id);
         return result;
     }
 
@@ -95,21 +221,11 @@ public class NodeRepositoryImpl implements NodeRepository {
         log.info("Start find plain node by id:{}", id);
         try {
             return jdbcTemplate.queryForObject("""
-                            SELECT id, type, name, parent_id, price, to_char(date, 'yyyy-mm-dd hh24:mi:ss') as date
+                            SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer) AS price,
+                                   to_char(date, 'yyyy-mm-dd hh24:mi:ss') as date, offer_sum, offer_count
                                FROM node
                                WHERE id = ?::uuid""",
-                    (rs, rowNum) -> new Node(
-                            UUID.fromString(rs.getString("id")),
-                            rs.getString("type"),
-                            rs.getString("name"),
-                            rs.getString("parent_id") == null ? null : UUID.fromString(rs.getString("parent_id")),
-                            rs.getString("parent_id") == null ? null : UUID.fromString(rs.getString("parent_id")),
-                            rs.getObject("price", Integer.class),
-                            rs.getTimestamp("date"),
-                            null,
-                            NodeType.OFFER.equals(rs.getString("type")) ? 1 : 0,
-                            rs.getInt("price")
-                    ),
+                    NODE_ROW_MAPPER,
                     id);
         } catch (EmptyResultDataAccessException e) {
             log.info("Plain node with id:{} didn't find!", id);
@@ -117,6 +233,180 @@ public class NodeRepositoryImpl implements NodeRepository {
         }
     }
 
+    /**
+     * Реализация метода получения версии поддерева узла одним запросом по первичному ключу,
+     * без чтения потомков. Версия составляется из даты обновления узла и счётчика изменений поддерева.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return версия поддерева, или {@code null} если узел не найден.
+     */
+    @Override
+    public String findVersionById(UUID id) {
+        final List<String> result = jdbcTemplate.query("""
+                        SELECT version, date
+                           FROM node
+                           WHERE id = ?::uuid""",
+                (rs, rowNum) -> version(rs.getTimestamp("date"), rs.getLong("version")),
+                id);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Составление версии поддерева из даты обновления узла и счётчика изменений поддерева.
+     * Используется также реактивным репозиторием {@link ReactiveNodeRepository}.
+     *
+     * @param date    - дата обновления узла, либо {@code null}.
+     * @param version - счётчик изменений поддерева.
+     * @return версия поддерева.
+     */
+    static String version(Date date, long version) {
+        return Long.toHexString(date == null ? 0 : date.getTime()) + "-" + Long.toHexString(version);
+    }
+
+    /**
+     * Реализация метода поиска списка узлов без каких-либо потомков по идентификаторам.
+     * Все узлы загружаются одним запросом, отсутствующие идентификаторы пропускаются.
+     *
+     * @param ids - идентификаторы узлов(товаров/категорий).
+     * @return список найденных узлов каталога товаров.
+     */
+    @Override
+    public List<Node> findAllPlainNodeById(Collection<UUID> ids) {
+        log.info("Start find {} plain nodes by id", ids.size());
+        if (ids.isEmpty()) return new ArrayList<>();
+        return jdbcTemplate.query("""
+                        SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer) AS price,
+                               to_char(date, 'yyyy-mm-dd hh24:mi:ss') as date, offer_sum, offer_count
+                           FROM node
+                           WHERE id = ANY(?)""",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+                NODE_ROW_MAPPER);
+    }
+
+    /**
+     * Реализация метода поиска узлов и всех их родительских категорий без каких-либо потомков.
+     * Предки находятся одним запросом по материализованному пути каждого узла,
+     * общие предки нескольких узлов возвращаются один раз.
+     *
+     * @param ids - идентификаторы узлов(товаров/категорий).
+     * @return список найденных узлов и их предков.
+     */
+    @Override
+    public List<Node> findAllParentNodeById(Collection<UUID> ids) {
+        final Object[] nodeIds = ids.stream().filter(Objects::nonNull).distinct().toArray();
+        log.info("Start find all parent nodes of {} nodes", nodeIds.length);
+        if (nodeIds.length == 0) return new ArrayList<>();
+        return jdbcTemplate.query("""
+                        SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer) AS price,
+                               to_char(date, 'yyyy-mm-dd hh24:mi:ss') as date, offer_sum, offer_count
+                           FROM node
+                           WHERE id IN (SELECT unnest(path) FROM node WHERE id = ANY(?))""",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", nodeIds)),
+                NODE_ROW_MAPPER);
+    }
+
+    /**
+     * Реализация метода блокировки корневых категорий узлов транзакционными рекомендательными блокировками
+     * Postgres одним запросом. Корень узла берётся из первого элемента материализованного пути,
+     * ключ блокировки вычисляется из идентификатора корня в пространстве {@link #ROOT_LOCK}.
+     * Блокировки берутся в порядке ключей, поэтому две транзакции никогда не ждут друг друга по кругу,
+     * совпадение ключей разных корней лишь сокращает параллелизм. Сортировка задана во внешнем запросе,
+     * на одном уровне с вызовом блокировки: Postgres вычисляет изменчивые функции списка выборки после сортировки,
+     * тогда как порядок подзапроса внешний запрос сохранять не обязан.
+     *
+     * @param ids - идентификаторы узлов(товаров/категорий).
+     * @return идентификаторы заблокированных корней.
+     */
+    @Override
+    public Set<UUID> lockAllRootById(Collection<UUID> ids) {
+        final Object[] nodeIds = ids.stream().filter(Objects::nonNull).distinct().toArray();
+        if (nodeIds.length == 0) return new HashSet<>();
+        return metrics.timed("lockAllRootById", () -> {
+            final Set<UUID> result = new HashSet<>();
+            jdbcTemplate.query("""
+                            SELECT root, pg_advisory_xact_lock(?, key)
+                               FROM (SELECT DISTINCT root, hashtext(root::text) AS key
+                                        FROM (SELECT COALESCE(node.path[1], ref.id) AS root
+                                                 FROM unnest(?::uuid[]) AS ref(id)
+                                                 LEFT JOIN node ON node.id = ref.id) AS ref_root) AS lock
+                               ORDER BY key, root""",
+                    ps -> {
+                        ps.setInt(1, ROOT_LOCK);
+                        ps.setArray(2, ps.getConnection().createArrayOf("uuid", nodeIds));
+                    },
+                    rs -> {
+                        result.add(UUID.fromString(rs.getString("root")));
+                    });
+            log.info("Locked {} roots of {} nodes", result.size(), nodeIds.length);
+            return result;
+        });
+    }
+
+    /**
+     * Реализация метода блокировки всего каталога транзакционной рекомендательной блокировкой
+     * Postgres в пространстве {@link #CATALOG_LOCK}.
+     */
+    @Override
+    public void lockAll() {
+        metrics.timed("lockAll", () -> {
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, 0)", rs -> {
+            }, CATALOG_LOCK);
+        });
+    }
+
+    /**
+     * Реализация метода оповещения об изменении узлов одним запросом.
+     * Идентификаторы узлов, их предков по материализованному пути и, при необходимости,
+     * потомков по индексу пути собираются в SQL и отправляются в канал {@code repository.invalidation.channel}
+     * порциями по {@link #NOTIFY_CHUNK_SIZE}, чтобы не превысить предел размера оповещения Postgres в 8000 байт.
+     * Каждое оповещение начинается с идентификатора экземпляра {@link #INSTANCE_ID}, по которому
+     * экземпляр пропускает собственные оповещения.
+     *
+     * @param ids         - идентификаторы изменяемых узлов и их новых родителей.
+     * @param descendants - признак оповещения и обо всех потомках узлов.
+     * @return количество отправленных оповещений.
+     */
+    @Override
+    public int notifyAllChanged(Collection<UUID> ids, boolean descendants) {
+        final Object[] nodeIds = ids.stream().filter(Objects::nonNull).distinct().toArray();
+        if (nodeIds.length == 0) return 0;
+        return metrics.timed("notifyAllChanged", () -> {
+            final PreparedStatementSetter setter = ps -> {
+                ps.setString(1, notifyChannel);
+                ps.setString(2, INSTANCE_ID + ":");
+                ps.setInt(3, NOTIFY_CHUNK_SIZE);
+                ps.setArray(4, ps.getConnection().createArrayOf("uuid", nodeIds));
+                ps.setArray(5, ps.getConnection().createArrayOf("uuid", nodeIds));
+                if (descendants) ps.setArray(6, ps.getConnection().createArrayOf("uuid", nodeIds));
+            };
+            final int[] result = new int[1];
+            final RowCallbackHandler handler = rs -> result[0]++;
+            if (descendants) {
+                jdbcTemplate.query("""
+                                SELECT pg_notify(?, ? || string_agg(id::text, ','))
+                                   FROM (SELECT id, (row_number() OVER () - 1) / ? AS chunk
+                                            FROM (SELECT unnest(?::uuid[]) AS id
+                                                  UNION
+                                                  SELECT unnest(path) FROM node WHERE id = ANY(?)
+                                                  UNION
+                                                  SELECT id FROM node WHERE path && ?::uuid[]) AS changed) AS numbered
+                                   GROUP BY chunk""",
+                        setter, handler);
+            } else {
+                jdbcTemplate.query("""
+                                SELECT pg_notify(?, ? || string_agg(id::text, ','))
+                                   FROM (SELECT id, (row_number() OVER () - 1) / ? AS chunk
+                                            FROM (SELECT unnest(?::uuid[]) AS id
+                                                  UNION
+                                                  SELECT unnest(path) FROM node WHERE id = ANY(?)) AS changed) AS numbered
+                                   GROUP BY chunk""",
+                        setter, handler);
+            }
+            log.info("Sent {} notifications of {} changed nodes", result[0], nodeIds.length);
+            return result[0];
+        });
+    }
+
     /**
      * Приватный метод поиска прямых потомков узла по идентификатору,
      * для исполнения внутри транзакции.
@@ -128,21 +418,11 @@ public class NodeRepositoryImpl implements NodeRepository {
     private List<Node> findAllChildrenByIdTx(UUID id) {
         log.info("Start find children by node id:{}", id);
         return jdbcTemplate.query("""
-                        SELECT id, type, name, parent_id, price, to_char(date, 'yyyy-mm-dd hh24:mi:ss') as date
+                        SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer) AS price,
+                                   to_char(date, 'yyyy-mm-dd hh24:mi:ss') as date, offer_sum, offer_count
                            FROM node
                            WHERE parent_id = ?::uuid""",
-                (rs, rowNum) -> new Node(
-                        UUID.fromString(rs.getString("id")),
-                        rs.getString("type"),
-                        rs.getString("name"),
-                        rs.getString("parent_id") == null ? null : UUID.fromString(rs.getString("parent_id")),
-                        rs.getString("parent_id") == null ? null : UUID.fromString(rs.getString("parent_id")),
-                        rs.getObject("price", Integer.class),
-                        rs.getTimestamp("date"),
-                        null,
-                        NodeType.OFFER.equals(rs.getString("type")) ? 1 : 0,
-                        rs.getInt("price")
-                ),
+                NODE_ROW_MAPPER,
                 id);
     }
 
@@ -158,27 +438,23 @@ public class NodeRepositoryImpl implements NodeRepository {
     @Override
     public int save(Node node) {
         log.info("Start save node:{}", node.getId());
-        final int result = saveTx(node);
-        if (NodeType.CATEGORY.equals(node.getType())
-                && isEmptyCategory(node.getId())) {
-            return result;
-        }
-        updateAllParentCategory(node.getParentId(), node.getDate());
-        updateAllParentCategory(node.getOldParentId(), node.getDate());
+        final int result = saveAll(List.of(node));
         log.info("Finish save node:{}", node.getId());
         return result;
     }
 
     /**
-     * Приватный метод сохранения узла(товара/категории) в каталоге товаров
-     * для исполнения внутри транзакции.
+     * Приватный метод пакетного сохранения узлов(товаров/категории) в каталоге товаров
+     * для исполнения внутри транзакции. Узлы отправляются в базу данных
+     * пакетами размером {@code batchSize} вместе с материализованным путём от корня.
      * Метод возвращает количество сохраненных позиций.
      *
-     * @param node - узел, который необходимо добавить в каталог.
+     * @param nodes   - список узлов, который необходимо добавить в каталог.
+     * @param pathMap - материализованные пути импортируемых узлов.
      * @return количество сохранённых позиций.
      */
-    private int saveTx(Node node) {
-        final int count = jdbcTemplate.update("""
+    private int saveAllTx(List<Node> nodes, Map<UUID, UUID[]> pathMap) {
+        final int[][] counts = jdbcTemplate.batchUpdate("""
                         INSERT INTO 
                             node (
                                 id, 
@@ -186,13 +462,15 @@ public class NodeRepositoryImpl implements NodeRepository {
                                 name, 
                                 date, 
                                 parent_id, 
-                                price) 
+                                price,
+                                path) 
                             VALUES(
                                 ?::uuid, 
                                 ?,  
                                 ?, 
                                 ?::timestamp with time zone, 
                                 ?::uuid, 
+                                ?,
                                 ?)
                         ON CONFLICT (id) DO 
                             UPDATE SET
@@ -200,14 +478,24 @@ public class NodeRepositoryImpl implements NodeRepository {
                                 name = excluded.name,
                                 parent_id = excluded.parent_id,
                                 price = excluded.price,
-                                date = excluded.date""",
-                node.getId(),
-                node.getType(),
-                node.getName(),
-                node.getDate(),
-                node.getParentId(),
-                node.getPrice());
-        log.info("Save node with ID: {} is successfully complete!", node.getId());
+                                date = excluded.date,
+                                path = excluded.path""",
+                nodes,
+                batchSize,
+                (ps, node) -> {
+                    ps.setObject(1, node.getId(), Types.OTHER);
+                    ps.setString(2, node.getType());
+                    ps.setString(3, node.getName());
+                    ps.setTimestamp(4, node.getDate() == null ? null : new Timestamp(node.getDate().getTime()));
+                    ps.setObject(5, node.getParentId(), Types.OTHER);
+                    ps.setObject(6, node.getPrice(), Types.INTEGER);
+                    ps.setArray(7, ps.getConnection().createArrayOf("uuid", pathMap.get(node.getId())));
+                });
+        final int count = Arrays.stream(counts)
+                .flatMapToInt(Arrays::stream)
+                .map(rows -> rows == Statement.SUCCESS_NO_INFO ? 1 : rows)
+                .sum();
+        log.info("Save {} nodes in batches of {} is successfully complete!", count, batchSize);
         return count;
     }
 
@@ -221,39 +509,351 @@ public class NodeRepositoryImpl implements NodeRepository {
      */
     @Override
     public int saveAll(List<Node> nodes) {
-        log.info("Start save nodes!");
-        int count = 0;
-        final Set<UUID> parentCategorySet = new HashSet<>();
-        final Date updateDate = nodes.get(0).getDate();
+        return metrics.timed("saveAll", () -> {
+            log.info("Start save nodes!");
+            int count = 0;
+            final Set<UUID> parentCategorySet = new HashSet<>();
+            final Date updateDate = nodes.get(0).getDate();
+            final Map<UUID, Aggregate> aggregates = findAllAncestorAggregateTx(nodes);
+            moveAllAggregate(nodes, aggregates);
+            final Map<UUID, UUID[]> pathMap = new HashMap<>();
+            nodes.forEach(node -> pathMap.put(node.getId(), buildPath(aggregates, node.getId())));
+            count += saveAllTx(nodes, pathMap);
+            final Set<UUID> affectedIdSet = findAllAffectedId(nodes, aggregates, pathMap);
+            updateAllAncestorVersionTx(affectedIdSet);
+            final Set<UUID> notEmptyCategorySet = findAllNotEmptyCategoryTx(nodes);
+            for (Node node : nodes) {
+                if (NodeType.CATEGORY.equals(node.getType())
+                        && !notEmptyCategorySet.contains(node.getId())) {
+                    continue;
+                }
+                parentCategorySet.add(node.getParentId());
+                parentCategorySet.add(node.getOldParentId());
+            }
+            updateAllAggregateTx(aggregates);
+            updateAllDescendantPathTx(nodes, aggregates, pathMap);
+            updateAllParentCategory(parentCategorySet, updateDate);
+            saveAllHistoryTx(nodes, parentCategorySet);
+            saveAllMoveChangeTx(nodes, aggregates, pathMap);
+            saveAllUpsertChangeTx(affectedIdSet);
+            log.info("Finish save {} nodes!", count);
+            return count;
+        });
+    }
+
+    /**
+     * Приватный метод загрузки агрегатов (суммы и количества товаров) и путей импортируемых узлов,
+     * их новых родителей и всех их предков одним запросом по материализованному пути.
+     *
+     * @param nodes - список импортируемых узлов.
+     * @return агрегаты узлов в том состоянии, в котором они находятся в базе данных.
+     */
+    private Map<UUID, Aggregate> findAllAncestorAggregateTx(List<Node> nodes) {
+        final Set<UUID> ids = new HashSet<>();
+        nodes.forEach(node -> {
+            ids.add(node.getId());
+            if (node.getParentId() != null) ids.add(node.getParentId());
+        });
+        final Map<UUID, Aggregate> result = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT id, parent_id, offer_sum, offer_count, path
+                           FROM node
+                           WHERE id IN (SELECT unnest(path) FROM node WHERE id = ANY(?))""",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+                rs -> {
+                    result.put(
+                            UUID.fromString(rs.getString("id")),
+                            new Aggregate(
+                                    rs.getString("parent_id") == null ? null : UUID.fromString(rs.getString("parent_id")),
+                                    rs.getLong("offer_sum"),
+                                    rs.getInt("offer_count"),
+                                    (UUID[]) rs.getArray("path").getArray()));
+                });
+        return result;
+    }
+
+    /**
+     * Приватный метод получения идентификаторов импортируемых узлов, их прежних и новых предков.
+     * Идентификаторы предков берутся из прежних и новых материализованных путей, вычисленных при импорте.
+     *
+     * @param nodes      - список импортируемых узлов.
+     * @param aggregates - агрегаты узлов и их предков с путями до импорта.
+     * @param pathMap    - новые материализованные пути импортируемых узлов.
+     * @return идентификаторы узлов и их предков.
+     */
+    static Set<UUID> findAllAffectedId(List<Node> nodes, Map<UUID, Aggregate> aggregates, Map<UUID, UUID[]> pathMap) {
+        final Set<UUID> result = new HashSet<>();
         for (Node node : nodes) {
-            count += saveTx(node);
-            if (NodeType.CATEGORY.equals(node.getType())
-                    && isEmptyCategory(node.getId())) {
-                continue;
+            result.addAll(Arrays.asList(pathMap.get(node.getId())));
+            final Aggregate aggregate = aggregates.get(node.getId());
+            if (aggregate != null && aggregate.initialPath != null) result.addAll(Arrays.asList(aggregate.initialPath));
+        }
+        return result;
+    }
+
+    /**
+     * Приватный метод увеличения счётчика изменений поддерева импортируемых узлов,
+     * их прежних и новых предков одним запросом.
+     *
+     * @param ids - идентификаторы импортируемых узлов и их предков.
+     * @return количество обновленных узлов.
+     */
+    private int updateAllAncestorVersionTx(Set<UUID> ids) {
+        return jdbcTemplate.update("""
+                        UPDATE
+                          node
+                        SET version = version + 1
+                        WHERE
+                          id = ANY(?)""",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())));
+    }
+
+    /**
+     * Приватный метод записи в ленту изменений удаления перемещённых в другую категорию узлов
+     * с их прежним материализованным путём, чтобы подписчики на поддерево прежних предков узнали об уходе узла.
+     * Новое состояние узлов записывается следом методом {@link #saveAllUpsertChangeTx(Set)}.
+     *
+     * @param nodes      - список импортируемых узлов.
+     * @param aggregates - агрегаты узлов и их предков с путями до импорта.
+     * @param pathMap    - новые материализованные пути импортируемых узлов.
+     */
+    private void saveAllMoveChangeTx(List<Node> nodes, Map<UUID, Aggregate> aggregates, Map<UUID, UUID[]> pathMap) {
+        if (!changeFeed) return;
+        final List<Node> movedNodes = nodes.stream()
+                .filter(node -> aggregates.get(node.getId()).initialPath != null)
+                .filter(node -> !Arrays.equals(aggregates.get(node.getId()).initialPath, pathMap.get(node.getId())))
+                .toList();
+        if (movedNodes.isEmpty()) return;
+        jdbcTemplate.batchUpdate("""
+                        INSERT INTO node_change (operation, id, type, name, parent_id, price, date, path)
+                        VALUES ('DELETE', ?::uuid, ?, ?, ?::uuid, ?, ?::timestamp with time zone, ?)""",
+                movedNodes,
+                batchSize,
+                (ps, node) -> {
+                    final Aggregate aggregate = aggregates.get(node.getId());
+                    final UUID[] initialPath = aggregate.initialPath;
+                    final Integer price = node.getPrice() != null || aggregate.initialOfferCount == 0
+                            ? node.getPrice()
+                            : (int) (aggregate.initialOfferSum / aggregate.initialOfferCount);
+                    ps.setObject(1, node.getId(), Types.OTHER);
+                    ps.setString(2, node.getType());
+                    ps.setString(3, node.getName());
+                    ps.setObject(4, initialPath.length > 1 ? initialPath[initialPath.length - 2] : null, Types.OTHER);
+                    ps.setObject(5, price, Types.INTEGER);
+                    ps.setTimestamp(6, node.getDate() == null ? null : new Timestamp(node.getDate().getTime()));
+                    ps.setArray(7, ps.getConnection().createArrayOf("uuid", initialPath));
+                });
+    }
+
+    /**
+     * Приватный метод записи изменений импортируемых узлов и их предков в ленту изменений
+     * одним запросом, после обновления агрегатов и дат. Предки записываются раньше потомков.
+     *
+     * @param ids - идентификаторы импортируемых узлов и их предков.
+     * @return количество записанных изменений.
+     */
+    private int saveAllUpsertChangeTx(Set<UUID> ids) {
+        if (!changeFeed) return 0;
+        return jdbcTemplate.update("""
+                        INSERT INTO node_change (operation, id, type, name, parent_id, price, date, path)
+                        SELECT 'UPSERT', id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer), date, path
+                           FROM node
+                           WHERE id = ANY(?)
+                           ORDER BY array_length(path, 1)""",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())));
+    }
+
+    /**
+     * Приватный метод пересчёта агрегатов категорий в памяти при импорте узлов.
+     * Сначала все импортируемые узлы отсоединяются от старых родителей,
+     * затем присоединяются к новым, при этом агрегат узла вычитается/прибавляется
+     * ко всем его предкам. Каждое промежуточное состояние является подграфом
+     * исходного либо итогового дерева, поэтому порядок узлов в импорте не важен.
+     * После вызова ссылки на родителей в карте соответствуют итоговому дереву.
+     * Используется также встроенным репозиторием {@link EmbeddedNodeRepository}.
+     *
+     * @param nodes      - список импортируемых узлов.
+     * @param aggregates - агрегаты узлов и их предков до импорта.
+     */
+    static void moveAllAggregate(List<Node> nodes, Map<UUID, Aggregate> aggregates) {
+        for (Node node : nodes) {
+            final Aggregate aggregate = aggregates.get(node.getId());
+            if (aggregate == null) continue;
+            addToAllParentAggregate(aggregates, aggregate.parentId, -aggregate.offerSum, -aggregate.offerCount);
+            aggregate.parentId = null;
+        }
+        for (Node node : nodes) {
+            final Aggregate aggregate = aggregates.computeIfAbsent(node.getId(), key -> new Aggregate(null, 0, 0, null));
+            if (NodeType.OFFER.equals(node.getType())) {
+                aggregate.offerSum = node.getPrice();
+                aggregate.offerCount = 1;
+            }
+            aggregate.parentId = node.getParentId();
+            addToAllParentAggregate(aggregates, aggregate.parentId, aggregate.offerSum, aggregate.offerCount);
+        }
+    }
+
+    /**
+     * Приватный метод записи приращений агрегатов категорий, вычисленных при импорте.
+     * В базу данных записываются только изменившиеся агрегаты одним пакетом.
+     *
+     * @param aggregates - агрегаты узлов и их предков после импорта.
+     * @return количество обновленных узлов.
+     */
+    private int updateAllAggregateTx(Map<UUID, Aggregate> aggregates) {
+        final List<Object[]> batchArgs = new ArrayList<>();
+        aggregates.forEach((id, aggregate) -> {
+            if (aggregate.isChanged()) {
+                batchArgs.add(new Object[]{
+                        aggregate.offerSum - aggregate.initialOfferSum,
+                        aggregate.offerCount - aggregate.initialOfferCount,
+                        id});
             }
-            parentCategorySet.add(node.getParentId());
-            parentCategorySet.add(node.getOldParentId());
+        });
+        if (batchArgs.isEmpty()) return 0;
+        jdbcTemplate.batchUpdate("""
+                        UPDATE
+                          node
+                        SET offer_sum = offer_sum + ?,
+                            offer_count = offer_count + ?
+                        WHERE
+                          id = ?::uuid""",
+                batchArgs);
+        log.info("Aggregates of {} nodes are updated!", batchArgs.size());
+        return batchArgs.size();
+    }
+
+    /**
+     * Приватный технический метод прибавляет приращение агрегата ко всем предкам,
+     * начиная с непосредственного родителя. Отсутствующие в карте узлы
+     * (новые категории текущего импорта) добавляются с нулевым агрегатом.
+     *
+     * @param aggregates      - агрегаты узлов и их предков.
+     * @param id              - идентификатор родителя с которого необходимо начать обновление.
+     * @param offerSumDelta   - приращение суммы цен товаров.
+     * @param offerCountDelta - приращение количества товаров.
+     */
+    private static void addToAllParentAggregate(Map<UUID, Aggregate> aggregates, UUID id, long offerSumDelta, int offerCountDelta) {
+        while (id != null) {
+            final Aggregate parent = aggregates.computeIfAbsent(id, key -> new Aggregate(null, 0, 0, null));
+            parent.offerSum += offerSumDelta;
+            parent.offerCount += offerCountDelta;
+            id = parent.parentId;
         }
-        parentCategorySet.forEach(categoryId -> updateAllParentCategory(categoryId, updateDate));
-        log.info("Finish save {} nodes!", count);
+    }
+
+    /**
+     * Приватный технический метод строит материализованный путь узла
+     * от корневого предка до самого узла по итоговым ссылкам на родителей.
+     *
+     * @param aggregates - агрегаты узлов и их предков после импорта.
+     * @param id         - идентификатор узла.
+     * @return путь от корня до узла включительно.
+     */
+    static UUID[] buildPath(Map<UUID, Aggregate> aggregates, UUID id) {
+        final Deque<UUID> path = new ArrayDeque<>();
+        while (id != null) {
+            path.push(id);
+            id = aggregates.get(id).parentId;
+        }
+        return path.toArray(new UUID[0]);
+    }
+
+    /**
+     * Приватный метод обновления материализованных путей потомков категорий,
+     * которые при импорте сменили родителя (либо родителя сменил кто-то из их предков).
+     * Префикс пути каждого потомка до перемещённой категории заменяется новым путём категории,
+     * поэтому порядок обработки категорий не важен.
+     *
+     * @param nodes      - список импортируемых узлов.
+     * @param aggregates - агрегаты узлов и их предков до импорта.
+     * @param pathMap    - новые материализованные пути импортируемых узлов.
+     * @return количество обновленных узлов.
+     */
+    private int updateAllDescendantPathTx(List<Node> nodes, Map<UUID, Aggregate> aggregates, Map<UUID, UUID[]> pathMap) {
+        final List<Node> movedCategories = nodes.stream()
+                .filter(node -> NodeType.CATEGORY.equals(node.getType()))
+                .filter(node -> aggregates.get(node.getId()).initialPath != null)
+                .filter(node -> !Arrays.equals(aggregates.get(node.getId()).initialPath, pathMap.get(node.getId())))
+                .toList();
+        if (movedCategories.isEmpty()) return 0;
+        final int[][] counts = jdbcTemplate.batchUpdate("""
+                        UPDATE
+                          node
+                        SET path = ?::uuid[] || path[array_position(path, ?::uuid) + 1:]
+                        WHERE
+                          path @> ARRAY[?::uuid]
+                            AND
+                          id <> ?::uuid""",
+                movedCategories,
+                batchSize,
+                (ps, node) -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("uuid", pathMap.get(node.getId())));
+                    ps.setObject(2, node.getId(), Types.OTHER);
+                    ps.setObject(3, node.getId(), Types.OTHER);
+                    ps.setObject(4, node.getId(), Types.OTHER);
+                });
+        final int count = Arrays.stream(counts).flatMapToInt(Arrays::stream).filter(rows -> rows > 0).sum();
+        log.info("Paths of {} descendant nodes of {} moved categories are updated!", count, movedCategories.size());
         return count;
     }
 
+    /**
+     * Приватный метод записи в историю текущего состояния импортируемых узлов
+     * и всех их предков (включая предков старых родителей) одним запросом.
+     * Для категорий записывается пересчитанная средняя цена.
+     *
+     * @param nodes             - список импортируемых узлов.
+     * @param parentCategorySet - идентификаторы родительских категорий импорта.
+     * @return количество записанных состояний.
+     */
+    private int saveAllHistoryTx(List<Node> nodes, Set<UUID> parentCategorySet) {
+        final Set<UUID> ids = new HashSet<>(parentCategorySet);
+        ids.remove(null);
+        nodes.forEach(node -> ids.add(node.getId()));
+        final int result = jdbcTemplate.update("""
+                        INSERT INTO
+                            node_history (id, type, name, parent_id, price, date)
+                        SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer), date
+                           FROM node
+                           WHERE id IN (SELECT unnest(path) FROM node WHERE id = ANY(?))
+                                AND
+                            date IS NOT NULL
+                        ON CONFLICT (id, date) DO
+                            UPDATE SET
+                                type = excluded.type,
+                                name = excluded.name,
+                                parent_id = excluded.parent_id,
+                                price = excluded.price""",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())));
+        log.info("{} node states are saved to history!", result);
+        return result;
+    }
 
     /**
      * Приватный технический метод служит для определения,
-     * содержит ли категория товары или нет.
+     * какие из импортируемых категорий содержат хотя бы один узел.
+     * Проверка выполняется одним запросом для всех категорий импорта.
      *
-     * @param id         - идентификатор узла.
-     * @return true категория не содержит товары, false в обратном случае.
+     * @param nodes - список импортируемых узлов.
+     * @return множество идентификаторов не пустых категорий.
      */
-    private boolean isEmptyCategory(UUID id) {
-        return jdbcTemplate.queryForObject("""
-                        SELECT count(id)
+    private Set<UUID> findAllNotEmptyCategoryTx(List<Node> nodes) {
+        final Object[] categoryIds = nodes.stream()
+                .filter(node -> NodeType.CATEGORY.equals(node.getType()))
+                .map(Node::getId)
+                .toArray();
+        final Set<UUID> result = new HashSet<>();
+        if (categoryIds.length == 0) return result;
+        jdbcTemplate.query("""
+                        SELECT DISTINCT parent_id
                            FROM node
-                           WHERE parent_id = ?::uuid""",
-                Integer.class,
-                id) == 0;
+                           WHERE parent_id = ANY(?)""",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", categoryIds)),
+                rs -> {
+                    result.add(UUID.fromString(rs.getString("parent_id")));
+                });
+        return result;
     }
 
     /**
@@ -267,36 +867,84 @@ public class NodeRepositoryImpl implements NodeRepository {
      */
     public int updateAllParentCategory(UUID id, Date updateDate) {
 
-        if (id == null || updateDate == null) return 0;
+        if (id == null) return 0;
 
-        log.info("Start to update all parent category begins with ID: {}", id);
+        return updateAllParentCategory(Collections.singleton(id), updateDate);
+    }
+
+    /**
+     * Технический метод служит для обновления всех родительских категорий набора узлов
+     * одним запросом. Общие предки нескольких категорий обновляются ровно один раз,
+     * категории, дата которых уже равна дате обновления, не перезаписываются.
+     * Метод возвращает количество обновленных категорий.
+     *
+     * @param ids        - идентификаторы родительских категорий с которых необходимо начать обновление.
+     * @param updateDate - дата обновления.
+     * @return количество обновленных категорий.
+     */
+    public int updateAllParentCategory(Collection<UUID> ids, Date updateDate) {
+        return metrics.timed("updateAllParentCategory", () -> {
+            final Object[] categoryIds = ids.stream().filter(Objects::nonNull).toArray();
+            if (categoryIds.length == 0 || updateDate == null) return 0;
+
+            log.info("Start to update all parent category begins with {} categories", categoryIds.length);
+            final int result = jdbcTemplate.update("""
+                            UPDATE 
+                              node 
+                            SET date = ?::timestamp with time zone 
+                            WHERE 
+                              id 
+                            IN (SELECT unnest(path) FROM node WHERE id = ANY(?))
+                              AND date IS DISTINCT FROM ?::timestamp with time zone;
+                            """,
+                    ps -> {
+                        final Timestamp timestamp = new Timestamp(updateDate.getTime());
+                        ps.setTimestamp(1, timestamp);
+                        ps.setArray(2, ps.getConnection().createArrayOf("uuid", categoryIds));
+                        ps.setTimestamp(3, timestamp);
+                    });
+            log.info("{} parent category all update begins with {} categories", result, categoryIds.length);
+            return result;
+        });
+    }
+
+    /**
+     * Реализация метода обновления агрегатов (суммы и количества товаров) всех родительских категорий,
+     * начиная от непосредственного родителя и заканчивая корневым предком.
+     *
+     * @param id              - идентификатор родительской категории с которой необходимо начать обновление.
+     * @param offerSumDelta   - приращение суммы цен товаров.
+     * @param offerCountDelta - приращение количества товаров.
+     * @return количество обновленных категорий.
+     */
+    @Override
+    public int updateAllParentAggregate(UUID id, long offerSumDelta, int offerCountDelta) {
+
+        if (id == null || (offerSumDelta == 0 && offerCountDelta == 0)) return 0;
+
+        log.info("Start to update aggregate of all parent category begins with ID: {}", id);
         final int result = jdbcTemplate.update("""
-                        WITH RECURSIVE r AS (
-                           SELECT id, parent_id
-                           FROM node
-                           WHERE id = ?::uuid
-                           UNION ALL
-                           SELECT node.id, node.parent_id
-                           FROM node
-                              JOIN r
-                                  ON node.id = r.parent_id
-                        )
-                        UPDATE 
-                          node 
-                        SET date = ?::timestamp with time zone 
-                        WHERE 
-                          id 
-                        IN (SELECT id FROM r);
+                        UPDATE
+                          node
+                        SET offer_sum = offer_sum + ?,
+                            offer_count = offer_count + ?
+                        WHERE
+                          id
+                        IN (SELECT unnest(path) FROM node WHERE id = ?::uuid);
                         """,
-                id,
-                updateDate);
-        log.info("{} parent category all update begins with ID: {}", result, id);
+                offerSumDelta,
+                offerCountDelta,
+                id);
+        log.info("{} parent category aggregate update begins with ID: {}", result, id);
         return result;
     }
 
     /**
      * Реализация метода удаления узла по идентификатору.
-     * Метод удаляет только узел без потомков.
+     * Метод удаляет только узел без потомков, в том же запросе увеличивая счётчик изменений
+     * поддерева всех предков узла, так как дата обновления предков при удалении не меняется.
+     * Перед удалением в ленту изменений записывается удаление узла и новое состояние его предков,
+     * поэтому агрегаты предков должны быть обновлены до вызова метода.
      *
      * @param id - идентификатор корневого узла(товара/категории).
      * @return количество удалённых узлов.
@@ -304,40 +952,93 @@ public class NodeRepositoryImpl implements NodeRepository {
     @Override
     public int deleteNodeById(UUID id) {
         log.info("Start to delete only root node with ID: {}", id);
+        if (changeFeed) {
+            jdbcTemplate.update("""
+                            INSERT INTO node_change (operation, id, type, name, parent_id, price, date, path)
+                            SELECT CASE WHEN id = ?::uuid THEN 'DELETE' ELSE 'UPSERT' END,
+                                   id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer), date, path
+                               FROM node
+                               WHERE id IN (SELECT unnest(path) FROM node WHERE id = ?::uuid)
+                               ORDER BY array_length(path, 1) DESC""",
+                    id,
+                    id);
+        }
         return jdbcTemplate.update("""
+                        WITH ancestor AS (
+                            UPDATE
+                              node
+                            SET version = version + 1
+                            WHERE
+                              id IN (SELECT unnest(path) FROM node WHERE id = ?::uuid)
+                                AND
+                              id <> ?::uuid
+                        )
                         DELETE FROM 
                             node 
                         WHERE 
                             id = ?::uuid;""",
+                id,
+                id,
                 id);
     }
 
     /**
-     * Метод удаляет всех потомков заданного узла.
+     * Реализация метода поиска идентификаторов всех товаров-потомков заданного узла
+     * одним запросом по индексу материализованного пути.
      *
      * @param id - идентификатор корневого узла(товара/категории).
-     * @return количество удалённых узлов потомков.
+     * @return идентификаторы товаров-потомков без самого узла.
      */
-    public int deleteAllDescendantById(UUID id) {
-        log.info("Start to delete all descendants node with ID: {}", id);
-        return jdbcTemplate.update("""
-                           WITH RECURSIVE r AS (
-                           SELECT id, type, name, parent_id, price, date
-                           FROM node
-                           WHERE parent_id = ?::uuid
-                           UNION
-                           SELECT node.id, node.type, node.name, node.parent_id, node.price, node.date
+    @Override
+    public List<UUID> findAllDescendantOfferId(UUID id) {
+        return jdbcTemplate.query("""
+                        SELECT id
                            FROM node
-                              JOIN r
-                                  ON node.parent_id = r.id
-                        )
-                        DELETE FROM 
-                            node 
-                        WHERE 
-                            id in (SELECT id FROM r)""",
+                           WHERE path @> ARRAY[?::uuid]
+                                AND
+                            type = 'OFFER'
+                                AND
+                            id <> ?::uuid""",
+                (rs, rowNum) -> UUID.fromString(rs.getString("id")),
+                id,
                 id);
     }
 
+    /**
+     * Метод удаляет всех потомков заданного узла
+     * одним запросом по индексу материализованного пути,
+     * предварительно записывая их удаление в ленту изменений.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return количество удалённых узлов потомков.
+     */
+    public int deleteAllDescendantById(UUID id) {
+        return metrics.timed("deleteAllDescendantById", () -> {
+            log.info("Start to delete all descendants node with ID: {}", id);
+            if (changeFeed) {
+                jdbcTemplate.update("""
+                                INSERT INTO node_change (operation, id, type, name, parent_id, price, date, path)
+                                SELECT 'DELETE', id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer), date, path
+                                   FROM node
+                                   WHERE path @> ARRAY[?::uuid]
+                                        AND
+                                    id <> ?::uuid
+                                   ORDER BY array_length(path, 1) DESC""",
+                        id,
+                        id);
+            }
+            return jdbcTemplate.update("""
+                            DELETE FROM 
+                                node 
+                            WHERE 
+                                path @> ARRAY[?::uuid]
+                                    AND
+                                id <> ?::uuid""",
+                    id,
+                    id);
+        });
+    }
+
     /**
      * Реализация метода получение списка товаров, цена которых была обновлена за последние 24 часа включительно
      * [now() - 24h, now()] от времени переданном в запросе.
@@ -347,15 +1048,203 @@ public class NodeRepositoryImpl implements NodeRepository {
      */
     @Override
     public List<Node> findSaleNodeList(Date date) {
+        return findSaleNodeList(date, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Реализация метода получения страницы товаров, цена которых была обновлена за последние 24 часа включительно
+     * [date - 24h, date], одним запросом по частичному индексу (date, id) товаров.
+     * Страница продолжает предыдущую по ключу (дата обновления, идентификатор), который совпадает с ключом индекса,
+     * поэтому страница читается диапазоном индекса без сортировки.
+     *
+     * @param date  - дата, от которой отсчитываются 24 часа.
+     * @param after - последний товар предыдущей страницы, либо {@code null} для первой страницы.
+     * @param limit - наибольшее количество товаров на странице.
+     * @return товары страницы.
+     */
+    @Override
+    public List<Node> findSaleNodeList(Date date, Node after, int limit) {
+        return metrics.timed("findSaleNodeList", () -> {
+            log.info("Start find sale nodes by date: {} after: {}", date, after == null ? null : after.getId());
+            final Timestamp timestamp = new Timestamp(date.getTime());
+            return jdbcTemplate.query("""
+                            SELECT
+                                id, type, name, parent_id, price, date, offer_sum, offer_count
+                            FROM
+                                node
+                            WHERE
+                                type = 'OFFER'
+                                    AND
+                                date >= ?::timestamp with time zone - interval '24 hour' and date <= ?::timestamp with time zone
+                                    AND
+                                (date, id) > (COALESCE(?::timestamp with time zone, '-infinity'), COALESCE(?::uuid, '00000000-0000-0000-0000-000000000000'))
+                            ORDER BY date, id
+                            LIMIT ?""",
+                    ps -> {
+                        ps.setTimestamp(1, timestamp);
+                        ps.setTimestamp(2, timestamp);
+                        ps.setTimestamp(3, after == null ? null : new Timestamp(after.getDate().getTime()));
+                        ps.setObject(4, after == null ? null : after.getId(), Types.OTHER);
+                        ps.setInt(5, limit);
+                    },
+                    NODE_ROW_MAPPER);
+        });
+    }
+
+    /**
+     * Реализация метода потокового получения товаров, дата обновления которых не раньше
+     * самой поздней даты обновления товара за вычетом заданного окна.
+     * Строки читаются курсором по частичному индексу дат обновления товаров.
+     *
+     * @param window   - длина окна.
+     * @param consumer - обработчик, которому передаётся каждый найденный товар.
+     */
+    @Override
+    public void findRecentOfferNodeList(Duration window, Consumer<Node> consumer) {
+        log.info("Start find offer nodes updated within {} of the latest update", window);
+        jdbcTemplate.query(connection -> {
+                    final PreparedStatement ps = connection.prepareStatement("""
+                            SELECT
+                                id, type, name, parent_id, price, date, offer_sum, offer_count
+                            FROM
+                                node
+                            WHERE
+                                type = 'OFFER'
+                                    AND
+                                date >= (SELECT max(date) FROM node WHERE type = 'OFFER') - ? * interval '1 millisecond'""");
+                    ps.setFetchSize(fetchSize);
+                    ps.setLong(1, window.toMillis());
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(NODE_ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    /**
+     * Реализация метода получения идентификаторов корневых узлов по индексу родителя.
+     *
+     * @return идентификаторы корневых узлов.
+     */
+    @Override
+    public List<UUID> findAllRootId() {
+        return jdbcTemplate.query("SELECT id FROM node WHERE parent_id IS NULL",
+                (rs, rowNum) -> UUID.fromString(rs.getString("id")));
+    }
+
+    /**
+     * Реализация метода публикации изменений узлов.
+     * Транзакции пишут в ленту без общей блокировки, поэтому номера записи не совпадают с порядком фиксации.
+     * Публикуются только изменения транзакций с идентификатором меньше {@code xmin} текущего снимка:
+     * все такие транзакции и все транзакции раньше них уже завершены, и изменение перед ними не появится.
+     * Курсоры присваиваются подряд после последнего опубликованного в порядке транзакций под
+     * рекомендательной блокировкой, которую берут только публикующие, а не пишущие транзакции.
+     *
+     * @return количество опубликованных изменений.
+     */
+    @Override
+    public int publishAllChange() {
+        return metrics.timed("publishAllChange", () -> {
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, 0)", rs -> {
+            }, CHANGE_LOCK);
+            return jdbcTemplate.update("""
+                    UPDATE node_change
+                    SET published_seq = published.published_seq
+                    FROM (SELECT seq,
+                                 (SELECT COALESCE(max(published_seq), 0) FROM node_change)
+                                     + row_number() OVER (ORDER BY txid, seq) AS published_seq
+                             FROM node_change
+                             WHERE published_seq IS NULL
+                                  AND
+                              txid < txid_snapshot_xmin(txid_current_snapshot())) AS published
+                    WHERE node_change.seq = published.seq""");
+        });
+    }
+
+    /**
+     * Реализация метода получения опубликованных изменений узлов после заданного курсора одним запросом.
+     * Изменения поддерева отбираются по индексу сохранённого вместе с изменением материализованного пути,
+     * то есть по предкам узла на момент изменения.
+     *
+     * @param rootId - идентификатор корневой категории, либо {@code null} для всего каталога.
+     * @param cursor - курсор последнего полученного изменения.
+     * @param limit  - наибольшее количество изменений.
+     * @return список изменений.
+     */
+    @Override
+    public List<NodeChange> findChangeList(UUID rootId, long cursor, int limit) {
+        return metrics.timed("findChangeList", () -> {
+            if (rootId == null) {
+                return jdbcTemplate.query("""
+                                SELECT published_seq, operation, id, type, name, parent_id, price, date, path
+                                   FROM node_change
+                                   WHERE published_seq > ?
+                                   ORDER BY published_seq
+                                   LIMIT ?""",
+                        CHANGE_ROW_MAPPER,
+                        cursor,
+                        limit);
+            }
+            return jdbcTemplate.query("""
+                            SELECT published_seq, operation, id, type, name, parent_id, price, date, path
+                               FROM node_change
+                               WHERE published_seq > ?
+                                    AND
+                                path @> ARRAY[?::uuid]
+                               ORDER BY published_seq
+                               LIMIT ?""",
+                    CHANGE_ROW_MAPPER,
+                    cursor,
+                    rootId,
+                    limit);
+        });
+    }
+
+    @Override
+    public long findLastChangeCursor() {
+        final Long result = jdbcTemplate.queryForObject("SELECT max(published_seq) FROM node_change", Long.class);
+        return result == null ? 0 : result;
+    }
+
+    /**
+     * Реализация метода удаления опубликованных изменений узлов, записанных раньше заданной даты.
+     * Последнее опубликованное изменение сохраняется, так как от него отсчитываются курсоры следующей публикации.
+     *
+     * @param date - дата, изменения раньше которой удаляются.
+     * @return количество удалённых изменений.
+     */
+    @Override
+    public int deleteAllChangeBefore(Date date) {
+        return jdbcTemplate.update("""
+                        DELETE FROM node_change
+                        WHERE created < ?
+                             AND
+                         published_seq < (SELECT max(published_seq) FROM node_change)""",
+                new Timestamp(date.getTime()));
+    }
+
+    /**
+     * Реализация метода получения истории обновлений узла за полуинтервал [dateStart, dateEnd).
+     * Границы интервала не обязательны, история читается по первичному ключу (id, date).
+     *
+     * @param id        - идентификатор узла(товара/категории).
+     * @param dateStart - начало интервала включительно, либо {@code null}.
+     * @param dateEnd   - конец интервала не включительно, либо {@code null}.
+     * @return список состояний узла, упорядоченный по дате.
+     */
+    @Override
+    public List<Node> findStatisticNodeList(UUID id, Date dateStart, Date dateEnd) {
+        log.info("Start find statistic of node with ID: {} from {} to {}", id, dateStart, dateEnd);
         return jdbcTemplate.query("""
                         SELECT 
-                            id, type, name, parent_id, price, to_char(date, 'yyyy-mm-dd hh24:mi:ss') as date
+                            id, type, name, parent_id, price, date
                         FROM 
-                            node
+                            node_history
                         WHERE 
-                            type = ? 
+                            id = ?::uuid
+                                AND
+                            date >= COALESCE(?::timestamp with time zone, '-infinity')
                                 AND
-                            date >= ?::timestamp with time zone - interval '24 hour' and date <= ?::timestamp with time zone""",
+                            date < COALESCE(?::timestamp with time zone, 'infinity')
+                        ORDER BY date""",
                 (rs, rowNum) -> new Node(
                         UUID.fromString(rs.getString("id")),
                         rs.getString("type"),
@@ -365,11 +1254,38 @@ public class NodeRepositoryImpl implements NodeRepository {
                         rs.getObject("price", Integer.class),
                         rs.getTimestamp("date"),
                         null,
-                        NodeType.OFFER.equals(rs.getString("type")) ? 1 : 0,
-                        rs.getInt("price")
+                        0,
+                        0
                 ),
-                NodeType.OFFER,
-                date,
-                date);
+                id,
+                dateStart,
+                dateEnd);
+    }
+
+    /**
+     * Класс, реализующий изменяемый агрегат узла, который используется
+     * для вычисления приращений суммы и количества товаров категорий
+     * и новых материализованных путей при импорте.
+     */
+    static class Aggregate {
+        final long initialOfferSum;
+        final int initialOfferCount;
+        final UUID[] initialPath;
+        UUID parentId;
+        long offerSum;
+        int offerCount;
+
+        Aggregate(UUID parentId, long offerSum, int offerCount, UUID[] initialPath) {
+            this.parentId = parentId;
+            this.offerSum = offerSum;
+            this.offerCount = offerCount;
+            this.initialOfferSum = offerSum;
+            this.initialOfferCount = offerCount;
+            this.initialPath = initialPath;
+        }
+
+        boolean isChanged() {
+            return offerSum != initialOfferSum || offerCount != initialOfferCount;
+        }
     }
 }
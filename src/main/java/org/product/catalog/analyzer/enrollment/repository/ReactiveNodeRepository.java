@@ -0,0 +1,128 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Реактивный репозиторий чтения узлов каталога через R2DBC, доступный в профиле {@code reactive}.
+ * Запросы выполняются без блокировки потоков, строки передаются подписчику по мере получения из базы данных.
+ * Изменение каталога по-прежнему выполняется только транзакционным JDBC-репозиторием {@link NodeRepositoryImpl}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Profile("reactive")
+@Repository
+@RequiredArgsConstructor
+public class ReactiveNodeRepository {
+    private final DatabaseClient databaseClient;
+    private final RepositoryMetrics metrics;
+
+    /**
+     * Поиск узла в полную глубину по идентификатору.
+     * Поддерево выбирается одним запросом по GIN-индексу материализованного пути,
+     * граф потомков собирается в памяти после получения всех строк.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return узел со всеми потомками, либо пустой результат если узел не найден.
+     */
+    public Mono<Node> findDepthNodeById(UUID id) {
+        final Timer.Sample sample = metrics.start();
+        return databaseClient.sql("""
+                        SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer) AS price,
+                               date, offer_sum, offer_count
+                           FROM node
+                           WHERE path @> ARRAY[:id]""")
+                .bind("id", id)
+                .map(ReactiveNodeRepository::mapNode)
+                .all()
+                .collectList()
+                .flatMap(subtree -> {
+                    log.info("Find reactive depth node by id:{} with {} nodes", id, subtree.size());
+                    return Mono.justOrEmpty(NodeRepositoryImpl.buildTree(id, subtree));
+                })
+                .doFinally(signal -> sample.stop(metrics.timer("reactiveFindDepthNodeById")));
+    }
+
+    /**
+     * Получение версии поддерева узла по первичному ключу, без чтения потомков.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return версия поддерева, либо пустой результат если узел не найден.
+     */
+    public Mono<String> findVersionById(UUID id) {
+        return databaseClient.sql("""
+                        SELECT version, date
+                           FROM node
+                           WHERE id = :id""")
+                .bind("id", id)
+                .map(row -> {
+                    final OffsetDateTime date = row.get("date", OffsetDateTime.class);
+                    final Long version = row.get("version", Long.class);
+                    return NodeRepositoryImpl.version(date == null ? null : Date.from(date.toInstant()), version == null ? 0 : version);
+                })
+                .one();
+    }
+
+    /**
+     * Получение товаров, цена которых была обновлена за последние 24 часа включительно
+     * [now() - 24h, now()] от времени переданном в запросе. Товары передаются подписчику по мере чтения.
+     *
+     * @param date - дата, от которой отсчитываются 24 часа.
+     * @return поток товаров которые были обновлены.
+     */
+    public Flux<Node> findSaleNodeList(Date date) {
+        final Timer.Sample sample = metrics.start();
+        return databaseClient.sql("""
+                        SELECT
+                            id, type, name, parent_id, price, date, offer_sum, offer_count
+                        FROM
+                            node
+                        WHERE
+                            type = 'OFFER'
+                                AND
+                            date >= :date - interval '24 hour' and date <= :date""")
+                .bind("date", date.toInstant().atOffset(ZoneOffset.UTC))
+                .map(ReactiveNodeRepository::mapNode)
+                .all()
+                .doFinally(signal -> sample.stop(metrics.timer("reactiveFindSaleNodeList")));
+    }
+
+    /**
+     * Приватный метод преобразования строки результата запроса в узел без потомков.
+     *
+     * @param row - строка результата запроса.
+     * @return узел каталога товаров.
+     */
+    private static Node mapNode(Row row) {
+        final UUID parentId = row.get("parent_id", UUID.class);
+        final OffsetDateTime date = row.get("date", OffsetDateTime.class);
+        final Long offerSum = row.get("offer_sum", Long.class);
+        final Integer offerCount = row.get("offer_count", Integer.class);
+        return new Node(
+                row.get("id", UUID.class),
+                row.get("type", String.class),
+                row.get("name", String.class),
+                parentId,
+                parentId,
+                row.get("price", Integer.class),
+                date == null ? null : Date.from(date.toInstant()),
+                null,
+                offerCount == null ? 0 : offerCount,
+                offerSum == null ? 0L : offerSum
+        );
+    }
+}
@@ -0,0 +1,76 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Метрики методов репозиториев в реестре метрик приложения: таймер вызовов {@code repository.calls}
+ * и счётчик прочитанных узлов {@code repository.nodes.visited} с тегом имени метода.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Component
+@RequiredArgsConstructor
+public class RepositoryMetrics {
+    final private static String CALLS = "repository.calls";
+    final private static String NODES_VISITED = "repository.nodes.visited";
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Выполнение метода репозитория с записью длительности в таймер вызовов метода.
+     *
+     * @param method - имя метода репозитория.
+     * @param action - тело метода.
+     * @param <T>    - тип результата метода.
+     * @return результат метода.
+     */
+    public <T> T timed(String method, Supplier<T> action) {
+        return timer(method).record(action);
+    }
+
+    /**
+     * Выполнение метода репозитория без результата с записью длительности в таймер вызовов метода.
+     *
+     * @param method - имя метода репозитория.
+     * @param action - тело метода.
+     */
+    public void timed(String method, Runnable action) {
+        timer(method).record(action);
+    }
+
+    /**
+     * Начало замера длительности асинхронного вызова, который завершается позже возврата из метода.
+     *
+     * @return начатый замер.
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Получение таймера вызовов метода репозитория.
+     *
+     * @param method - имя метода репозитория.
+     * @return таймер вызовов метода.
+     */
+    public Timer timer(String method) {
+        return Timer.builder(CALLS)
+                .description("Repository method execution time")
+                .tag("method", method)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Учёт количества узлов, прочитанных методом репозитория.
+     *
+     * @param method - имя метода репозитория.
+     * @param count  - количество прочитанных узлов.
+     */
+    public void visited(String method, int count) {
+        meterRegistry.counter(NODES_VISITED, "method", method).increment(count);
+    }
+}
@@ -0,0 +1,325 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Индекс товаров в памяти приложения, упорядоченный по дате обновления, для запроса обновлённых товаров.
+ * Индекс покрывает скользящее окно заданной длины, отсчитываемое от самой поздней даты обновления товара:
+ * в нём находятся все товары, дата обновления которых не раньше начала окна, более старые вытесняются.
+ * Запрос за интервал, начало которого раньше начала окна, индексом не обслуживается
+ * и выполняется в базе данных. Если товаров в окне больше {@code repository.sale-index.max-size},
+ * начало окна сдвигается вперёд, пока индекс не уложится в ограничение.
+ * <p>
+ * Изменения индекса версионируются: версия выдаётся методом {@link #nextVersion()} до фиксации транзакции,
+ * пока она удерживает блокировки изменённых строк, поэтому транзакции, изменяющие один товар,
+ * получают версии в порядке фиксации. Изменение товара применяется, только если его версия
+ * не старше последнего применённого изменения этого товара, включая удаление, так что порядок
+ * выполнения действий после фиксации транзакций не влияет на содержимое индекса.
+ * Версии применённых изменений хранятся, пока не применены все выданные ранее версии.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Component
+@ConditionalOnExpression("${repository.cache.enabled:true} and ${repository.sale-index.enabled:false}")
+@ManagedResource(objectName = "org.product.catalog.analyzer:type=Cache,name=saleIndex")
+public class SaleIndex implements MeterBinder {
+
+    private static final long SALE_PERIOD = TimeUnit.HOURS.toMillis(24);
+    /**
+     * Порядок идентификаторов, совпадающий с порядком uuid в Postgres (беззнаковое сравнение байтов),
+     * чтобы страницы товаров из индекса и из базы данных продолжали друг друга.
+     */
+    static final Comparator<UUID> UUID_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final long window;
+    private final int maxSize;
+    private final Map<UUID, CompactNode> offerMap = new HashMap<>();
+    private final NavigableMap<Long, NavigableSet<UUID>> dateMap = new TreeMap<>();
+    private final Map<UUID, Long> versionMap = new HashMap<>();
+    private final NavigableSet<Long> pendingVersions = new TreeSet<>();
+    private long horizon = Long.MAX_VALUE;
+    private long maxDate = Long.MIN_VALUE;
+    private long version;
+
+    public SaleIndex(Duration window) {
+        this(window, Integer.MAX_VALUE);
+    }
+
+    @Autowired
+    public SaleIndex(@Value("${repository.sale-index.window:48h}") Duration window,
+                     @Value("${repository.sale-index.max-size:1000000}") int maxSize) {
+        this.window = Math.max(window.toMillis(), SALE_PERIOD);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Длина окна индекса, не меньше периода запроса обновлённых товаров.
+     *
+     * @return длина окна индекса.
+     */
+    public Duration getWindow() {
+        return Duration.ofMillis(window);
+    }
+
+    /**
+     * Начальная загрузка индекса. Переданные товары должны включать все товары, обновлённые
+     * в пределах окна от самой поздней даты обновления товара в базе данных.
+     *
+     * @param offers - товары, обновлённые в пределах окна.
+     */
+    public synchronized void load(Collection<Node> offers) {
+        offerMap.clear();
+        dateMap.clear();
+        versionMap.clear();
+        maxDate = Long.MIN_VALUE;
+        horizon = Long.MIN_VALUE;
+        offers.forEach(this::put);
+        evict();
+    }
+
+    /**
+     * Признак загруженного индекса.
+     *
+     * @return {@code true} если индекс загружен и обслуживает запросы.
+     */
+    public synchronized boolean isLoaded() {
+        return horizon != Long.MAX_VALUE;
+    }
+
+    /**
+     * Получение товаров, цена которых была обновлена за последние 24 часа включительно
+     * [date - 24h, date] от переданной даты.
+     *
+     * @param date - дата, от которой отсчитываются 24 часа.
+     * @return товары в порядке даты обновления, или {@code null} если интервал выходит за окно индекса.
+     */
+    public List<Node> find(Date date) {
+        return find(date, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Получение страницы товаров, цена которых была обновлена за последние 24 часа включительно
+     * [date - 24h, date], в порядке даты обновления и идентификатора.
+     *
+     * @param date  - дата, от которой отсчитываются 24 часа.
+     * @param after - последний товар предыдущей страницы, либо {@code null} для первой страницы.
+     * @param limit - наибольшее количество товаров на странице.
+     * @return товары страницы, или {@code null} если интервал выходит за окно индекса.
+     */
+    public synchronized List<Node> find(Date date, Node after, int limit) {
+        final long to = date.getTime();
+        final long from = to - SALE_PERIOD;
+        if (from < horizon) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        final List<Node> result = new ArrayList<>();
+        final long start = after == null ? from : Math.max(from, after.getDate().getTime());
+        if (start > to) return result;
+        for (Map.Entry<Long, NavigableSet<UUID>> entry : dateMap.subMap(start, true, to, true).entrySet()) {
+            final NavigableSet<UUID> ids = after != null && entry.getKey() == after.getDate().getTime()
+                    ? entry.getValue().tailSet(after.getId(), false)
+                    : entry.getValue();
+            for (UUID id : ids) {
+                if (result.size() >= limit) return result;
+                result.add(offerMap.get(id).toNode());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Выдача версии изменения индекса. Выданная версия должна быть освобождена методом
+     * {@link #release(long)} после применения изменения либо отката транзакции.
+     *
+     * @return версия изменения, больше всех ранее выданных.
+     */
+    public synchronized long nextVersion() {
+        pendingVersions.add(++version);
+        return version;
+    }
+
+    /**
+     * Освобождение версии изменения. Версии применённых изменений товаров, старше всех невыданных
+     * ещё не освобождённых версий, больше не нужны для сравнения и удаляются.
+     *
+     * @param version - версия изменения.
+     */
+    public synchronized void release(long version) {
+        pendingVersions.remove(version);
+        if (pendingVersions.isEmpty()) {
+            versionMap.clear();
+            return;
+        }
+        final long oldest = pendingVersions.first();
+        versionMap.values().removeIf(applied -> applied < oldest);
+    }
+
+    /**
+     * Запись сохранённых узлов с новой версией изменения.
+     *
+     * @param nodes - сохранённые узлы.
+     */
+    public void putAll(Collection<Node> nodes) {
+        final long version = nextVersion();
+        try {
+            putAll(nodes, version);
+        } finally {
+            release(version);
+        }
+    }
+
+    /**
+     * Запись сохранённых узлов после фиксации транзакции. Учитываются только товары,
+     * товар, дата обновления которого раньше начала окна, из индекса удаляется.
+     * Товары, для которых уже применено более новое изменение, пропускаются.
+     *
+     * @param nodes   - сохранённые узлы.
+     * @param version - версия изменения, выданная до фиксации транзакции.
+     */
+    public synchronized void putAll(Collection<Node> nodes, long version) {
+        if (!isLoaded()) return;
+        for (Node node : nodes) {
+            if (NodeType.OFFER.equals(node.getType()) && apply(node.getId(), version)) put(node);
+        }
+        evict();
+    }
+
+    /**
+     * Удаление товаров из индекса с новой версией изменения.
+     *
+     * @param ids - идентификаторы удалённых узлов.
+     */
+    public void removeAll(Collection<UUID> ids) {
+        final long version = nextVersion();
+        try {
+            removeAll(ids, version);
+        } finally {
+            release(version);
+        }
+    }
+
+    /**
+     * Удаление товаров из индекса после фиксации транзакции.
+     * Товары, для которых уже применено более новое изменение, не удаляются.
+     *
+     * @param ids     - идентификаторы удалённых узлов.
+     * @param version - версия изменения, выданная до фиксации транзакции.
+     */
+    public synchronized void removeAll(Collection<UUID> ids, long version) {
+        for (UUID id : ids) {
+            if (apply(id, version)) remove(id);
+        }
+    }
+
+    @ManagedAttribute
+    public synchronized int getSize() {
+        return offerMap.size();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Приватный метод проверки версии изменения товара: изменение применяется, если для товара
+     * не применено изменение с более новой версией.
+     *
+     * @param id      - идентификатор товара.
+     * @param version - версия изменения.
+     * @return {@code true} если изменение нужно применить.
+     */
+    private boolean apply(UUID id, long version) {
+        final Long applied = versionMap.get(id);
+        if (applied != null && applied > version) return false;
+        versionMap.put(id, version);
+        return true;
+    }
+
+    /**
+     * Приватный метод записи товара в индекс с удалением его прежней даты обновления.
+     *
+     * @param node - товар.
+     */
+    private void put(Node node) {
+        remove(node.getId());
+        if (node.getDate() == null) return;
+        final long date = node.getDate().getTime();
+        if (date < horizon) return;
+        offerMap.put(node.getId(), CompactNode.of(node));
+        dateMap.computeIfAbsent(date, key -> new TreeSet<>(UUID_ORDER)).add(node.getId());
+        maxDate = Math.max(maxDate, date);
+    }
+
+    private void remove(UUID id) {
+        final CompactNode removed = offerMap.remove(id);
+        if (removed == null) return;
+        final long date = removed.date();
+        final Set<UUID> ids = dateMap.get(date);
+        ids.remove(id);
+        if (ids.isEmpty()) dateMap.remove(date);
+    }
+
+    /**
+     * Приватный метод сдвига начала окна к самой поздней дате обновления минус длина окна
+     * и вытеснения товаров, обновлённых раньше начала окна.
+     * Если индекс превышает наибольший размер, начало окна сдвигается за самую раннюю дату обновления,
+     * пока размер не уложится в ограничение.
+     */
+    private void evict() {
+        if (maxDate == Long.MIN_VALUE) return;
+        horizon = Math.max(horizon, maxDate - window);
+        final NavigableMap<Long, NavigableSet<UUID>> expired = dateMap.headMap(horizon, false);
+        expired.values().forEach(ids -> ids.forEach(offerMap::remove));
+        expired.clear();
+        while (offerMap.size() > maxSize) {
+            final Map.Entry<Long, NavigableSet<UUID>> oldest = dateMap.pollFirstEntry();
+            oldest.getValue().forEach(offerMap::remove);
+            horizon = oldest.getKey() + 1;
+        }
+    }
+
+    /**
+     * Регистрация счётчиков попаданий и промахов, а также размера индекса в реестре метрик.
+     *
+     * @param registry - реестр метрик.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hitCount, AtomicLong::get)
+                .tags("cache", "sale", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", missCount, AtomicLong::get)
+                .tags("cache", "sale", "result", "miss")
+                .register(registry);
+        Gauge.builder("cache.size", this, SaleIndex::getSize)
+                .tags("cache", "sale")
+                .register(registry);
+    }
+}
@@ -0,0 +1,81 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Снимок списка обновлённых товаров, привязанный к текущей транзакции, из которого читаются
+ * страницы одного запроса. Репозитории без снимков базы данных (индекс обновлённых товаров в памяти
+ * и встроенное хранилище) загружают список один раз на транзакцию, поэтому изменения, зафиксированные
+ * между чтениями страниц, не приводят к повтору или пропуску товара в ответе.
+ *
+ * @author Stepanenko Stanislav
+ */
+final class SaleSnapshot {
+
+    /**
+     * Порядок товаров по дате обновления и идентификатору, совпадающий с порядком страниц в базе данных.
+     */
+    static final Comparator<Node> ORDER = Comparator.<Node>comparingLong(node -> node.getDate().getTime())
+            .thenComparing(Node::getId, SaleIndex.UUID_ORDER);
+    private final Date date;
+    private final List<Node> nodes;
+
+    private SaleSnapshot(Date date, List<Node> nodes) {
+        this.date = date;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Получение списка товаров из снимка текущей транзакции. Первый запрос за дату загружает список
+     * и привязывает его к транзакции до её завершения, вне транзакции список загружается при каждом вызове.
+     *
+     * @param key    - ключ снимка в ресурсах транзакции.
+     * @param date   - дата, от которой отсчитываются 24 часа.
+     * @param loader - загрузка списка товаров в порядке {@link #ORDER}.
+     * @return список товаров снимка, либо {@code null} если его вернула загрузка.
+     */
+    static List<Node> find(Object key, Date date, Supplier<List<Node>> loader) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return loader.get();
+        final SaleSnapshot bound = (SaleSnapshot) TransactionSynchronizationManager.getResource(key);
+        if (bound != null && bound.date.equals(date)) return bound.nodes;
+        if (bound == null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(key);
+                }
+            });
+        } else {
+            TransactionSynchronizationManager.unbindResource(key);
+        }
+        final SaleSnapshot snapshot = new SaleSnapshot(date, loader.get());
+        TransactionSynchronizationManager.bindResource(key, snapshot);
+        return snapshot.nodes;
+    }
+
+    /**
+     * Получение страницы товаров, следующей за последним товаром предыдущей страницы.
+     *
+     * @param nodes - список товаров в порядке {@link #ORDER}.
+     * @param after - последний товар предыдущей страницы, либо {@code null} для первой страницы.
+     * @param limit - наибольшее количество товаров на странице.
+     * @return товары страницы.
+     */
+    static List<Node> page(List<Node> nodes, Node after, int limit) {
+        int start = 0;
+        if (after != null) {
+            final int index = Collections.binarySearch(nodes, after, ORDER);
+            start = index >= 0 ? index + 1 : -index - 1;
+        }
+        return new ArrayList<>(nodes.subList(start, (int) Math.min(nodes.size(), (long) start + limit)));
+    }
+}
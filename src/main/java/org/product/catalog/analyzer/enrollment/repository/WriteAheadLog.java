@@ -0,0 +1,156 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Журнал упреждающей записи встроенного хранилища {@link EmbeddedNodeRepository}:
+ * файл, отображённый в память, в конец которого каждая транзакция дописывает один кадр изменений.
+ * Кадр состоит из длины, контрольной суммы CRC32 и тела, за последним кадром всегда записывается нулевая длина.
+ * Контрольная сумма учитывает поколение журнала, поэтому ни кадр, запись которого прервалась,
+ * ни кадры журнала прежнего поколения, оставшиеся в файле после сброса, при восстановлении не применяются.
+ * Поколение журнала записывается в заголовок файла и совпадает с поколением снимка, после которого журнал начат.
+ *
+ * @author Stepanenko Stanislav
+ */
+final class WriteAheadLog implements Closeable {
+    final private static int MAGIC = 0x4e574c31;
+    final private static int VERSION = 1;
+    final private static int HEADER_SIZE = 16;
+    final private static int FRAME_HEADER_SIZE = 8;
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private MappedByteBuffer buffer;
+    private long generation;
+    private int position = HEADER_SIZE;
+
+    /**
+     * Открытие либо создание файла журнала.
+     *
+     * @param file        - файл журнала.
+     * @param initialSize - начальный размер отображения, при заполнении отображение удваивается.
+     * @param fsync       - признак сброса каждого кадра на диск до фиксации транзакции.
+     * @throws IOException если файл не удалось открыть, либо он не является журналом.
+     */
+    WriteAheadLog(Path file, int initialSize, boolean fsync) throws IOException {
+        this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+        this.fsync = fsync;
+        final boolean created = channel.size() == 0;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), Math.max(initialSize, HEADER_SIZE * 2)));
+        if (created) {
+            reset(0);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("File " + file + " is not a write-ahead log of version " + VERSION);
+        } else {
+            generation = buffer.getLong(8);
+        }
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Размер записанной части журнала в байтах.
+     *
+     * @return позиция записи следующего кадра.
+     */
+    int getSize() {
+        return position;
+    }
+
+    /**
+     * Чтение кадров журнала с начала, вызывается один раз при восстановлении до первой записи.
+     * Чтение останавливается на нулевой длине либо на первом повреждённом кадре,
+     * следующий кадр будет записан на его место.
+     *
+     * @param consumer - обработчик тела кадра.
+     * @return количество прочитанных кадров.
+     */
+    int replay(Consumer<ByteBuffer> consumer) {
+        int count = 0;
+        position = HEADER_SIZE;
+        while (position + FRAME_HEADER_SIZE <= buffer.capacity()) {
+            final int length = buffer.getInt(position);
+            final int end = position + FRAME_HEADER_SIZE + length;
+            if (length <= 0 || end < 0 || end > buffer.capacity()) break;
+            final ByteBuffer frame = buffer.slice(position + FRAME_HEADER_SIZE, length);
+            if (buffer.getInt(position + 4) != checksum(frame)) break;
+            consumer.accept(frame.asReadOnlyBuffer());
+            position = end;
+            count++;
+        }
+        if (position + 4 <= buffer.capacity()) buffer.putInt(position, 0);
+        return count;
+    }
+
+    /**
+     * Запись кадра в конец журнала. Длина кадра записывается последней,
+     * поэтому кадр становится видимым при восстановлении только целиком.
+     *
+     * @param payload - тело кадра.
+     * @throws IOException если отображение не удалось расширить.
+     */
+    void append(byte[] payload) throws IOException {
+        final int size = FRAME_HEADER_SIZE + payload.length + 4;
+        if ((long) position + size > buffer.capacity()) remap(Math.max((long) buffer.capacity() * 2, (long) position + size));
+        buffer.putInt(position + FRAME_HEADER_SIZE + payload.length, 0);
+        buffer.put(position + FRAME_HEADER_SIZE, payload);
+        buffer.putInt(position + 4, checksum(ByteBuffer.wrap(payload)));
+        buffer.putInt(position, payload.length);
+        if (fsync) buffer.force(position, size);
+        position += FRAME_HEADER_SIZE + payload.length;
+    }
+
+    /**
+     * Сброс журнала после записи снимка: журнал начинается заново с новым поколением.
+     *
+     * @param generation - поколение записанного снимка.
+     */
+    void reset(long generation) {
+        this.generation = generation;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, generation);
+        buffer.putInt(HEADER_SIZE, 0);
+        buffer.force(0, HEADER_SIZE + 4);
+        position = HEADER_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void remap(long capacity) throws IOException {
+        if (capacity > Integer.MAX_VALUE) throw new IOException("Write-ahead log exceeds " + Integer.MAX_VALUE + " bytes");
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Приватный метод контрольной суммы тела кадра вместе с поколением журнала.
+     *
+     * @param payload - тело кадра.
+     * @return контрольная сумма.
+     */
+    private int checksum(ByteBuffer payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, generation));
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+}
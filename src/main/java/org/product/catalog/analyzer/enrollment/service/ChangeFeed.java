@@ -0,0 +1,199 @@
+package org.product.catalog.analyzer.enrollment.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.NodeChange;
+import org.product.catalog.analyzer.enrollment.repository.NodeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лента изменений узлов для подписчиков на поддерево корневой категории.
+ * Изменения записываются в базу данных в транзакциях импорта и удаления без общей блокировки,
+ * лента одним потоком публикует их, присваивая курсоры изменениям завершённых транзакций
+ * в порядке этих транзакций, и читает опубликованные изменения: новые изменения всего каталога читаются одним запросом на всех подписчиков
+ * и отбираются по предкам узла в памяти, подписчик с отстающим курсором сначала догоняет ленту
+ * отдельным запросом по своему поддереву. Курсор подписчика продвигается и по изменениям,
+ * не вошедшим в его поддерево, так что при возобновлении ленту не приходится перечитывать.
+ * Изменения старше {@code repository.change-feed.retention} удаляются,
+ * возобновление с удалённого курсора продолжается с самого старого сохранённого изменения.
+ * Включается свойством {@code repository.change-feed.enabled}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "repository.change-feed.enabled", havingValue = "true", matchIfMissing = true)
+public class ChangeFeed {
+
+    private static final long PRUNE_PERIOD = TimeUnit.MINUTES.toMillis(1);
+    private final NodeRepository nodeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long pollMillis;
+    private final int batchSize;
+    private final long retentionMillis;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long head;
+    private long pruneTime;
+
+    public ChangeFeed(NodeRepository nodeRepository,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${repository.change-feed.poll-ms:200}") long pollMillis,
+                      @Value("${repository.change-feed.batch-size:1000}") int batchSize,
+                      @Value("${repository.change-feed.retention:7d}") Duration retention) {
+        this.nodeRepository = nodeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pollMillis = pollMillis;
+        this.batchSize = batchSize;
+        this.retentionMillis = retention.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        head = nodeRepository.findLastChangeCursor();
+        executor.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Получение курсора последнего опубликованного изменения, с которого начинается
+     * подписка без заданного курсора.
+     *
+     * @return курсор последнего изменения.
+     */
+    public long findLastCursor() {
+        return nodeRepository.findLastChangeCursor();
+    }
+
+    /**
+     * Подписка на изменения. Изменения после курсора подписки передаются подписчику
+     * потоком ленты, начиная со следующего опроса базы данных.
+     *
+     * @param subscription - подписка.
+     */
+    public void subscribe(Subscription subscription) {
+        subscriptions.add(subscription);
+    }
+
+    /**
+     * Отмена подписки на изменения.
+     *
+     * @param subscription - подписка.
+     */
+    public void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Приватный метод опроса ленты. Сначала публикуются изменения завершённых транзакций.
+     * Без подписчиков запоминается только курсор последнего изменения,
+     * иначе отстающие подписчики догоняют ленту до курсора предыдущего опроса,
+     * после чего новые изменения передаются всем догнавшим подписчикам.
+     */
+    private void poll() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> nodeRepository.publishAllChange());
+            if (subscriptions.isEmpty()) {
+                head = nodeRepository.findLastChangeCursor();
+            } else {
+                final long from = head;
+                for (Subscription subscription : subscriptions) {
+                    if (subscription.cursor < from) catchUp(subscription, from);
+                }
+                final List<NodeChange> changes = nodeRepository.findChangeList(null, from, batchSize);
+                final long to = changes.isEmpty() ? from : changes.get(changes.size() - 1).cursor();
+                for (Subscription subscription : subscriptions) {
+                    if (subscription.cursor < from) continue;
+                    deliver(subscription, changes.stream()
+                            .filter(change -> change.cursor() > subscription.cursor && change.isDescendantOf(subscription.rootId))
+                            .toList(), Math.max(subscription.cursor, to));
+                }
+                head = to;
+            }
+            prune();
+        } catch (RuntimeException e) {
+            log.error("Change feed poll is failed!", e);
+        }
+    }
+
+    /**
+     * Приватный метод чтения изменений поддерева отстающего подписчика порцией не больше {@code batchSize}.
+     *
+     * @param subscription - подписка.
+     * @param to           - курсор, до которого подписчик догоняет ленту.
+     */
+    private void catchUp(Subscription subscription, long to) {
+        final List<NodeChange> changes = nodeRepository.findChangeList(subscription.rootId, subscription.cursor, batchSize)
+                .stream()
+                .filter(change -> change.cursor() <= to)
+                .toList();
+        deliver(subscription, changes, changes.size() < batchSize ? to : changes.get(changes.size() - 1).cursor());
+    }
+
+    private void deliver(Subscription subscription, List<NodeChange> changes, long cursor) {
+        subscription.cursor = cursor;
+        if (!subscription.deliver(changes, cursor)) subscriptions.remove(subscription);
+    }
+
+    /**
+     * Приватный метод удаления изменений старше срока хранения, не чаще раза в минуту.
+     */
+    private void prune() {
+        final long now = System.currentTimeMillis();
+        if (now - pruneTime < PRUNE_PERIOD) return;
+        pruneTime = now;
+        final int count = nodeRepository.deleteAllChangeBefore(new Date(now - retentionMillis));
+        if (count > 0) log.info("{} node changes are pruned!", count);
+    }
+
+    /**
+     * Подписка на изменения поддерева корневой категории.
+     * Курсор подписки - курсор последнего изменения, которое подписчик получил или пропустил
+     * как не относящееся к его поддереву.
+     */
+    public abstract static class Subscription {
+        @Getter
+        private final UUID rootId;
+        @Getter
+        private volatile long cursor;
+
+        protected Subscription(UUID rootId, long cursor) {
+            this.rootId = rootId;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Передача подписчику изменений его поддерева. Вызывается потоком ленты после каждого опроса,
+         * в том числе с пустым списком изменений.
+         *
+         * @param changes - изменения поддерева в порядке курсора.
+         * @param cursor  - новый курсор подписки.
+         * @return {@code false} если подписку необходимо отменить.
+         */
+        protected abstract boolean deliver(List<NodeChange> changes, long cursor);
+    }
+}
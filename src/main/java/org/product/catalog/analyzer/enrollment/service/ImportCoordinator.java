@@ -0,0 +1,177 @@
+package org.product.catalog.analyzer.enrollment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.statistic.StatementStatistic;
+import org.product.catalog.analyzer.enrollment.validation.exception.ArgumentNotValidException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Координатор группового импорта: запросы импорта, поступившие в течение короткого окна,
+ * сохраняются одной транзакцией {@link NodeService#importAllNodes(List)} с одной фиксацией
+ * и одним обновлением общих предков на группу запросов с одинаковой датой обновления.
+ * Каждый запрос ожидает фиксации общей транзакции и получает собственный результат:
+ * ошибку проверки своих узлов либо успешное завершение.
+ * SQL-запросы общей транзакции выполняются в потоке координатора и добавляются
+ * в {@link StatementStatistic} каждого запроса группы.
+ * Запрос ожидает результат не дольше {@code repository.group-commit.timeout-ms}: запрос, не попавший
+ * в группу до истечения ожидания, отменяется, а результат запроса, группа которого уже сохраняется, неизвестен.
+ * При остановке координатора все ожидающие запросы завершаются ошибкой.
+ * Включается свойством {@code repository.group-commit.enabled}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "repository.group-commit.enabled", havingValue = "true")
+public class ImportCoordinator {
+
+    private final NodeService nodeService;
+    private final long windowMillis;
+    private final int maxImports;
+    private final long timeoutMillis;
+    private final BlockingQueue<PendingImport> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "import-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ImportCoordinator(NodeService nodeService,
+                             @Value("${repository.group-commit.window-ms:5}") long windowMillis,
+                             @Value("${repository.group-commit.max-imports:64}") int maxImports,
+                             @Value("${repository.group-commit.timeout-ms:30000}") long timeoutMillis) {
+        this.nodeService = nodeService;
+        this.windowMillis = windowMillis;
+        this.maxImports = maxImports;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.execute(this::run);
+    }
+
+    /**
+     * Остановка координатора. Запросы, ещё не попавшие в группу, завершаются ошибкой.
+     */
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+        final List<PendingImport> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        final IllegalStateException error = new IllegalStateException("Import coordinator is stopped");
+        rest.forEach(pending -> pending.result().completeExceptionally(error));
+    }
+
+    /**
+     * Импортирование узлов в составе группы запросов.
+     * Метод блокирует вызывающий поток до фиксации общей транзакции, но не дольше {@code timeoutMillis}.
+     *
+     * @param nodes - список узлов, который необходимо добавить в каталог.
+     * @throws ArgumentNotValidException если какой либо из узел запроса не прошел проверку.
+     * @throws IllegalStateException     если координатор остановлен или результат не получен за время ожидания.
+     */
+    public void importNodes(List<Node> nodes) throws ArgumentNotValidException {
+        if (nodes.isEmpty()) return;
+        final PendingImport pending = new PendingImport(nodes, StatementStatistic.current(), new CompletableFuture<>());
+        queue.add(pending);
+        if (executor.isShutdown() && queue.remove(pending)) {
+            throw new IllegalStateException("Import coordinator is stopped");
+        }
+        try {
+            final ArgumentNotValidException error = pending.result().get(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (error != null) throw error;
+        } catch (InterruptedException e) {
+            cancel(pending);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group import", e);
+        } catch (TimeoutException e) {
+            cancel(pending);
+            throw new IllegalStateException("Group import is not completed in " + timeoutMillis + " ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException("Group import failed", e.getCause());
+        }
+    }
+
+    /**
+     * Приватный метод отмены запроса, который перестали ожидать.
+     * Запрос, ещё не попавший в группу, в неё уже не попадёт.
+     *
+     * @param pending - запрос импорта.
+     */
+    private void cancel(PendingImport pending) {
+        queue.remove(pending);
+        pending.result().cancel(false);
+    }
+
+    /**
+     * Приватный метод цикла координатора: первый запрос открывает окно,
+     * все запросы поступившие до его закрытия (но не более {@code maxImports}) сохраняются вместе.
+     */
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final List<PendingImport> batch = new ArrayList<>();
+            try {
+                batch.add(queue.take());
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                while (batch.size() < maxImports) {
+                    final PendingImport next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+                return;
+            }
+            commit(batch);
+        }
+    }
+
+    /**
+     * Приватный метод сохранения группы запросов одной транзакцией и передачи результатов запросам.
+     * Ошибка транзакции передаётся всем запросам группы.
+     * Статистика SQL-запросов транзакции добавляется к статистике запросов до передачи результатов,
+     * так что ожидающий поток видит её после завершения ожидания.
+     *
+     * Отменённые запросы, которые уже никто не ожидает, из группы исключаются.
+     *
+     * @param batch - группа запросов импорта.
+     */
+    private void commit(List<PendingImport> batch) {
+        batch.removeIf(pending -> pending.result().isDone());
+        if (batch.isEmpty()) return;
+        final StatementStatistic statistic = StatementStatistic.begin();
+        List<ArgumentNotValidException> errors = null;
+        RuntimeException failure = null;
+        try {
+            errors = nodeService.importAllNodes(batch.stream().map(PendingImport::nodes).toList());
+            log.info("Group import of {} requests is committed!", batch.size());
+        } catch (RuntimeException e) {
+            log.error("Group import of {} requests is failed!", batch.size(), e);
+            failure = e;
+        } finally {
+            StatementStatistic.end();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            final PendingImport pending = batch.get(i);
+            if (pending.statistic() != null) pending.statistic().add(statistic);
+            if (failure != null) pending.result().completeExceptionally(failure);
+            else pending.result().complete(errors.get(i));
+        }
+    }
+
+    private record PendingImport(List<Node> nodes,
+                                 StatementStatistic statistic,
+                                 CompletableFuture<ArgumentNotValidException> result) {
+    }
+}
@@ -7,6 +7,7 @@ import org.product.catalog.analyzer.enrollment.validation.exception.NotFindNodeE
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс, описывающий сервисные методы вставки, поиска и удаления узлов.
@@ -26,6 +27,26 @@ public interface NodeService {
      */
     Node findById(UUID id) throws NotFindNodeException;
 
+    /**
+     * Потоковый поиск узла в полную глубину по идентификатору.
+     * Узлы поддерева передаются обработчику без потомков в порядке обхода в глубину,
+     * каждая категория предшествует своим потомкам.
+     *
+     * @param id       - идентификатор корневого узла(товара/категории).
+     * @param consumer - обработчик, которому передаётся каждый узел поддерева.
+     * @throws NotFindNodeException если элемент не найден.
+     */
+    void findById(UUID id, Consumer<Node> consumer) throws NotFindNodeException;
+
+    /**
+     * Получение версии поддерева узла для условных запросов, без чтения потомков.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return версия поддерева.
+     * @throws NotFindNodeException если элемент не найден.
+     */
+    String findVersionById(UUID id) throws NotFindNodeException;
+
     /**
      * Импортирование узлов(товаров/категории) в каталоге товаров,
      * путем добавленные новых либо обновление текущих.
@@ -36,6 +57,15 @@ public interface NodeService {
      */
     void importNodes(List<Node> nodes) throws ArgumentNotValidException;
 
+    /**
+     * Импортирование нескольких независимых запросов импорта в одной транзакции.
+     * Каждый запрос проверяется отдельно, ошибка проверки одного запроса не влияет на остальные.
+     *
+     * @param imports - списки узлов отдельных запросов импорта.
+     * @return ошибки проверки в порядке запросов, {@code null} для успешно импортированных запросов.
+     */
+    List<ArgumentNotValidException> importAllNodes(List<List<Node>> imports);
+
     /**
      * Удаление узла по идентификатору.
      * Метод удаляет узел со всеми потомками если таковые имеются.
@@ -54,4 +84,28 @@ public interface NodeService {
      * @return список товаров которые были обновлены.
      */
     List<Node> findSaleList(Date date);
+
+    /**
+     * Потоковое получение товаров, цена которых была обновлена за последние 24 часа включительно
+     * [now() - 24h, now()] от времени переданном в запросе, страницами в порядке даты обновления и идентификатора.
+     * Все страницы читаются из одного снимка данных, поэтому товар, обновлённый во время чтения,
+     * не повторяется и не пропадает.
+     *
+     * @param date     - дата, от которой отсчитываются 24 часа.
+     * @param pageSize - наибольшее количество товаров на странице.
+     * @param consumer - обработчик, которому передаётся каждая страница.
+     */
+    void findSaleList(Date date, int pageSize, Consumer<List<Node>> consumer);
+
+    /**
+     * Получение статистики (истории обновлений) по товару/категории за полуинтервал [dateStart, dateEnd).
+     *
+     * @param id        - идентификатор узла(товара/категории).
+     * @param dateStart - начало интервала включительно, либо {@code null}.
+     * @param dateEnd   - конец интервала не включительно, либо {@code null}.
+     * @return список состояний узла.
+     * @throws NotFindNodeException      если элемент не найден.
+     * @throws ArgumentNotValidException если начало интервала позже его конца.
+     */
+    List<Node> findStatisticList(UUID id, Date dateStart, Date dateEnd) throws NotFindNodeException, ArgumentNotValidException;
 }
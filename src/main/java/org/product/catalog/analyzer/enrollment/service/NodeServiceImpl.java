@@ -1,33 +1,62 @@
 package org.product.catalog.analyzer.enrollment.service;
 
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.product.catalog.analyzer.enrollment.dto.Node;
 import org.product.catalog.analyzer.enrollment.dto.NodeType;
 import org.product.catalog.analyzer.enrollment.repository.NodeRepository;
 import org.product.catalog.analyzer.enrollment.validation.exception.ArgumentNotValidException;
 import org.product.catalog.analyzer.enrollment.validation.exception.NotFindNodeException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Set;
-import java.util.UUID;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Реализация интерфейса описывающего сервисные методы вставки, поиска и удаления узлов.
+ * Методы чтения выполняются в транзакциях только для чтения, которые при включенной реплике
+ * ({@code repository.replica.enabled}) обслуживаются пулом соединений реплики.
+ * Импорт и удаление блокируют корневые категории затрагиваемых узлов ({@code repository.import-lock}),
+ * так что изменения в непересекающихся поддеревьях выполняются параллельно,
+ * а изменения одного поддерева выстраиваются в очередь.
+ * При включенной инвалидации ({@code repository.invalidation.enabled} при включенном кэше) изменённые узлы и их предки
+ * рассылаются другим экземплярам приложения оповещением Postgres в той же транзакции.
  *
  * @author Stepanenko Stanislav
  */
 @Slf4j
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class NodeServiceImpl implements NodeService {
 
     private final NodeRepository nodeRepository;
+    @Value("${repository.import-lock:subtree}")
+    private ImportLock importLock = ImportLock.SUBTREE;
+    @Value("#{${repository.cache.enabled:true} and ${repository.invalidation.enabled:true}}")
+    private boolean invalidation = true;
+
+    /**
+     * Способ блокировки каталога при импорте и удалении узлов.
+     */
+    public enum ImportLock {
+        /**
+         * Без явных блокировок, параллельные изменения общих предков могут привести к взаимной блокировке.
+         */
+        NONE,
+        /**
+         * Одна блокировка на весь каталог, все изменения выполняются последовательно.
+         */
+        GLOBAL,
+        /**
+         * Блокировка корневых категорий затрагиваемых узлов.
+         */
+        SUBTREE
+    }
 
     /**
      * Реализация метода поиска узла в полную глубину по идентификатору.
@@ -39,7 +68,7 @@ public class NodeServiceImpl implements NodeService {
      * @throws NotFindNodeException если элемент не найден.
      */
     @Override
-    @Transactional(isolation = Isolation.READ_COMMITTED)
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
     public Node findById(UUID id) throws NotFindNodeException {
         final Node result = nodeRepository.findDepthNodeById(id);
         if (result == null) throw new NotFindNodeException("Node with id: " + id + " didn't find!");
@@ -47,6 +76,38 @@ public class NodeServiceImpl implements NodeService {
         return result;
     }
 
+    /**
+     * Реализация метода потокового поиска узла в полную глубину по идентификатору.
+     * Транзакция необходима для чтения поддерева курсором порциями.
+     *
+     * @param id       - идентификатор корневого узла(товара/категории).
+     * @param consumer - обработчик, которому передаётся каждый узел поддерева.
+     * @throws NotFindNodeException если элемент не найден.
+     */
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public void findById(UUID id, Consumer<Node> consumer) throws NotFindNodeException {
+        log.info("Streaming node by id: {}", id);
+        if (nodeRepository.findDepthNodeById(id, consumer) == 0) {
+            throw new NotFindNodeException("Node with id: " + id + " didn't find!");
+        }
+    }
+
+    /**
+     * Реализация метода получения версии поддерева узла для условных запросов.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return версия поддерева.
+     * @throws NotFindNodeException если элемент не найден.
+     */
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public String findVersionById(UUID id) throws NotFindNodeException {
+        final String result = nodeRepository.findVersionById(id);
+        if (result == null) throw new NotFindNodeException("Node with id: " + id + " didn't find!");
+        return result;
+    }
+
     /**
      * Реализация метода импортирования узлов(товаров/категории) в каталоге товаров,
      * путем добавленные новых либо обновление текущих.
@@ -59,18 +120,82 @@ public class NodeServiceImpl implements NodeService {
     @Transactional(isolation = Isolation.READ_COMMITTED)
     public void importNodes(List<Node> nodes) throws ArgumentNotValidException {
         if (nodes.isEmpty()) return;
+        final Set<UUID> referencedIdSet = findAllReferencedId(nodes);
+        lockImport(referencedIdSet);
         validateImportNodes(nodes);
         log.info("{} nodes are ready to import!", nodes.size());
+        notifyChanged(referencedIdSet, false);
         nodeRepository.saveAll(nodes);
     }
 
     /**
-     * Приватный метод реализующий ряд проверок перед запуском импорта узлов.
+     * Реализация метода группового импорта нескольких запросов в одной транзакции.
+     * Запросы применяются в порядке дат обновления, запросы с одинаковой датой и непересекающимися
+     * идентификаторами объединяются в одну группу и сохраняются одним вызовом репозитория,
+     * так что общие предки обновляются один раз на группу, а не на каждый запрос.
+     * Запрос, не прошедший проверку, может ссылаться на категорию из текущей группы,
+     * поэтому он откладывается и проверяется повторно после сохранения группы,
+     * ошибка фиксируется, только если запрос не проходит проверку при пустой группе.
+     *
+     * @param imports - списки узлов отдельных запросов импорта.
+     * @return ошибки проверки в порядке запросов, {@code null} для успешно импортированных запросов.
+     */
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<ArgumentNotValidException> importAllNodes(List<List<Node>> imports) {
+        final List<ArgumentNotValidException> result = new ArrayList<>(Collections.nCopies(imports.size(), null));
+        final Set<UUID> referencedIdSet = new HashSet<>();
+        imports.forEach(nodes -> referencedIdSet.addAll(findAllReferencedId(nodes)));
+        lockImport(referencedIdSet);
+        notifyChanged(referencedIdSet, false);
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < imports.size(); i++) {
+            if (!imports.get(i).isEmpty()) order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> imports.get(i).get(0).getDate(), Comparator.nullsFirst(Comparator.<Date>naturalOrder())));
+        final Deque<Integer> pending = new ArrayDeque<>(order);
+        int groupCount = 0;
+        while (!pending.isEmpty()) {
+            final List<Node> group = new ArrayList<>();
+            final Set<UUID> groupIdSet = new HashSet<>();
+            final Deque<Integer> deferred = new ArrayDeque<>();
+            final Date groupDate = imports.get(pending.peekFirst()).get(0).getDate();
+            while (!pending.isEmpty() && Objects.equals(groupDate, imports.get(pending.peekFirst()).get(0).getDate())) {
+                final int index = pending.pollFirst();
+                final List<Node> nodes = imports.get(index);
+                if (nodes.stream().map(Node::getId).anyMatch(groupIdSet::contains)) {
+                    deferred.addLast(index);
+                    continue;
+                }
+                try {
+                    validateImportNodes(nodes);
+                } catch (ArgumentNotValidException e) {
+                    if (group.isEmpty()) result.set(index, e);
+                    else deferred.addLast(index);
+                    continue;
+                }
+                group.addAll(nodes);
+                nodes.forEach(node -> groupIdSet.add(node.getId()));
+            }
+            while (!deferred.isEmpty()) pending.addFirst(deferred.pollLast());
+            if (group.isEmpty()) continue;
+            nodeRepository.saveAll(group);
+            groupCount++;
+        }
+        log.info("{} imports are saved in {} groups!", imports.size(), groupCount);
+        return result;
+    }
+
+    /**
+     * Метод реализующий ряд проверок перед запуском импорта узлов,
+     * доступен в пакете для измерения производительности отдельно от сохранения.
+     * Все узлы импорта и их родители загружаются из базы данных одним запросом,
+     * после чего проверки выполняются в памяти.
      *
      * @param nodes - список узлов которые необходимо проверить.
      * @throws ArgumentNotValidException если какой либо из узел не прошел проверку.
      */
-    private void validateImportNodes(List<Node> nodes) throws ArgumentNotValidException {
+    void validateImportNodes(List<Node> nodes) throws ArgumentNotValidException {
         log.info("Start validation: {} nodes for import.", nodes.size());
 
         if (nodes.size() != nodes.stream().map(Node::getId).collect(Collectors.toSet()).size()) {
@@ -83,6 +208,9 @@ public class NodeServiceImpl implements NodeService {
                 .map(Node::getId)
                 .collect(Collectors.toSet());
 
+        final Map<UUID, Node> storedNodeMap = nodeRepository.findAllPlainNodeById(findAllReferencedId(nodes))
+                .stream()
+                .collect(Collectors.toMap(Node::getId, Function.identity()));
 
         for (Node importNode : nodes) {
 
@@ -95,7 +223,7 @@ public class NodeServiceImpl implements NodeService {
             }
 
             UUID oldParentId = null;
-            final Node oldNode = nodeRepository.findPlainNodeById(importNode.getId());
+            final Node oldNode = storedNodeMap.get(importNode.getId());
             if (oldNode != null) {
                 oldParentId = oldNode.getOldParentId();
                 if (!importNode.getType().equals(oldNode.getType()))
@@ -103,7 +231,7 @@ public class NodeServiceImpl implements NodeService {
             }
 
             if (importNode.getParentId() != null && !importCategorySet.contains(importNode.getParentId())) {
-                final Node parentCategory = nodeRepository.findPlainNodeById(importNode.getParentId());
+                final Node parentCategory = storedNodeMap.get(importNode.getParentId());
                 if (parentCategory == null || NodeType.OFFER.equals(parentCategory.getType())) {
                     throw new ArgumentNotValidException("Category with ID: " + importNode.getParentId() + " is didn't find or node is not a category!");
                 }
@@ -113,12 +241,105 @@ public class NodeServiceImpl implements NodeService {
             importNode.setOldParentId(oldParentId);
         }
 
+        validateAcyclic(nodes, storedNodeMap);
+
         log.info("Success validation: {} nodes for import.", nodes.size());
     }
 
+    /**
+     * Метод проверки, что после импорта ни один узел не станет собственным предком.
+     * Цикл может образоваться только среди категорий импорта, либо при перемещении существующей категории
+     * под одного из её потомков, поэтому предки новых родителей перемещаемых категорий загружаются
+     * отдельным запросом только при наличии таких категорий. Цепочка родителей каждого узла проходится
+     * с учётом посещённых узлов, узлы уже проверенных цепочек повторно не проходятся.
+     *
+     * @param nodes         - список узлов которые необходимо проверить.
+     * @param storedNodeMap - сохранённые узлы импорта и их родители.
+     * @throws ArgumentNotValidException если родители узлов импорта образуют цикл.
+     */
+    private void validateAcyclic(List<Node> nodes, Map<UUID, Node> storedNodeMap) throws ArgumentNotValidException {
+        final Map<UUID, UUID> parentMap = new HashMap<>();
+        final Set<UUID> movedParentIdSet = new HashSet<>();
+        for (Node node : nodes) {
+            parentMap.put(node.getId(), node.getParentId());
+            final Node storedNode = storedNodeMap.get(node.getId());
+            if (NodeType.CATEGORY.equals(node.getType()) && storedNode != null && node.getParentId() != null
+                    && !node.getParentId().equals(storedNode.getParentId())) {
+                movedParentIdSet.add(node.getParentId());
+            }
+        }
+        if (!movedParentIdSet.isEmpty()) {
+            nodeRepository.findAllParentNodeById(movedParentIdSet)
+                    .forEach(ancestor -> parentMap.putIfAbsent(ancestor.getId(), ancestor.getParentId()));
+        }
+        final Set<UUID> checkedIdSet = new HashSet<>();
+        for (Node node : nodes) {
+            final Set<UUID> visitedIdSet = new HashSet<>();
+            UUID id = node.getId();
+            while (id != null && !checkedIdSet.contains(id)) {
+                if (!visitedIdSet.add(id)) {
+                    throw new ArgumentNotValidException("Node with ID: " + id + " can't be an ancestor of itself!");
+                }
+                id = parentMap.get(id);
+            }
+            checkedIdSet.addAll(visitedIdSet);
+        }
+    }
+
+    /**
+     * Метод получения идентификаторов импортируемых узлов и их новых родителей.
+     *
+     * @param nodes - список импортируемых узлов.
+     * @return идентификаторы узлов и их родителей.
+     */
+    private static Set<UUID> findAllReferencedId(List<Node> nodes) {
+        final Set<UUID> result = new HashSet<>();
+        nodes.forEach(node -> {
+            result.add(node.getId());
+            if (node.getParentId() != null) result.add(node.getParentId());
+        });
+        return result;
+    }
+
+    /**
+     * Метод блокировки каталога до конца транзакции перед чтением изменяемых узлов.
+     * Корни узлов читаются до получения блокировки, поэтому после неё корни запрашиваются повторно:
+     * если параллельная транзакция успела переместить узел в другое поддерево,
+     * блокируется и новый корень. Только в этом редком случае порядок блокировок нарушается,
+     * и возможную взаимную блокировку разрешает Postgres, откатывая одну из транзакций.
+     *
+     * @param ids - идентификаторы изменяемых узлов и их новых родителей.
+     */
+    private void lockImport(Collection<UUID> ids) {
+        switch (importLock) {
+            case GLOBAL -> nodeRepository.lockAll();
+            case SUBTREE -> {
+                final Set<UUID> lockedRootSet = new HashSet<>();
+                while (lockedRootSet.addAll(nodeRepository.lockAllRootById(ids))) {
+                    log.debug("Locked roots: {}", lockedRootSet);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Метод оповещения других экземпляров приложения об изменении узлов, если инвалидация включена.
+     * Вызывается до изменения узлов: по текущим материализованным путям в оповещение попадают прежние предки
+     * перемещаемых узлов, а новые предки - через идентификаторы новых родителей.
+     *
+     * @param ids         - идентификаторы изменяемых узлов и их новых родителей.
+     * @param descendants - признак оповещения и обо всех потомках узлов.
+     */
+    private void notifyChanged(Collection<UUID> ids, boolean descendants) {
+        if (invalidation) nodeRepository.notifyAllChanged(ids, descendants);
+    }
+
     /**
      * Реализация сервисного метода удаления узла по идентификатору.
-     * Метод удаляет узел со всеми потомками если таковые имеются.
+     * Метод удаляет узел со всеми потомками если таковые имеются,
+     * вычитая сумму и количество его товаров из всех родительских категорий.
      *
      * @param id - идентификатор корневого узла(товара/категории).
      * @return количество удалённых узлов.
@@ -130,10 +351,14 @@ public class NodeServiceImpl implements NodeService {
         log.info("Deleting a node by id: {}", id);
         int result = 0;
 
+        lockImport(List.of(id));
         final Node node = nodeRepository.findPlainNodeById(id);
         if (node == null) {
             throw new NotFindNodeException("Node with id: " + id + " didn't find!");
         }
+        notifyChanged(List.of(id), NodeType.CATEGORY.equals(node.getType()));
+
+        nodeRepository.updateAllParentAggregate(node.getParentId(), -node.getSum(), -node.getOfferCount());
 
         if (NodeType.CATEGORY.equals(node.getType())) {
             result += nodeRepository.deleteAllDescendantById(id);
@@ -144,7 +369,57 @@ public class NodeServiceImpl implements NodeService {
     }
 
     @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
     public List<Node> findSaleList(Date date) {
         return nodeRepository.findSaleNodeList(date);
     }
+
+    /**
+     * Реализация метода потокового получения товаров, цена которых была обновлена за последние 24 часа включительно
+     * [now() - 24h, now()] от времени переданном в запросе. Страницы читаются по ключу (date, id) в одной
+     * транзакции только для чтения с уровнем изоляции REPEATABLE READ: все запросы видят один снимок данных,
+     * поэтому товар, обновлённый между чтениями страниц, не попадает в ответ дважды и не пропадает.
+     * Соединение удерживается, пока ответ записывается клиенту, но транзакция не берёт блокировок на запись.
+     *
+     * @param date     - дата, от которой отсчитываются 24 часа.
+     * @param pageSize - наибольшее количество товаров на странице.
+     * @param consumer - обработчик, которому передаётся каждая страница.
+     */
+    @Override
+    @Transactional(isolation = Isolation.REPEATABLE_READ, readOnly = true)
+    public void findSaleList(Date date, int pageSize, Consumer<List<Node>> consumer) {
+        Node after = null;
+        List<Node> page;
+        do {
+            page = nodeRepository.findSaleNodeList(date, after, pageSize);
+            if (!page.isEmpty()) {
+                consumer.accept(page);
+                after = page.get(page.size() - 1);
+            }
+        } while (page.size() == pageSize);
+    }
+
+    /**
+     * Реализация метода получения статистики (истории обновлений) по товару/категории
+     * за полуинтервал [dateStart, dateEnd).
+     *
+     * @param id        - идентификатор узла(товара/категории).
+     * @param dateStart - начало интервала включительно, либо {@code null}.
+     * @param dateEnd   - конец интервала не включительно, либо {@code null}.
+     * @return список состояний узла.
+     * @throws NotFindNodeException      если элемент не найден.
+     * @throws ArgumentNotValidException если начало интервала позже его конца.
+     */
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public List<Node> findStatisticList(UUID id, Date dateStart, Date dateEnd) throws NotFindNodeException, ArgumentNotValidException {
+        if (dateStart != null && dateEnd != null && dateStart.after(dateEnd)) {
+            throw new ArgumentNotValidException("Date start: " + dateStart + " is after date end: " + dateEnd);
+        }
+        if (nodeRepository.findPlainNodeById(id) == null) {
+            throw new NotFindNodeException("Node with id: " + id + " didn't find!");
+        }
+        log.info("Looking for statistic of node by id: {}", id);
+        return nodeRepository.findStatisticNodeList(id, dateStart, dateEnd);
+    }
 }
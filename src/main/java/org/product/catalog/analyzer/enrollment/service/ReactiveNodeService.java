@@ -0,0 +1,83 @@
+package org.product.catalog.analyzer.enrollment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.repository.NodeCache;
+import org.product.catalog.analyzer.enrollment.repository.ReactiveNodeRepository;
+import org.product.catalog.analyzer.enrollment.validation.exception.NotFindNodeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Реактивные сервисные методы чтения узлов, доступные в профиле {@code reactive}.
+ * Импорт и удаление узлов остаются в транзакционном {@link NodeServiceImpl}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Service
+@Profile("reactive")
+public class ReactiveNodeService {
+
+    private final ReactiveNodeRepository reactiveNodeRepository;
+    private final NodeCache nodeCache;
+    private final boolean cacheEnabled;
+
+    public ReactiveNodeService(ReactiveNodeRepository reactiveNodeRepository,
+                               NodeCache nodeCache,
+                               @Value("${repository.cache.enabled:true}") boolean cacheEnabled) {
+        this.reactiveNodeRepository = reactiveNodeRepository;
+        this.nodeCache = nodeCache;
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    /**
+     * Поиск узла в полную глубину по идентификатору.
+     * При включенном кэше дерево сначала собирается из {@link NodeCache},
+     * промах загружается из базы данных и сохраняется в кэш.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return узел со всеми потомками, либо ошибка {@link NotFindNodeException} если узел не найден.
+     */
+    public Mono<Node> findById(UUID id) {
+        log.info("Looking for node reactively by id: {}", id);
+        if (!cacheEnabled) return reactiveNodeRepository.findDepthNodeById(id).switchIfEmpty(notFound(id));
+        final Node cached = nodeCache.getTree(id);
+        if (cached != null) return Mono.just(cached);
+        final long generation = nodeCache.getGeneration();
+        return reactiveNodeRepository.findDepthNodeById(id)
+                .doOnNext(node -> nodeCache.putTree(node, generation))
+                .switchIfEmpty(notFound(id));
+    }
+
+    /**
+     * Получение версии поддерева узла для условных запросов, без чтения потомков.
+     *
+     * @param id - идентификатор корневого узла(товара/категории).
+     * @return версия поддерева, либо ошибка {@link NotFindNodeException} если узел не найден.
+     */
+    public Mono<String> findVersionById(UUID id) {
+        return reactiveNodeRepository.findVersionById(id).switchIfEmpty(notFound(id));
+    }
+
+    /**
+     * Получение товаров, цена которых была обновлена за последние 24 часа включительно
+     * [now() - 24h, now()] от времени переданном в запросе.
+     *
+     * @param date - дата, от которой отсчитываются 24 часа.
+     * @return поток товаров которые были обновлены.
+     */
+    public Flux<Node> findSaleList(Date date) {
+        return reactiveNodeRepository.findSaleNodeList(date);
+    }
+
+    private static <T> Mono<T> notFound(UUID id) {
+        return Mono.error(() -> new NotFindNodeException("Node with id: " + id + " didn't find!"));
+    }
+}
@@ -0,0 +1,116 @@
+package org.product.catalog.analyzer.enrollment.statistic;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.*;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * JdbcTemplate, учитывающий каждый запрос к базе данных в {@link StatementStatistic} текущего потока:
+ * количество запросов, прочитанных или изменённых строк и время выполнения.
+ * Пакетное обновление учитывается как один запрос на каждый пакет.
+ * Вне http-запроса, когда статистика не собирается, работает как обычный JdbcTemplate.
+ * Для подсчёта прочитанных строк ResultSet оборачивается в рефлексивный прокси,
+ * поэтому JdbcTemplate предназначен для диагностики и не подключается по умолчанию.
+ *
+ * @author Stepanenko Stanislav
+ */
+public class CountingJdbcTemplate extends JdbcTemplate {
+
+    public CountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse) throws DataAccessException {
+        final StatementStatistic statistic = StatementStatistic.current();
+        if (statistic == null) return super.query(psc, pss, rse);
+        return count(statistic, 1, () -> super.query(psc, pss, (ResultSetExtractor<T>) rs -> rse.extractData(countRows(rs, statistic))), result -> 0);
+    }
+
+    @Override
+    public <T> T query(String sql, ResultSetExtractor<T> rse) throws DataAccessException {
+        final StatementStatistic statistic = StatementStatistic.current();
+        if (statistic == null) return super.query(sql, rse);
+        return count(statistic, 1, () -> super.query(sql, (ResultSetExtractor<T>) rs -> rse.extractData(countRows(rs, statistic))), result -> 0);
+    }
+
+    @Override
+    protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) throws DataAccessException {
+        final StatementStatistic statistic = StatementStatistic.current();
+        if (statistic == null) return super.update(psc, pss);
+        return count(statistic, 1, () -> super.update(psc, pss), result -> result);
+    }
+
+    @Override
+    public int update(String sql) throws DataAccessException {
+        final StatementStatistic statistic = StatementStatistic.current();
+        if (statistic == null) return super.update(sql);
+        return count(statistic, 1, () -> super.update(sql), result -> result);
+    }
+
+    @Override
+    public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) throws DataAccessException {
+        final StatementStatistic statistic = StatementStatistic.current();
+        if (statistic == null) return super.batchUpdate(sql, pss);
+        return count(statistic, 1, () -> super.batchUpdate(sql, pss), result -> Arrays.stream(result).map(CountingJdbcTemplate::rows).sum());
+    }
+
+    @Override
+    public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize, ParameterizedPreparedStatementSetter<T> pss) throws DataAccessException {
+        final StatementStatistic statistic = StatementStatistic.current();
+        if (statistic == null) return super.batchUpdate(sql, batchArgs, batchSize, pss);
+        final int batches = batchSize > 0 ? (batchArgs.size() + batchSize - 1) / batchSize : 1;
+        return count(statistic, batches, () -> super.batchUpdate(sql, batchArgs, batchSize, pss),
+                result -> Arrays.stream(result).flatMapToInt(Arrays::stream).map(CountingJdbcTemplate::rows).sum());
+    }
+
+    private static <T> T count(StatementStatistic statistic, int statements, Supplier<T> action, RowCounter<T> rowCounter) {
+        final long start = System.nanoTime();
+        T result = null;
+        try {
+            result = action.get();
+            return result;
+        } finally {
+            statistic.addStatement(statements, result == null ? 0 : rowCounter.count(result), System.nanoTime() - start);
+        }
+    }
+
+    private static int rows(int count) {
+        return count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+    }
+
+    /**
+     * Приватный метод оборачивания результата запроса, учитывающий каждую прочитанную строку.
+     *
+     * @param rs        - результат запроса.
+     * @param statistic - статистика текущего потока.
+     * @return результат запроса, учитывающий прочитанные строки.
+     */
+    private static ResultSet countRows(ResultSet rs, StatementStatistic statistic) {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    try {
+                        final Object result = method.invoke(rs, args);
+                        if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) statistic.addRows(1);
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface RowCounter<T> {
+        long count(T result);
+    }
+}
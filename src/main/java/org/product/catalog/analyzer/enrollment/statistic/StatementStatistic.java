@@ -0,0 +1,82 @@
+package org.product.catalog.analyzer.enrollment.statistic;
+
+/**
+ * Статистика SQL-запросов, выполненных в рамках одного http-запроса:
+ * количество запросов к базе данных, количество прочитанных и изменённых строк и суммарное время.
+ * Статистика привязывается к потоку, обрабатывающему http-запрос.
+ * Запросы, выполненные в других потоках, учитываются только если статистика этих потоков
+ * явно добавлена к статистике http-запроса методом {@link #add(StatementStatistic)}.
+ * Статистика не потокобезопасна: добавление должно происходить до того,
+ * как поток http-запроса продолжит работу.
+ *
+ * @author Stepanenko Stanislav
+ */
+public final class StatementStatistic {
+
+    private static final ThreadLocal<StatementStatistic> CURRENT = new ThreadLocal<>();
+
+    private int statementCount;
+    private long rowCount;
+    private long nanos;
+
+    private StatementStatistic() {
+    }
+
+    /**
+     * Начало сбора статистики в текущем потоке.
+     *
+     * @return новая статистика текущего потока.
+     */
+    public static StatementStatistic begin() {
+        final StatementStatistic result = new StatementStatistic();
+        CURRENT.set(result);
+        return result;
+    }
+
+    /**
+     * Окончание сбора статистики в текущем потоке.
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Статистика текущего потока.
+     *
+     * @return статистика, или {@code null} если сбор статистики в текущем потоке не начат.
+     */
+    public static StatementStatistic current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Добавление статистики, собранной в другом потоке для текущего http-запроса.
+     *
+     * @param other - статистика другого потока.
+     */
+    public void add(StatementStatistic other) {
+        addStatement(other.statementCount, other.rowCount, other.nanos);
+    }
+
+    void addStatement(int statements, long rows, long nanos) {
+        this.statementCount += statements;
+        this.rowCount += rows;
+        this.nanos += nanos;
+    }
+
+    void addRows(long rows) {
+        this.rowCount += rows;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getMillis() {
+        return nanos / 1_000_000;
+    }
+}
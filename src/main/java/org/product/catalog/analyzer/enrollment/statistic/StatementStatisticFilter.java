@@ -0,0 +1,138 @@
+package org.product.catalog.analyzer.enrollment.statistic;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Фильтр, собирающий статистику SQL-запросов каждого http-запроса.
+ * Статистика добавляется в заголовки ответа X-Sql-Statements, X-Sql-Rows и X-Sql-Time-Ms
+ * непосредственно перед записью тела ответа и пишется в журнал после обработки запроса.
+ * Для потоковых ответов заголовки отражают только запросы, выполненные до начала записи тела,
+ * полная статистика доступна в журнале.
+ * Если количество SQL-запросов превышает бюджет, в журнал пишется предупреждение,
+ * а при включённом {@code repository.statistic.fail-on-budget} запрос завершается исключением,
+ * что позволяет тестам обнаруживать регрессии вида N+1. Бюджет проверяется перед записью тела ответа,
+ * пока ответ ещё не зафиксирован и может получить код ошибки, и повторно после обработки запроса,
+ * если тело ответа так и не было записано. Превышение бюджета запросами, выполненными уже во время
+ * записи тела, только пишется в журнал.
+ * Фильтр диагностический и включается свойством {@code repository.statistic.enabled}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "repository.statistic.enabled", havingValue = "true")
+public class StatementStatisticFilter extends OncePerRequestFilter {
+
+    @Value("${repository.statistic.statement-budget:0}")
+    private int statementBudget;
+    @Value("${repository.statistic.fail-on-budget:false}")
+    private boolean failOnBudget;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        final StatementStatistic statistic = StatementStatistic.begin();
+        final StatisticResponseWrapper responseWrapper = new StatisticResponseWrapper(request, response, statistic);
+        try {
+            filterChain.doFilter(request, responseWrapper);
+        } finally {
+            StatementStatistic.end();
+            log.debug("{} {}: {} SQL statements, {} rows, {} ms",
+                    request.getMethod(),
+                    request.getRequestURI(),
+                    statistic.getStatementCount(),
+                    statistic.getRowCount(),
+                    statistic.getMillis());
+        }
+        responseWrapper.writeHeaders();
+        if (overBudget(statistic) && !responseWrapper.budgetChecked) {
+            log.warn(budgetMessage(request, statistic) + " while writing the response body");
+        }
+    }
+
+    private boolean overBudget(StatementStatistic statistic) {
+        return statementBudget > 0 && statistic.getStatementCount() > statementBudget;
+    }
+
+    private String budgetMessage(HttpServletRequest request, StatementStatistic statistic) {
+        return String.format("%s %s issued %d SQL statements, budget is %d",
+                request.getMethod(), request.getRequestURI(), statistic.getStatementCount(), statementBudget);
+    }
+
+    /**
+     * Обёртка http-ответа, добавляющая заголовки статистики и проверяющая бюджет SQL-запросов
+     * до того, как ответ будет зафиксирован.
+     */
+    private class StatisticResponseWrapper extends HttpServletResponseWrapper {
+
+        private final HttpServletRequest request;
+        private final StatementStatistic statistic;
+        private boolean headersWritten;
+        private boolean budgetChecked;
+
+        private StatisticResponseWrapper(HttpServletRequest request, HttpServletResponse response, StatementStatistic statistic) {
+            super(response);
+            this.request = request;
+            this.statistic = statistic;
+        }
+
+        private void writeHeaders() {
+            if (headersWritten || isCommitted()) return;
+            headersWritten = true;
+            setHeader("X-Sql-Statements", String.valueOf(statistic.getStatementCount()));
+            setHeader("X-Sql-Rows", String.valueOf(statistic.getRowCount()));
+            setHeader("X-Sql-Time-Ms", String.valueOf(statistic.getMillis()));
+            checkBudget();
+        }
+
+        private void checkBudget() {
+            if (budgetChecked || !overBudget(statistic)) return;
+            budgetChecked = true;
+            final String message = budgetMessage(request, statistic);
+            if (failOnBudget) throw new IllegalStateException(message);
+            log.warn(message);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+    }
+}
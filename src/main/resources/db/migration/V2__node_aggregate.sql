@@ -0,0 +1,26 @@
+ALTER TABLE node
+    ADD COLUMN offer_sum bigint NOT NULL DEFAULT 0,
+    ADD COLUMN offer_count integer NOT NULL DEFAULT 0;
+
+UPDATE node
+SET offer_sum   = price,
+    offer_count = 1
+WHERE type = 'OFFER';
+
+WITH RECURSIVE r AS (
+    SELECT parent_id AS id, price
+    FROM node
+    WHERE type = 'OFFER'
+      AND parent_id IS NOT NULL
+    UNION ALL
+    SELECT node.parent_id, r.price
+    FROM node
+             JOIN r
+                  ON node.id = r.id
+    WHERE node.parent_id IS NOT NULL
+)
+UPDATE node
+SET offer_sum   = aggregate.offer_sum,
+    offer_count = aggregate.offer_count
+FROM (SELECT id, sum(price) AS offer_sum, count(*) AS offer_count FROM r GROUP BY id) aggregate
+WHERE node.id = aggregate.id;
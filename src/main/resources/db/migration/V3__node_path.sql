@@ -0,0 +1,27 @@
+ALTER TABLE node
+    ADD COLUMN path uuid[];
+
+WITH RECURSIVE r AS (
+    SELECT id, ARRAY [id] AS path
+    FROM node
+    WHERE parent_id IS NULL
+    UNION ALL
+    SELECT node.id, r.path || node.id
+    FROM node
+             JOIN r
+                  ON node.parent_id = r.id
+)
+UPDATE node
+SET path = r.path
+FROM r
+WHERE node.id = r.id;
+
+UPDATE node
+SET path = ARRAY [id]
+WHERE path IS NULL;
+
+ALTER TABLE node
+    ALTER COLUMN path SET NOT NULL;
+
+CREATE INDEX node_parent_id_idx ON node (parent_id);
+CREATE INDEX node_path_idx ON node USING gin (path);
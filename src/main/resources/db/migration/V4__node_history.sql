@@ -0,0 +1,15 @@
+CREATE TABLE node_history
+(
+    id uuid NOT NULL REFERENCES node (id) ON DELETE CASCADE,
+    type character varying(50) NOT NULL,
+    name character varying(50) NOT NULL,
+    parent_id uuid,
+    price integer,
+    date timestamp with time zone NOT NULL,
+    PRIMARY KEY (id, date)
+);
+
+INSERT INTO node_history (id, type, name, parent_id, price, date)
+SELECT id, type, name, parent_id, COALESCE(price, (offer_sum / NULLIF(offer_count, 0))::integer), date
+FROM node
+WHERE date IS NOT NULL;
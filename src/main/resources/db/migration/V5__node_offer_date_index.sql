@@ -0,0 +1 @@
+CREATE INDEX node_offer_date_idx ON node (date) WHERE type = 'OFFER';
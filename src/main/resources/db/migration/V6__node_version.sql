@@ -0,0 +1,2 @@
+ALTER TABLE node
+    ADD COLUMN version bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,16 @@
+CREATE TABLE node_change
+(
+    seq bigserial NOT NULL PRIMARY KEY,
+    operation character varying(50) NOT NULL,
+    id uuid NOT NULL,
+    type character varying(50) NOT NULL,
+    name character varying(50) NOT NULL,
+    parent_id uuid,
+    price integer,
+    date timestamp with time zone,
+    path uuid[] NOT NULL,
+    created timestamp with time zone NOT NULL DEFAULT now()
+);
+
+CREATE INDEX node_change_path_idx ON node_change USING gin (path);
+CREATE INDEX node_change_created_idx ON node_change (created);
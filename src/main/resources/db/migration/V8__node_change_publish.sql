@@ -0,0 +1,8 @@
+ALTER TABLE node_change
+    ADD COLUMN txid bigint NOT NULL DEFAULT txid_current(),
+    ADD COLUMN published_seq bigint;
+
+UPDATE node_change SET published_seq = seq;
+
+CREATE UNIQUE INDEX node_change_published_seq_idx ON node_change (published_seq);
+CREATE INDEX node_change_unpublished_idx ON node_change (txid, seq) WHERE published_seq IS NULL;
@@ -0,0 +1,2 @@
+DROP INDEX node_offer_date_idx;
+CREATE INDEX node_offer_date_idx ON node (date, id) WHERE type = 'OFFER';
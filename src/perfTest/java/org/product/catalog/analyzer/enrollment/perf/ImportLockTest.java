@@ -0,0 +1,180 @@
+package org.product.catalog.analyzer.enrollment.perf;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.product.catalog.analyzer.enrollment.service.NodeService;
+import org.product.catalog.analyzer.enrollment.service.NodeServiceImpl.ImportLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест параллельного импорта: несколько потоков обновляют цены товаров в корневых категориях каталога.
+ * Пропускная способность импорта с блокировкой корневых категорий сравнивается с блокировкой всего каталога,
+ * когда потоки импортируют в разные корни, после чего все потоки импортируют в один корень.
+ * Тест падает если импорт завершился ошибкой, в том числе взаимной блокировкой,
+ * если агрегаты категорий разошлись с ценами товаров, или если выигрыш
+ * в пропускной способности меньше заданного в {@code perf.lock.min-gain}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@SpringBootTest
+@Import(PerfTestConfiguration.class)
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class ImportLockTest {
+
+    @Autowired
+    private NodeService nodeService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${perf.lock.roots}")
+    private int roots;
+    @Value("${perf.lock.offers}")
+    private int offers;
+    @Value("${perf.lock.threads}")
+    private int threads;
+    @Value("${perf.lock.imports}")
+    private int imports;
+    @Value("${perf.lock.min-gain}")
+    private double minGain;
+
+    private final AtomicLong clock = new AtomicLong(new GregorianCalendar(2022, Calendar.JUNE, 1).getTimeInMillis());
+    private final List<UUID> rootIds = new ArrayList<>();
+    private final List<UUID> categoryIds = new ArrayList<>();
+    private final List<List<UUID>> offerIds = new ArrayList<>();
+
+    @Test
+    void importDisjointSubtrees() throws Exception {
+        for (int i = 0; i < roots; i++) loadRoot(i);
+
+        final double global = replay(ImportLock.GLOBAL, thread -> thread % roots);
+        final double subtree = replay(ImportLock.SUBTREE, thread -> thread % roots);
+        final double shared = replay(ImportLock.SUBTREE, thread -> 0);
+        log.info("Import throughput, imports/s: {} threads, {} roots, global lock {}, subtree lock {}, shared root {}, gain {}",
+                threads,
+                roots,
+                String.format("%.1f", global),
+                String.format("%.1f", subtree),
+                String.format("%.1f", shared),
+                String.format("%.2f", subtree / global));
+
+        for (UUID rootId : rootIds) {
+            final Map<String, Object> aggregate = jdbcTemplate.queryForMap("""
+                    SELECT offer_sum, offer_count FROM node WHERE id = ?::uuid""", rootId);
+            final Map<String, Object> offerSum = jdbcTemplate.queryForMap("""
+                    SELECT COALESCE(sum(price), 0) AS offer_sum, count(*) AS offer_count
+                       FROM node
+                       WHERE path @> ARRAY[?::uuid] AND type = 'OFFER'""", rootId);
+            assertThat(((Number) aggregate.get("offer_sum")).longValue())
+                    .as("Offer sum of root %s", rootId)
+                    .isEqualTo(((Number) offerSum.get("offer_sum")).longValue());
+            assertThat(((Number) aggregate.get("offer_count")).longValue())
+                    .as("Offer count of root %s", rootId)
+                    .isEqualTo(((Number) offerSum.get("offer_count")).longValue());
+        }
+        assertThat(subtree)
+                .as("Throughput of subtree lock, imports/s")
+                .isGreaterThanOrEqualTo(global * minGain);
+    }
+
+    /**
+     * Импорт корневой категории с одной подкатегорией и заданным количеством товаров.
+     *
+     * @param index - номер корня.
+     */
+    private void loadRoot(int index) throws Exception {
+        final Date date = new Date(clock.addAndGet(1000));
+        final UUID rootId = UUID.randomUUID();
+        final UUID categoryId = UUID.randomUUID();
+        final List<Node> nodes = new ArrayList<>();
+        nodes.add(new Node(rootId, NodeType.CATEGORY, "Root " + index, null, null, null, date, null, 0, 0));
+        nodes.add(new Node(categoryId, NodeType.CATEGORY, "Category " + index, rootId, null, null, date, null, 0, 0));
+        final List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < offers; i++) {
+            final UUID offerId = UUID.randomUUID();
+            nodes.add(offer(offerId, categoryId, date));
+            ids.add(offerId);
+        }
+        nodeService.importNodes(nodes);
+        rootIds.add(rootId);
+        categoryIds.add(categoryId);
+        offerIds.add(ids);
+    }
+
+    /**
+     * Параллельный импорт обновлений цен заданным количеством потоков.
+     *
+     * @param importLock - способ блокировки каталога при импорте.
+     * @param rootOf     - номер корня, в который импортирует поток с заданным номером.
+     * @return пропускная способность импорта, импортов в секунду.
+     */
+    private double replay(ImportLock importLock, IntUnaryOperator rootOf) throws InterruptedException {
+        ReflectionTestUtils.setField(AopTestUtils.getUltimateTargetObject(nodeService), "importLock", importLock);
+        final AtomicInteger errors = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final long start = System.nanoTime();
+        for (int thread = 0; thread < threads; thread++) {
+            final int root = rootOf.applyAsInt(thread);
+            executor.execute(() -> {
+                for (int i = 0; i < imports; i++) {
+                    try {
+                        nodeService.importNodes(priceUpdate(root));
+                    } catch (Exception e) {
+                        log.warn("Import into root {} failed", rootIds.get(root), e);
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.MINUTES)).isTrue();
+        final double elapsed = (System.nanoTime() - start) / 1e9;
+        assertThat(errors.get())
+                .as("Failed imports with %s lock", importLock)
+                .isZero();
+        return threads * imports / elapsed;
+    }
+
+    /**
+     * Построение импорта новых цен двух случайных товаров корня.
+     *
+     * @param root - номер корня.
+     * @return список импортируемых товаров.
+     */
+    private List<Node> priceUpdate(int root) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final List<UUID> ids = offerIds.get(root);
+        final Date date = new Date(clock.addAndGet(1000));
+        final int first = random.nextInt(ids.size());
+        final int second = (first + 1 + random.nextInt(ids.size() - 1)) % ids.size();
+        return List.of(
+                offer(ids.get(first), categoryIds.get(root), date),
+                offer(ids.get(second), categoryIds.get(root), date));
+    }
+
+    private static Node offer(UUID id, UUID parentId, Date date) {
+        final int price = ThreadLocalRandom.current().nextInt(1000, 100000);
+        return new Node(id, NodeType.OFFER, "Offer " + id, parentId, null, price, date, null, 0, 0);
+    }
+}
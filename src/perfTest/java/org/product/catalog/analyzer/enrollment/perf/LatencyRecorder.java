@@ -0,0 +1,60 @@
+package org.product.catalog.analyzer.enrollment.perf;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопитель задержек запросов по конечным точкам с расчётом перцентилей.
+ *
+ * @author Stepanenko Stanislav
+ */
+public class LatencyRecorder {
+
+    private final Map<String, Queue<Long>> latencyMap = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errorMap = new ConcurrentHashMap<>();
+
+    public void record(String endpoint, long nanos, boolean error) {
+        latencyMap.computeIfAbsent(endpoint, key -> new ConcurrentLinkedQueue<>()).add(nanos);
+        if (error) errorMap.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Сводка по всем конечным точкам, упорядоченная по имени.
+     *
+     * @return сводка по каждой конечной точке.
+     */
+    public List<Summary> summarize() {
+        final List<Summary> result = new ArrayList<>();
+        new TreeMap<>(latencyMap).forEach((endpoint, latencies) -> {
+            final long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            final LongAdder errors = errorMap.get(endpoint);
+            result.add(new Summary(
+                    endpoint,
+                    sorted.length,
+                    errors == null ? 0 : errors.sum(),
+                    percentile(sorted, 0.5),
+                    percentile(sorted, 0.99),
+                    percentile(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1_000_000.0));
+        });
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    /**
+     * Сводка задержек конечной точки в миллисекундах.
+     */
+    public record Summary(String endpoint, int count, long errors, double p50, double p99, double p999, double max) {
+
+        @Override
+        public String toString() {
+            return String.format("%-14s %8d %6d %10.1f %10.1f %10.1f %10.1f", endpoint, count, errors, p50, p99, p999, max);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.product.catalog.analyzer.enrollment.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.product.catalog.analyzer.enrollment.fixture.CatalogGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный тест: приложение запускается на встроенном Postgres, в него импортируется
+ * синтетический каталог, после чего несколько параллельных клиентов воспроизводят смесь запросов
+ * /imports, /delete, /nodes и /sales. Для каждой конечной точки выводятся перцентили задержек,
+ * тест падает если 99-й перцентиль превышает заданный бюджет или сервер ответил ошибкой 5xx.
+ * Все параметры задаются в блоке {@code perf} конфигурации и переопределяются свойствами Gradle
+ * вида {@code -Pperf.load.clients=16}.
+ *
+ * @author Stepanenko Stanislav
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(PerfTestConfiguration.class)
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class LoadTest {
+
+    private static final String IMPORTS = "imports";
+    private static final String IMPORTS_LOAD = "imports-load";
+    private static final String DELETE = "delete";
+    private static final String NODES = "nodes";
+    private static final String SALES = "sales";
+    private static final int IMPORT_SIZE = 10;
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private Environment environment;
+
+    @Value("${perf.catalog.shape}")
+    private String shape;
+    @Value("${perf.catalog.depth}")
+    private int depth;
+    @Value("${perf.catalog.fan-out}")
+    private int fanOut;
+    @Value("${perf.catalog.offers}")
+    private int offers;
+    @Value("${perf.catalog.batch-size}")
+    private int batchSize;
+    @Value("${perf.load.clients}")
+    private int clients;
+    @Value("${perf.load.duration}")
+    private Duration duration;
+    @Value("${perf.load.warm-up}")
+    private Duration warmUp;
+    @Value("${perf.load.mix.nodes}")
+    private int nodesWeight;
+    @Value("${perf.load.mix.sales}")
+    private int salesWeight;
+    @Value("${perf.load.mix.imports}")
+    private int importsWeight;
+    @Value("${perf.load.mix.delete}")
+    private int deleteWeight;
+    @Value("${perf.budget.imports}")
+    private double importsBudget;
+    @Value("${perf.budget.delete}")
+    private double deleteBudget;
+    @Value("${perf.budget.nodes}")
+    private double nodesBudget;
+    @Value("${perf.budget.sales}")
+    private double salesBudget;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final AtomicLong clock = new AtomicLong(new GregorianCalendar(2022, Calendar.JUNE, 1).getTimeInMillis());
+    private final Set<Integer> deletedOffers = ConcurrentHashMap.newKeySet();
+    private CatalogGenerator catalog;
+
+    @Test
+    void replayMixedTraffic() throws Exception {
+        catalog = new CatalogGenerator(shape, depth, fanOut, offers, 42);
+        log.info("Generated {} catalog: {} categories, {} offers", shape, catalog.getCategoryIds().size(), catalog.getOfferCount());
+
+        final LatencyRecorder loadRecorder = new LatencyRecorder();
+        catalog.forEachBatch(batchSize, batch -> send(loadRecorder, IMPORTS_LOAD, importRequest(batch)));
+
+        replay(new LatencyRecorder(), warmUp);
+        final LatencyRecorder recorder = new LatencyRecorder();
+        replay(recorder, duration);
+
+        final List<LatencyRecorder.Summary> summaries = new ArrayList<>(loadRecorder.summarize());
+        summaries.addAll(recorder.summarize());
+        final double throughput = recorder.summarize().stream().mapToInt(LatencyRecorder.Summary::count).sum()
+                / (duration.toMillis() / 1000.0);
+        log.info("Latency, ms: {} clients, {}, profiles {}, throughput {} req/s\n{}\n{}",
+                clients,
+                duration,
+                Arrays.toString(environment.getActiveProfiles()),
+                String.format("%.1f", throughput),
+                String.format("%-14s %8s %6s %10s %10s %10s %10s", "endpoint", "count", "errors", "p50", "p99", "p999", "max"),
+                String.join("\n", summaries.stream().map(LatencyRecorder.Summary::toString).toList()));
+
+        final Map<String, Double> budgets = Map.of(
+                IMPORTS_LOAD, importsBudget,
+                IMPORTS, importsBudget,
+                DELETE, deleteBudget,
+                NODES, nodesBudget,
+                SALES, salesBudget);
+        for (LatencyRecorder.Summary summary : summaries) {
+            assertThat(summary.errors())
+                    .as("Server errors of %s", summary.endpoint())
+                    .isZero();
+            assertThat(summary.p99())
+                    .as("p99 latency of %s, ms", summary.endpoint())
+                    .isLessThanOrEqualTo(budgets.get(summary.endpoint()));
+        }
+    }
+
+    /**
+     * Воспроизведение смеси запросов заданным количеством клиентов в течение заданного времени.
+     *
+     * @param recorder - накопитель задержек.
+     * @param duration - длительность воспроизведения.
+     */
+    private void replay(LatencyRecorder recorder, Duration duration) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        final long deadline = System.nanoTime() + duration.toNanos();
+        for (int i = 0; i < clients; i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    nextRequest(recorder);
+                }
+            });
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Отправка одного случайного запроса в соответствии с весами смеси.
+     * Импорт обновляет цены товаров первой половины каталога, удаление затрагивает товары второй половины,
+     * чтобы параллельные клиенты не импортировали удалённые товары.
+     *
+     * @param recorder - накопитель задержек.
+     */
+    private void nextRequest(LatencyRecorder recorder) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        int choice = random.nextInt(nodesWeight + salesWeight + importsWeight + deleteWeight);
+        if ((choice -= nodesWeight) < 0) {
+            final List<UUID> categoryIds = catalog.getCategoryIds();
+            final UUID id = categoryIds.get(random.nextInt(categoryIds.size()));
+            send(recorder, NODES, HttpRequest.newBuilder(uri("/nodes/" + id)).GET().build());
+        } else if ((choice -= salesWeight) < 0) {
+            send(recorder, SALES, HttpRequest.newBuilder(uri("/sales?date=" + format(clock.get()))).GET().build());
+        } else if ((choice -= importsWeight) < 0) {
+            final int half = Math.max(catalog.getOfferCount() / 2, 1);
+            final List<Map<String, Object>> items = new ArrayList<>(IMPORT_SIZE);
+            final Set<Integer> indexes = new HashSet<>();
+            while (indexes.size() < Math.min(IMPORT_SIZE, half)) indexes.add(random.nextInt(half));
+            indexes.forEach(index -> items.add(catalog.offer(index)));
+            send(recorder, IMPORTS, importRequest(items));
+        } else if (catalog.getOfferCount() > 1) {
+            final int half = catalog.getOfferCount() / 2;
+            final int index = half + random.nextInt(catalog.getOfferCount() - half);
+            if (!deletedOffers.add(index)) return;
+            send(recorder, DELETE, HttpRequest.newBuilder(uri("/delete/" + catalog.getOfferId(index))).DELETE().build());
+        }
+    }
+
+    private HttpRequest importRequest(List<Map<String, Object>> items) {
+        final Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", items);
+        body.put("updateDate", format(clock.addAndGet(1000)));
+        try {
+            return HttpRequest.newBuilder(uri("/imports"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void send(LatencyRecorder recorder, String endpoint, HttpRequest request) {
+        final long start = System.nanoTime();
+        boolean error;
+        try {
+            final HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            error = response.statusCode() >= 500;
+        } catch (Exception e) {
+            log.warn("Request to {} failed", request.uri(), e);
+            error = true;
+        }
+        recorder.record(endpoint, System.nanoTime() - start, error);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String format(long millis) {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat.format(new Date(millis));
+    }
+}
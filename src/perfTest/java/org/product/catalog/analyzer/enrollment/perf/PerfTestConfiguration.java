@@ -0,0 +1,23 @@
+package org.product.catalog.analyzer.enrollment.perf;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * Конфигурация нагрузочных тестов. Настройки приложения берутся из основного application.yaml,
+ * а config/application.yaml нагрузочных тестов переопределяет только отличающиеся свойства.
+ * Миграции выполняются на встроенной базе данных, а не по адресу {@code spring.flyway.url} основной конфигурации.
+ *
+ * @author Stepanenko Stanislav
+ */
+@TestConfiguration
+public class PerfTestConfiguration {
+
+    @Bean
+    public FlywayConfigurationCustomizer embeddedFlywayDataSource(DataSource dataSource) {
+        return configuration -> configuration.dataSource(dataSource);
+    }
+}
@@ -0,0 +1,96 @@
+package org.product.catalog.analyzer.enrollment.controller;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class ChangeControllerTest {
+
+    final String importRequest = """
+               {
+            "items": [
+                       {
+                           "type": "CATEGORY",
+                           "name": "Товары",
+                           "id": "069cb8d7-bbdd-47d3-ad8f-82ef4c269df1",
+                           "parentId": null
+                       },
+                       {
+                           "type": "CATEGORY",
+                           "name": "Смартфоны",
+                           "id": "d515e43f-f3f6-4471-bb77-6b455017a2d2",
+                           "parentId": "069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"
+                       },
+                       {
+                           "type": "OFFER",
+                           "name": "jPhone 13",
+                           "id": "863e1a7a-1304-42ae-943b-179184c077e3",
+                           "parentId": "d515e43f-f3f6-4471-bb77-6b455017a2d2",
+                           "price": 79999
+                       }
+                   ],
+                   "updateDate": "1999-09-09T23:00:00.000Z"
+               }""";
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/imports")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(importRequest));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .delete("/delete/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"));
+    }
+
+    @Test
+    void pollChanges() throws Exception {
+        final MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/changes")
+                        .param("root", "d515e43f-f3f6-4471-bb77-6b455017a2d2")
+                        .param("cursor", "0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", hasItem("863e1a7a-1304-42ae-943b-179184c077e3")))
+                .andExpect(jsonPath("$.items[*].id", not(hasItem("069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"))))
+                .andExpect(jsonPath("$.items[*].operation", hasItem("UPSERT")))
+                .andExpect(jsonPath("$.items[0].path").doesNotExist())
+                .andExpect(jsonPath("$.cursor").isNumber());
+    }
+
+    @Test
+    void streamChanges() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/changes")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+}
@@ -0,0 +1,13 @@
+package org.product.catalog.analyzer.enrollment.controller;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+
+@SpringBootTest(properties = "repository.stream-depth-node=true")
+@AutoConfigureMockMvc
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class NodeControllerStreamTest extends NodeControllerTest {
+}
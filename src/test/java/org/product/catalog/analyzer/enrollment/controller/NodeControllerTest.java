@@ -11,8 +11,14 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.UUID;
+
 import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -110,7 +116,105 @@ class NodeControllerTest {
         mockMvc.perform(MockMvcRequestBuilders
                         .get("/nodes/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"))
                 .andDo(print())
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"))
+                .andExpect(jsonPath("$.parentId").doesNotExist())
+                .andExpect(jsonPath("$.price").value(58599))
+                .andExpect(jsonPath("$.date").value("1999-09-09T23:00:00.000Z"))
+                .andExpect(jsonPath("$.children.length()").value(2))
+                .andExpect(jsonPath("$.children[?(@.name == 'Телевизоры')].price").value(50999));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/" + UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getNodeSubtree() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/d515e43f-f3f6-4471-bb77-6b455017a2d2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        {
+                            "id": "d515e43f-f3f6-4471-bb77-6b455017a2d2",
+                            "type": "CATEGORY",
+                            "name": "Смартфоны",
+                            "parentId": "069cb8d7-bbdd-47d3-ad8f-82ef4c269df1",
+                            "price": 69999,
+                            "date": "1999-09-09T23:00:00.000Z",
+                            "children": [
+                                {
+                                    "id": "863e1a7a-1304-42ae-943b-179184c077e3",
+                                    "type": "OFFER",
+                                    "name": "jPhone 13",
+                                    "parentId": "d515e43f-f3f6-4471-bb77-6b455017a2d2",
+                                    "price": 79999,
+                                    "date": "1999-09-09T23:00:00.000Z",
+                                    "children": null
+                                },
+                                {
+                                    "id": "b1d8fd7d-2ae3-47d5-b2f9-0f094af800d4",
+                                    "type": "OFFER",
+                                    "name": "Xomiа Readme 10",
+                                    "parentId": "d515e43f-f3f6-4471-bb77-6b455017a2d2",
+                                    "price": 59999,
+                                    "date": "1999-09-09T23:00:00.000Z",
+                                    "children": null
+                                }
+                            ]
+                        }"""));
+    }
+
+    @Test
+    void getNodeNotModified() throws Exception {
+        final String eTag = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .delete("/delete/73bc3b36-02d1-4245-ab35-3106c9ee1c65"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)));
+    }
+
+    @Test
+    void getNodeNotModifiedFromCacheWithoutStatement() throws Exception {
+        final String eTag = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("X-Sql-Statements", "0"));
+    }
+
+    @Test
+    void getNodeStatementStatistic() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Sql-Statements"))
+                .andExpect(header().exists("X-Sql-Rows"))
+                .andExpect(header().exists("X-Sql-Time-Ms"));
     }
 
     @Test
@@ -120,4 +224,53 @@ class NodeControllerTest {
                 .andDo(print())
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void repositoryMetrics() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/actuator/metrics/repository.calls")
+                        .param("tag", "method:saveAll"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").isNumber());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/actuator/metrics/cache.gets"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void salesNode() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/sales")
+                        .param("date", "1999-09-10T12:00:00.000Z"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(5));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/sales")
+                        .param("date", "1999-09-12T12:00:00.000Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+
+    @Test
+    void statisticNode() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/node/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1/statistic")
+                        .param("dateStart", "1999-09-09T00:00:00.000Z")
+                        .param("dateEnd", "1999-09-10T00:00:00.000Z"))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/node/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1/statistic")
+                        .param("dateStart", "1999-09-10T00:00:00.000Z")
+                        .param("dateEnd", "1999-09-09T00:00:00.000Z"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/node/" + UUID.randomUUID() + "/statistic"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,123 @@
+package org.product.catalog.analyzer.enrollment.controller;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.UUID;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("reactive")
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class ReactiveNodeHandlerTest {
+
+    final String importRequest = """
+               {
+            "items": [
+                       {
+                           "type": "CATEGORY",
+                           "name": "Товары",
+                           "id": "069cb8d7-bbdd-47d3-ad8f-82ef4c269df1",
+                           "parentId": null
+                       },
+                       {
+                           "type": "CATEGORY",
+                           "name": "Смартфоны",
+                           "id": "d515e43f-f3f6-4471-bb77-6b455017a2d2",
+                           "parentId": "069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"
+                       },
+                       {
+                           "type": "OFFER",
+                           "name": "jPhone 13",
+                           "id": "863e1a7a-1304-42ae-943b-179184c077e3",
+                           "parentId": "d515e43f-f3f6-4471-bb77-6b455017a2d2",
+                           "price": 79999
+                       },
+                       {
+                           "type": "OFFER",
+                           "name": "Xomiа Readme 10",
+                           "id": "b1d8fd7d-2ae3-47d5-b2f9-0f094af800d4",
+                           "parentId": "d515e43f-f3f6-4471-bb77-6b455017a2d2",
+                           "price": 59999
+                       }
+                   ],
+                   "updateDate": "1999-09-09T23:00:00.000Z"
+               }""";
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/imports")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(importRequest));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .delete("/delete/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"));
+    }
+
+    @Test
+    void getNode() throws Exception {
+        final MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("069cb8d7-bbdd-47d3-ad8f-82ef4c269df1"))
+                .andExpect(jsonPath("$.price").value(69999))
+                .andExpect(jsonPath("$.date").value("1999-09-09T23:00:00.000Z"))
+                .andExpect(jsonPath("$.children[0].children.length()").value(2));
+
+        final MvcResult notFound = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/" + UUID.randomUUID()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(notFound))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Item not found"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/nodes/not-uuid"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void salesNode() throws Exception {
+        final MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/sales")
+                        .param("date", "1999-09-10T12:00:00.000Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/sales"))
+                .andExpect(status().isBadRequest());
+    }
+}
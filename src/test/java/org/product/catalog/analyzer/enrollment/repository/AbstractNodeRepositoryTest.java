@@ -0,0 +1,651 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeChange;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+abstract class AbstractNodeRepositoryTest {
+
+    NodeRepository underTestRepository;
+    final Date updateDate = new Date();
+    Node expectedNode;
+    UUID smartphoneCategoryId;
+    UUID tvCategoryId;
+
+    @BeforeEach
+    public void setUp() {
+
+        smartphoneCategoryId = UUID.randomUUID();
+        tvCategoryId = UUID.randomUUID();
+
+
+        expectedNode = new Node(
+                UUID.randomUUID(),
+                NodeType.CATEGORY,
+                "Товары",
+                null,
+                null,
+                null,
+                updateDate,
+                new ArrayList<>(),
+                0,
+                0);
+        underTestRepository.save(expectedNode);
+
+        final Node smartPhoneCategory = new Node(
+                smartphoneCategoryId,
+                NodeType.CATEGORY,
+                "Смартфоны",
+                expectedNode.getId(),
+                expectedNode.getId(),
+                null,
+                updateDate,
+                new ArrayList<>(),
+                0,
+                0);
+        underTestRepository.save(smartPhoneCategory);
+
+        final Node jPhone = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "jPhone 13",
+                smartPhoneCategory.getId(),
+                smartPhoneCategory.getId(),
+                79999,
+                updateDate,
+                null,
+                1,
+                79999);
+        underTestRepository.save(jPhone);
+
+        final Node xomiаPhone = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "Xomiа Readme 10",
+                smartPhoneCategory.getId(),
+                smartPhoneCategory.getId(),
+                59999,
+                updateDate,
+                null,
+                1,
+                59999);
+        underTestRepository.save(xomiаPhone);
+
+        final List<Node> phoneChildren = Arrays.asList(jPhone, xomiаPhone);
+        smartPhoneCategory.setChildren(phoneChildren);
+        smartPhoneCategory.setSum(phoneChildren.stream().mapToLong(Node::getSum).sum());
+        smartPhoneCategory.setOfferCount(phoneChildren.stream().mapToInt(Node::getOfferCount).sum());
+        smartPhoneCategory.setPrice((int) (smartPhoneCategory.getSum() / smartPhoneCategory.getOfferCount()));
+
+        final Node tvCategory = new Node(
+                tvCategoryId,
+                NodeType.CATEGORY,
+                "Телевизоры",
+                expectedNode.getId(),
+                expectedNode.getId(),
+                null,
+                updateDate,
+                new ArrayList<>(),
+                0,
+                0);
+        underTestRepository.save(tvCategory);
+
+        final Node samsonTv = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "Samson 70\\\" LED UHD Smart",
+                tvCategory.getId(),
+                tvCategory.getId(),
+                32999,
+                updateDate,
+                new ArrayList<>(),
+                1,
+                32999);
+        underTestRepository.save(samsonTv);
+
+        final Node phyllisTv = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "Phyllis 50\\\" LED UHD Smarter",
+                tvCategory.getId(),
+                tvCategory.getId(),
+                49999,
+                updateDate,
+                new ArrayList<>(),
+                1,
+                49999);
+        underTestRepository.save(phyllisTv);
+
+        final Node goldstarTv = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "Goldstar 65\\\" LED UHD LOL Very Smart",
+                tvCategory.getId(),
+                tvCategory.getId(),
+                69999,
+                updateDate,
+                new ArrayList<>(),
+                1,
+                69999);
+        underTestRepository.save(goldstarTv);
+
+        final List<Node> tvChildren = Arrays.asList(samsonTv, phyllisTv, goldstarTv);
+        tvCategory.setChildren(tvChildren);
+        tvCategory.setSum(tvChildren.stream().mapToLong(Node::getSum).sum());
+        tvCategory.setOfferCount(tvChildren.stream().mapToInt(Node::getOfferCount).sum());
+        tvCategory.setPrice((int) (tvCategory.getSum() / tvCategory.getOfferCount()));
+
+        final List<Node> goodChildren = Arrays.asList(tvCategory, smartPhoneCategory);
+        expectedNode.setChildren(goodChildren);
+        expectedNode.setSum(goodChildren.stream().mapToLong(Node::getSum).sum());
+        expectedNode.setOfferCount(goodChildren.stream().mapToInt(Node::getOfferCount).sum());
+        expectedNode.setPrice((int) (expectedNode.getSum() / expectedNode.getOfferCount()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        underTestRepository.deleteAllDescendantById(expectedNode.getId());
+        underTestRepository.deleteNodeById(expectedNode.getId());
+        expectedNode = null;
+    }
+
+    @Test
+    void findDepthNodeById() {
+
+        final Node actualNode = underTestRepository.findDepthNodeById(expectedNode.getId());
+
+        assertDepthNodeEquals(actualNode, expectedNode);
+
+        assertThat(underTestRepository.findDepthNodeById(UUID.randomUUID())).isNull();
+    }
+
+    @Test
+    void findDepthNodeByIdStreaming() {
+
+        final List<Node> actualNodes = new ArrayList<>();
+        final int count = underTestRepository.findDepthNodeById(expectedNode.getId(), actualNodes::add);
+
+        assertThat(count).isEqualTo(8);
+        assertThat(actualNodes).hasSize(8);
+        assertThat(actualNodes.get(0).getId()).isEqualTo(expectedNode.getId());
+        assertThat(actualNodes.get(0).getPrice()).isEqualTo(292995 / 5);
+
+        final Deque<UUID> categoryStack = new ArrayDeque<>();
+        for (Node node : actualNodes) {
+            while (!categoryStack.isEmpty() && !categoryStack.peek().equals(node.getParentId())) {
+                categoryStack.pop();
+            }
+            if (node != actualNodes.get(0)) assertThat(categoryStack).isNotEmpty();
+            assertThat(node.getChildren()).isNull();
+            if (NodeType.CATEGORY.equals(node.getType())) categoryStack.push(node.getId());
+        }
+
+        assertThat(underTestRepository.findDepthNodeById(UUID.randomUUID(), actualNodes::add)).isZero();
+    }
+
+    @Test
+    void findDepthNodeByIdIteratively() {
+
+        final Node actualNode = underTestRepository.findDepthNodeByIdIteratively(expectedNode.getId());
+
+        assertDepthNodeEquals(actualNode, expectedNode);
+
+        assertThat(underTestRepository.findDepthNodeByIdIteratively(UUID.randomUUID())).isNull();
+    }
+
+    private void assertDepthNodeEquals(Node actualNode, Node expectedNode) {
+
+        assertThat(actualNode).isNotNull();
+
+        Deque<Node> expectedStack = new ArrayDeque<>();
+        Deque<Node> actualStack = new ArrayDeque<>();
+        expectedStack.push(expectedNode);
+        actualStack.push(actualNode);
+
+        while (!expectedStack.isEmpty() && !actualStack.isEmpty()) {
+
+            final Node expectedParent = expectedStack.pop();
+            final Node actualParent = actualStack.pop();
+
+            assertThat(actualParent)
+                    .usingRecursiveComparison()
+                    .withStrictTypeChecking()
+                    .ignoringFields("children", "date") //compared below
+                    .isEqualTo(expectedParent);
+
+            assertThat(actualParent.getDate()).isCloseTo(expectedParent.getDate(), 1000);
+
+            if (expectedParent.getChildren() != null && actualParent.getChildren() != null) {
+
+                final List<Node> expectedChildren = expectedParent.getChildren()
+                        .stream()
+                        .sorted(Comparator.comparingInt(o -> o.getId().hashCode()))
+                        .toList();
+
+                final List<Node> actualChildren = actualParent.getChildren()
+                        .stream()
+                        .sorted(Comparator.comparingInt(o -> o.getId().hashCode()))
+                        .toList();
+
+                for (int i = 0; i < Math.max(expectedChildren.size(), actualChildren.size()); i++) {
+                    expectedStack.push(expectedChildren.get(i));
+                    actualStack.push(actualChildren.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void findPlainNodeById() {
+
+        final Node actualNode = underTestRepository.findPlainNodeById(expectedNode.getId());
+
+        assertThat(actualNode).isNotNull();
+
+        assertThat(actualNode)
+                .usingRecursiveComparison()
+                .withStrictTypeChecking()
+                .ignoringFields("children", "date", "offerCount", "sum", "price") //because is a plain Node
+                .isEqualTo(expectedNode);
+
+        assertThat(actualNode.getDate()).isCloseTo(expectedNode.getDate(), 1000);
+
+        assertThat(underTestRepository.findPlainNodeById(UUID.randomUUID())).isNull();
+    }
+
+    @Test
+    void findAllPlainNodeById() {
+
+        final Set<UUID> ids = Set.of(expectedNode.getId(), smartphoneCategoryId, tvCategoryId, UUID.randomUUID());
+        final List<Node> actualNodes = underTestRepository.findAllPlainNodeById(ids);
+
+        assertThat(actualNodes).hasSize(3);
+        assertThat(actualNodes.stream().map(Node::getId).collect(Collectors.toSet()))
+                .isEqualTo(Set.of(expectedNode.getId(), smartphoneCategoryId, tvCategoryId));
+        assertThat(underTestRepository.findAllPlainNodeById(Set.of())).isEmpty();
+    }
+
+    @Test
+    void findAllRootId() {
+
+        final List<UUID> rootIds = underTestRepository.findAllRootId();
+
+        assertThat(rootIds).contains(expectedNode.getId());
+        assertThat(rootIds).doesNotContain(smartphoneCategoryId, tvCategoryId);
+    }
+
+    @Test
+    void lockAllRootById() {
+        final UUID newId = UUID.randomUUID();
+
+        assertThat(underTestRepository.lockAllRootById(List.of(smartphoneCategoryId, tvCategoryId, newId)))
+                .isEqualTo(Set.of(expectedNode.getId(), newId));
+        assertThat(underTestRepository.lockAllRootById(Set.of())).isEmpty();
+        underTestRepository.lockAll();
+    }
+
+    @Test
+    void save() {
+
+        Date firstUpdate = new Date();
+
+        final Node phoneCategory = new Node(
+                UUID.randomUUID(),
+                NodeType.CATEGORY,
+                "Телефоны",
+                expectedNode.getId(),
+                expectedNode.getId(),
+                null,
+                firstUpdate,
+                new ArrayList<>(),
+                0,
+                0);
+
+        assertThat(underTestRepository.save(phoneCategory)).isEqualTo(1);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getDate()).isCloseTo(expectedNode.getDate(), 1000);
+        assertThat(underTestRepository.findPlainNodeById(phoneCategory.getId()).getDate()).isCloseTo(firstUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(phoneCategory.getId()))
+                .usingRecursiveComparison()
+                .withStrictTypeChecking()
+                .ignoringFields("children", "date")
+                .isEqualTo(phoneCategory);
+
+        final Node nokia = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "Nokia 3310",
+                phoneCategory.getId(),
+                phoneCategory.getId(),
+                69999,
+                firstUpdate,
+                new ArrayList<>(),
+                1,
+                69999);
+
+        assertThat(underTestRepository.save(nokia)).isEqualTo(1);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getDate()).isCloseTo(firstUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(phoneCategory.getId()).getDate()).isCloseTo(firstUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(nokia.getId()).getDate()).isCloseTo(firstUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(nokia.getId()))
+                .usingRecursiveComparison()
+                .withStrictTypeChecking()
+                .ignoringFields("children", "date")
+                .isEqualTo(nokia);
+
+        Date secondUpdate = new Date();
+        Node updateSmartPhone = underTestRepository.findPlainNodeById(smartphoneCategoryId);
+        updateSmartPhone.setDate(secondUpdate);
+        updateSmartPhone.setParentId(phoneCategory.getId());
+        underTestRepository.save(updateSmartPhone);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getDate()).isCloseTo(secondUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(phoneCategory.getId()).getDate()).isCloseTo(secondUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(smartphoneCategoryId).getDate()).isCloseTo(secondUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getDate()).isCloseTo(updateDate, 1000);
+    }
+
+    @Test
+    void saveAll() {
+        Date firstUpdate = new Date();
+
+        final Node phoneCategory = new Node(
+                UUID.randomUUID(),
+                NodeType.CATEGORY,
+                "Телефоны",
+                expectedNode.getId(),
+                expectedNode.getId(),
+                null,
+                firstUpdate,
+                new ArrayList<>(),
+                0,
+                0);
+
+        final Node nokia = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "Nokia 3310",
+                phoneCategory.getId(),
+                phoneCategory.getId(),
+                69999,
+                firstUpdate,
+                new ArrayList<>(),
+                1,
+                69999);
+
+        assertThat(underTestRepository.saveAll(Arrays.asList(phoneCategory, nokia))).isEqualTo(2);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getDate()).isCloseTo(firstUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(phoneCategory.getId()).getDate()).isCloseTo(firstUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(nokia.getId()).getDate()).isCloseTo(firstUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getDate()).isCloseTo(updateDate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(nokia.getId()))
+                .usingRecursiveComparison()
+                .withStrictTypeChecking()
+                .ignoringFields("children", "date")
+                .isEqualTo(nokia);
+
+        Date secondUpdate = new Date();
+        phoneCategory.setDate(secondUpdate);
+        phoneCategory.setParentId(smartphoneCategoryId);
+        nokia.setDate(secondUpdate);
+
+        assertThat(underTestRepository.saveAll(Arrays.asList(phoneCategory, nokia))).isEqualTo(2);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getDate()).isCloseTo(secondUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(phoneCategory.getId()).getDate()).isCloseTo(secondUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(nokia.getId()).getDate()).isCloseTo(secondUpdate, 1000);
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getDate()).isCloseTo(updateDate, 1000);
+    }
+
+    @Test
+    void saveAllUpdateAggregate() {
+        final Node nokia = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "Nokia 3310",
+                tvCategoryId,
+                tvCategoryId,
+                10001,
+                new Date(),
+                null,
+                1,
+                10001);
+
+        underTestRepository.saveAll(List.of(nokia));
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getOfferCount()).isEqualTo(4);
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getSum()).isEqualTo(162998);
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getPrice()).isEqualTo(40749);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getOfferCount()).isEqualTo(6);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getSum()).isEqualTo(302996);
+
+        nokia.setParentId(smartphoneCategoryId);
+        nokia.setOldParentId(tvCategoryId);
+        nokia.setPrice(20002);
+        nokia.setDate(new Date());
+
+        underTestRepository.saveAll(List.of(nokia));
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getOfferCount()).isEqualTo(3);
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getSum()).isEqualTo(152997);
+        assertThat(underTestRepository.findPlainNodeById(smartphoneCategoryId).getOfferCount()).isEqualTo(3);
+        assertThat(underTestRepository.findPlainNodeById(smartphoneCategoryId).getSum()).isEqualTo(160000);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getOfferCount()).isEqualTo(6);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getSum()).isEqualTo(312997);
+    }
+
+    @Test
+    void saveAllMoveCategory() {
+        final Node smartPhoneCategory = underTestRepository.findPlainNodeById(smartphoneCategoryId);
+        smartPhoneCategory.setParentId(tvCategoryId);
+        smartPhoneCategory.setDate(new Date());
+
+        underTestRepository.saveAll(List.of(smartPhoneCategory));
+
+        final Node tvCategory = underTestRepository.findDepthNodeById(tvCategoryId);
+        assertThat(tvCategory.getOfferCount()).isEqualTo(5);
+        assertThat(tvCategory.getChildren()).hasSize(4);
+        assertThat(tvCategory.getChildren()
+                .stream()
+                .filter(node -> smartphoneCategoryId.equals(node.getId()))
+                .findFirst()
+                .orElseThrow()
+                .getChildren()).hasSize(2);
+        assertThat(underTestRepository.findDepthNodeById(expectedNode.getId()).getChildren()).hasSize(1);
+
+        assertThat(underTestRepository.deleteAllDescendantById(tvCategoryId)).isEqualTo(6);
+        assertThat(underTestRepository.findPlainNodeById(smartphoneCategoryId)).isNull();
+    }
+
+    @Test
+    void updateAllParentAggregate() {
+        assertThat(underTestRepository.updateAllParentAggregate(tvCategoryId, -32999, -1)).isEqualTo(2);
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getSum()).isEqualTo(119998);
+        assertThat(underTestRepository.findPlainNodeById(tvCategoryId).getPrice()).isEqualTo(59999);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getSum()).isEqualTo(259996);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId()).getOfferCount()).isEqualTo(4);
+        assertThat(underTestRepository.findPlainNodeById(smartphoneCategoryId).getSum()).isEqualTo(139998);
+    }
+
+    @Test
+    void findVersionById() {
+        final String rootVersion = underTestRepository.findVersionById(expectedNode.getId());
+        final String smartphoneVersion = underTestRepository.findVersionById(smartphoneCategoryId);
+        final Node nokia = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", tvCategoryId, tvCategoryId,
+                9999, updateDate, null, 1, 9999);
+
+        underTestRepository.save(nokia);
+        final String savedRootVersion = underTestRepository.findVersionById(expectedNode.getId());
+        assertThat(savedRootVersion).isNotEqualTo(rootVersion);
+        assertThat(underTestRepository.findVersionById(smartphoneCategoryId)).isEqualTo(smartphoneVersion);
+
+        underTestRepository.deleteNodeById(nokia.getId());
+        assertThat(underTestRepository.findVersionById(expectedNode.getId())).isNotEqualTo(savedRootVersion);
+        assertThat(underTestRepository.findVersionById(nokia.getId())).isNull();
+    }
+
+    @Test
+    void findChangeList() {
+        final long cursor = underTestRepository.findLastChangeCursor();
+        final Node nokia = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", tvCategoryId, tvCategoryId,
+                9999, updateDate, null, 1, 9999);
+
+        underTestRepository.save(nokia);
+        underTestRepository.publishAllChange();
+        final List<NodeChange> saved = underTestRepository.findChangeList(expectedNode.getId(), cursor, 100);
+        assertThat(saved).extracting(NodeChange::id).containsExactly(expectedNode.getId(), tvCategoryId, nokia.getId());
+        assertThat(saved).extracting(NodeChange::operation).containsOnly(NodeChange.UPSERT);
+        assertThat(underTestRepository.findChangeList(smartphoneCategoryId, cursor, 100)).isEmpty();
+
+        final long savedCursor = saved.get(saved.size() - 1).cursor();
+        underTestRepository.deleteNodeById(nokia.getId());
+        underTestRepository.publishAllChange();
+        final List<NodeChange> deleted = underTestRepository.findChangeList(tvCategoryId, savedCursor, 100);
+        assertThat(deleted).extracting(NodeChange::id).containsExactly(nokia.getId(), tvCategoryId);
+        assertThat(deleted.get(0).operation()).isEqualTo(NodeChange.DELETE);
+        assertThat(underTestRepository.findChangeList(null, savedCursor, 1)).hasSize(1);
+        assertThat(underTestRepository.findLastChangeCursor()).isGreaterThan(savedCursor);
+    }
+
+    @Test
+    void findChangeListMoveCategory() {
+        final long cursor = underTestRepository.findLastChangeCursor();
+        final Node smartPhoneCategory = underTestRepository.findPlainNodeById(smartphoneCategoryId);
+        smartPhoneCategory.setParentId(tvCategoryId);
+        smartPhoneCategory.setDate(new Date());
+
+        underTestRepository.saveAll(List.of(smartPhoneCategory));
+        underTestRepository.publishAllChange();
+        final List<NodeChange> moved = underTestRepository.findChangeList(expectedNode.getId(), cursor, 100)
+                .stream()
+                .filter(change -> smartphoneCategoryId.equals(change.id()))
+                .toList();
+        assertThat(moved).extracting(NodeChange::operation).containsExactly(NodeChange.DELETE, NodeChange.UPSERT);
+        assertThat(moved.get(0).parentId()).isEqualTo(expectedNode.getId());
+        assertThat(moved.get(0).path()).containsExactly(expectedNode.getId(), smartphoneCategoryId);
+        assertThat(moved.get(1).parentId()).isEqualTo(tvCategoryId);
+        assertThat(moved.get(1).path()).containsExactly(expectedNode.getId(), tvCategoryId, smartphoneCategoryId);
+    }
+
+    @Test
+    void deleteNodeById() {
+
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId())).isNotNull();
+        assertThat(underTestRepository.deleteNodeById(expectedNode.getId())).isEqualTo(1);
+        assertThat(underTestRepository.findPlainNodeById(expectedNode.getId())).isNull();
+        expectedNode.getChildren()
+                .forEach(child -> assertThat(underTestRepository.findPlainNodeById(child.getId()))
+                        .isNotNull());
+
+    }
+
+    @Test
+    void deleteAllDescendantById() {
+
+        Node deleteCandidate = underTestRepository.findDepthNodeById(expectedNode.getId());
+        assertThat(deleteCandidate).isNotNull();
+
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(deleteCandidate);
+        int allChildrenCount = -1;
+        while (!stack.isEmpty()){
+            allChildrenCount++;
+            final Node parent = stack.pop();
+            if (parent.getChildren() != null){
+                for (Node child:parent.getChildren()){
+                    stack.push(child);
+                    assertThat(underTestRepository.findPlainNodeById(child.getId())).isNotNull();
+                }
+            }
+        }
+
+        assertThat(underTestRepository.deleteAllDescendantById(deleteCandidate.getId())).isEqualTo(allChildrenCount);
+
+        stack.push(deleteCandidate);
+        while (!stack.isEmpty()){
+            final Node parent = stack.pop();
+            if (parent.getChildren() != null){
+                for (Node child:parent.getChildren()){
+                    stack.push(child);
+                    assertThat(underTestRepository.findPlainNodeById(child.getId())).isNull();
+                }
+            }
+        }
+    }
+    @Test
+    void findStatisticNodeList() {
+        final Node tvCategory = underTestRepository.findPlainNodeById(tvCategoryId);
+        final Node nokia = new Node(
+                UUID.randomUUID(),
+                NodeType.OFFER,
+                "Nokia 3310",
+                tvCategoryId,
+                tvCategoryId,
+                10001,
+                new Date(updateDate.getTime() + 60_000),
+                null,
+                1,
+                10001);
+        underTestRepository.saveAll(List.of(nokia));
+
+        final List<Node> tvHistory = underTestRepository.findStatisticNodeList(tvCategoryId, null, null);
+        assertThat(tvHistory).hasSize(2);
+        assertThat(tvHistory.get(0).getPrice()).isEqualTo(tvCategory.getPrice());
+        assertThat(tvHistory.get(1).getPrice()).isEqualTo(40749);
+        assertThat(underTestRepository.findStatisticNodeList(expectedNode.getId(), null, null)).hasSize(2);
+        assertThat(underTestRepository.findStatisticNodeList(smartphoneCategoryId, null, null)).hasSize(1);
+        assertThat(underTestRepository.findStatisticNodeList(tvCategoryId, null, nokia.getDate())).hasSize(1);
+        assertThat(underTestRepository.findStatisticNodeList(tvCategoryId, nokia.getDate(), null)).hasSize(1);
+
+        underTestRepository.deleteNodeById(nokia.getId());
+        assertThat(underTestRepository.findStatisticNodeList(nokia.getId(), null, null)).isEmpty();
+    }
+
+    @Test
+    void findSaleNodeList() {
+        Date date = new Date();
+        Set<UUID> findSaleIdSet = underTestRepository.findSaleNodeList(date)
+                .stream()
+                .map(Node::getId)
+                .collect(Collectors.toSet());
+
+        Set<UUID> expectedSet = new HashSet<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(expectedNode);
+        while (!stack.isEmpty()){
+            final Node parent = stack.pop();
+            if (NodeType.OFFER.equals(parent.getType())){
+                expectedSet.add(parent.getId());
+            }
+            if (parent.getChildren() != null){
+                for (Node child:parent.getChildren()){
+                    stack.push(child);
+                }
+            }
+        }
+        assertThat(findSaleIdSet).isEqualTo(expectedSet);
+    }
+
+    @Test
+    void findSaleNodeListByPage() {
+        final Date date = new Date();
+        final List<UUID> pagedIdList = new ArrayList<>();
+        Node after = null;
+        List<Node> page;
+        do {
+            page = underTestRepository.findSaleNodeList(date, after, 2);
+            assertThat(page.size()).isLessThanOrEqualTo(2);
+            page.forEach(node -> pagedIdList.add(node.getId()));
+            if (!page.isEmpty()) after = page.get(page.size() - 1);
+        } while (page.size() == 2);
+
+        assertThat(pagedIdList).doesNotHaveDuplicates();
+        assertThat(pagedIdList).containsExactlyInAnyOrderElementsOf(underTestRepository.findSaleNodeList(date)
+                .stream()
+                .map(Node::getId)
+                .toList());
+    }
+}
@@ -0,0 +1,53 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.Test;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class CacheInvalidationListenerTest {
+
+    @Autowired
+    private NodeCache nodeCache;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static Node offer() {
+        return new Node(UUID.randomUUID(), NodeType.OFFER, "jPhone 13", null, null, 79999, new Date(), null, 1, 79999);
+    }
+
+    private void notify(String instanceId, UUID id) {
+        jdbcTemplate.query("SELECT pg_notify('node_changed', ?)", (RowCallbackHandler) rs -> {
+        }, instanceId + ":" + id);
+    }
+
+    @Test
+    void evictNodesChangedByOtherInstance() throws InterruptedException {
+        final Node own = offer();
+        final Node other = offer();
+        nodeCache.writeAll(List.of(own, other));
+
+        notify(NodeRepositoryImpl.INSTANCE_ID, own.getId());
+        notify(UUID.randomUUID().toString(), other.getId());
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (nodeCache.peek(other.getId()) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(nodeCache.peek(other.getId())).isNull();
+        assertThat(nodeCache.peek(own.getId())).isNotNull();
+    }
+}
@@ -0,0 +1,156 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class CacheWarmUpTest {
+
+    @Mock
+    private NodeRepository nodeRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private NodeCache nodeCache;
+    private List<Node> catalog;
+    private Node root;
+    private Node smartphones;
+    private Node tvs;
+    private Node otherRoot;
+    private Runnable afterRead = () -> {
+    };
+
+    @BeforeEach
+    void setUp() {
+        nodeCache = new NodeCache(100);
+        final Date date = new Date();
+        root = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Товары", null, null, null, date, null, 0, 0);
+        smartphones = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Смартфоны", root.getId(), root.getId(), 69999, date, null, 2, 139998);
+        tvs = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Телевизоры", root.getId(), root.getId(), null, date, null, 0, 0);
+        otherRoot = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Прочее", null, null, null, date, null, 0, 0);
+        catalog = List.of(
+                new Node(UUID.randomUUID(), NodeType.OFFER, "jPhone 13", smartphones.getId(), smartphones.getId(), 79999, date, null, 1, 79999),
+                smartphones,
+                root,
+                new Node(UUID.randomUUID(), NodeType.OFFER, "Xomiа Readme 10", smartphones.getId(), smartphones.getId(), 59999, date, null, 1, 59999),
+                tvs,
+                otherRoot);
+        given(nodeRepository.findAllRootId()).willReturn(List.of(root.getId(), otherRoot.getId()));
+        given(nodeRepository.findDepthNodeById(any(UUID.class), any())).willAnswer(invocation -> {
+            final UUID rootId = invocation.getArgument(0);
+            final Consumer<Node> consumer = invocation.getArgument(1);
+            final List<Node> subtree = catalog.stream().filter(node -> isDescendant(node, rootId)).toList();
+            subtree.forEach(consumer);
+            afterRead.run();
+            return subtree.size();
+        });
+    }
+
+    private boolean isDescendant(Node node, UUID rootId) {
+        for (Node current = node; current != null; ) {
+            if (rootId.equals(current.getId())) return true;
+            final UUID parentId = current.getParentId();
+            current = catalog.stream().filter(candidate -> candidate.getId().equals(parentId)).findFirst().orElse(null);
+        }
+        return false;
+    }
+
+    @Test
+    void warmUpBuildsTreesAndAggregates() {
+        final CacheWarmUp underTest = new CacheWarmUp(nodeRepository, nodeCache, transactionManager, 100, 2);
+
+        assertThat(underTest.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(underTest.warmUp()).isEqualTo(6);
+
+        final Node tree = nodeCache.getTree(root.getId());
+        assertThat(tree).isNotNull();
+        assertThat(tree.getOfferCount()).isEqualTo(2);
+        assertThat(tree.getSum()).isEqualTo(139998);
+        assertThat(tree.getPrice()).isEqualTo(69999);
+        assertThat(tree.getChildren()).extracting(Node::getId).containsExactlyInAnyOrder(smartphones.getId(), tvs.getId());
+        assertThat(nodeCache.getTree(smartphones.getId()).getChildren()).hasSize(2);
+        assertThat(nodeCache.getTree(tvs.getId()).getChildren()).isEmpty();
+        assertThat(nodeCache.getTree(tvs.getId()).getPrice()).isNull();
+        assertThat(nodeCache.getTree(otherRoot.getId())).isNotNull();
+    }
+
+    @Test
+    void warmUpSkipsTreesOverCacheSize() {
+        final CacheWarmUp underTest = new CacheWarmUp(nodeRepository, nodeCache, transactionManager, 3, 0);
+
+        assertThat(underTest.warmUp()).isEqualTo(1);
+
+        assertThat(nodeCache.peek(root.getId())).isNull();
+        assertThat(nodeCache.getTree(otherRoot.getId())).isNotNull();
+    }
+
+    @Test
+    void warmUpSkipsTreesAfterInvalidation() {
+        afterRead = nodeCache::clear;
+        final CacheWarmUp underTest = new CacheWarmUp(nodeRepository, nodeCache, transactionManager, 100, 0);
+
+        assertThat(underTest.warmUp()).isZero();
+
+        assertThat(nodeCache.peek(root.getId())).isNull();
+        assertThat(nodeCache.getSize()).isZero();
+    }
+
+    @Test
+    void warmUpSharesCacheSizeAcrossRoots() {
+        final CacheWarmUp underTest = new CacheWarmUp(nodeRepository, nodeCache, transactionManager, 5, 2);
+
+        final int cached = underTest.warmUp();
+
+        assertThat(cached).isIn(1, 5);
+        assertThat(nodeCache.getSize()).isEqualTo(cached);
+        assertThat(nodeCache.getTree(root.getId()) == null).isNotEqualTo(nodeCache.getTree(otherRoot.getId()) == null);
+    }
+
+    @Test
+    void readyAfterWarmUp() throws InterruptedException {
+        final CacheWarmUp underTest = new CacheWarmUp(nodeRepository, nodeCache, transactionManager, 100, 0);
+
+        underTest.start();
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (underTest.health().getStatus() != Status.UP && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(underTest.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(underTest.health().getDetails()).containsEntry("nodes", 6);
+        underTest.stop();
+    }
+
+    @Test
+    void failureIsReportedInHealth() throws InterruptedException {
+        afterRead = () -> {
+            throw new IllegalStateException("Connection refused");
+        };
+        final CacheWarmUp underTest = new CacheWarmUp(nodeRepository, nodeCache, transactionManager, 100, 0);
+
+        underTest.start();
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (underTest.health().getStatus() != Status.UP && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(underTest.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(underTest.health().getDetails())
+                .containsEntry("cache", "cold")
+                .containsEntry("error", "java.lang.IllegalStateException: Connection refused");
+        underTest.stop();
+    }
+}
@@ -0,0 +1,256 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CachingNodeRepositoryTest {
+
+    @Mock
+    private NodeRepository nodeRepository;
+    private NodeCache nodeCache;
+    private NodeRepository underTestRepository;
+    private Node root;
+    private Node category;
+    private Node offer;
+
+    @BeforeEach
+    void setUp() {
+        nodeCache = new NodeCache(100);
+        underTestRepository = new CachingNodeRepository(nodeRepository, nodeCache);
+
+        root = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Товары", null, null, 79999, new Date(), null, 1, 79999);
+        category = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Смартфоны", root.getId(), root.getId(), 79999, new Date(), null, 1, 79999);
+        offer = new Node(UUID.randomUUID(), NodeType.OFFER, "jPhone 13", category.getId(), category.getId(), 79999, new Date(), null, 1, 79999);
+    }
+
+    private Node tree() {
+        final Node rootCopy = copy(root);
+        final Node categoryCopy = copy(category);
+        rootCopy.setChildren(new ArrayList<>(List.of(categoryCopy)));
+        categoryCopy.setChildren(new ArrayList<>(List.of(copy(offer))));
+        return rootCopy;
+    }
+
+    private static Node copy(Node node) {
+        return new Node(node.getId(), node.getType(), node.getName(), node.getParentId(), node.getOldParentId(),
+                node.getPrice(), node.getDate(), null, node.getOfferCount(), node.getSum());
+    }
+
+    @Test
+    void findDepthNodeByIdFromCache() {
+        given(nodeRepository.findDepthNodeById(root.getId())).willReturn(tree());
+
+        final Node first = underTestRepository.findDepthNodeById(root.getId());
+        final Node second = underTestRepository.findDepthNodeById(root.getId());
+
+        verify(nodeRepository, times(1)).findDepthNodeById(root.getId());
+        assertThat(second).isEqualTo(first);
+        assertThat(second.getChildren().get(0).getChildren().get(0).getId()).isEqualTo(offer.getId());
+        assertThat(underTestRepository.findDepthNodeById(category.getId()).getChildren()).hasSize(1);
+        assertThat(nodeCache.getHitCount()).isEqualTo(2);
+        assertThat(nodeCache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findDepthNodeByIdFromReplicaIsNotCached() {
+        underTestRepository = new CachingNodeRepository(nodeRepository, nodeCache, (SaleIndex) null, true);
+        given(nodeRepository.findDepthNodeById(root.getId())).willReturn(tree());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            underTestRepository.findDepthNodeById(root.getId());
+            underTestRepository.findDepthNodeById(root.getId());
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        underTestRepository.findDepthNodeById(root.getId());
+        underTestRepository.findDepthNodeById(root.getId());
+
+        verify(nodeRepository, times(3)).findDepthNodeById(root.getId());
+        assertThat(nodeCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findPlainNodeByIdFromCache() {
+        given(nodeRepository.findAllPlainNodeById(anyCollection())).willReturn(List.of(copy(offer)));
+
+        underTestRepository.findAllPlainNodeById(List.of(offer.getId()));
+
+        assertThat(underTestRepository.findPlainNodeById(offer.getId()).getName()).isEqualTo(offer.getName());
+        verify(nodeRepository, times(1)).findAllPlainNodeById(anyCollection());
+    }
+
+    @Test
+    void findVersionByIdFromCache() {
+        given(nodeRepository.findVersionById(root.getId())).willReturn("1-1", "2-2");
+        given(nodeRepository.updateAllParentAggregate(category.getId(), 10000, 1)).willReturn(1);
+
+        assertThat(underTestRepository.findVersionById(root.getId())).isEqualTo("1-1");
+        assertThat(underTestRepository.findVersionById(root.getId())).isEqualTo("1-1");
+        verify(nodeRepository, times(1)).findVersionById(root.getId());
+
+        underTestRepository.updateAllParentAggregate(category.getId(), 10000, 1);
+
+        assertThat(underTestRepository.findVersionById(root.getId())).isEqualTo("2-2");
+        verify(nodeRepository, times(2)).findVersionById(root.getId());
+    }
+
+    @Test
+    void saveAllWriteThrough() {
+        given(nodeRepository.findDepthNodeById(root.getId())).willReturn(tree());
+        underTestRepository.findDepthNodeById(root.getId());
+
+        final Node newOffer = new Node(UUID.randomUUID(), NodeType.OFFER, "Xomiа Readme 10", category.getId(), null, 59999, new Date(), null, 1, 59999);
+        root.setPrice(69999);
+        category.setPrice(69999);
+        given(nodeRepository.findAllParentNodeById(anyCollection()))
+                .willReturn(List.of(copy(root), copy(category), copy(newOffer)));
+
+        underTestRepository.saveAll(List.of(newOffer));
+
+        assertThat(nodeCache.peek(root.getId()).getPrice()).isEqualTo(69999);
+        assertThat(nodeCache.peek(newOffer.getId())).isNotNull();
+        assertThat(nodeCache.getTree(category.getId())).isNull();
+        assertThat(nodeCache.getTree(offer.getId())).isNotNull();
+    }
+
+    @Test
+    void updateAllParentAggregateSkipOlderCommitCompletedLast() {
+        final Node older = new Node(category.getId(), NodeType.CATEGORY, "Смартфоны", root.getId(), root.getId(), 44999, new Date(), null, 2, 89998);
+        final Node newer = new Node(category.getId(), NodeType.CATEGORY, "Смартфоны", root.getId(), root.getId(), 36666, new Date(), null, 3, 109998);
+        given(nodeRepository.updateAllParentAggregate(category.getId(), 10000, 1)).willReturn(1);
+        given(nodeRepository.updateAllParentAggregate(category.getId(), 20000, 1)).willReturn(1);
+        given(nodeRepository.findAllParentNodeById(List.of(category.getId()))).willReturn(List.of(older), List.of(newer));
+
+        final List<TransactionSynchronization> first = inTransaction(() -> underTestRepository.updateAllParentAggregate(category.getId(), 10000, 1));
+        final List<TransactionSynchronization> second = inTransaction(() -> underTestRepository.updateAllParentAggregate(category.getId(), 20000, 1));
+        first.forEach(synchronization -> synchronization.beforeCommit(false));
+        second.forEach(synchronization -> synchronization.beforeCommit(false));
+        second.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertThat(nodeCache.peek(category.getId()).getSum()).isEqualTo(109998);
+        first.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertThat(nodeCache.peek(category.getId())).isNull();
+        nodeCache.writeAll(List.of(newer));
+        assertThat(nodeCache.peek(category.getId()).getSum()).isEqualTo(109998);
+    }
+
+    private static List<TransactionSynchronization> inTransaction(Runnable action) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            action.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void deleteAllDescendantInvalidate() {
+        given(nodeRepository.findDepthNodeById(root.getId())).willReturn(tree());
+        underTestRepository.findDepthNodeById(root.getId());
+
+        underTestRepository.deleteAllDescendantById(root.getId());
+        underTestRepository.deleteNodeById(root.getId());
+
+        assertThat(nodeCache.getSize()).isZero();
+        assertThat(nodeCache.peek(offer.getId())).isNull();
+    }
+
+    @Test
+    void deleteAllDescendantInvalidateOnlySubtree() {
+        final Node otherRoot = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Телевизоры", null, null, null, new Date(), null, 0, 0);
+        otherRoot.setChildren(new ArrayList<>());
+        nodeCache.putTree(otherRoot, nodeCache.getGeneration());
+        nodeCache.putAll(List.of(copy(offer)), nodeCache.getGeneration());
+
+        underTestRepository.deleteAllDescendantById(root.getId());
+
+        assertThat(nodeCache.peek(offer.getId())).isNull();
+        assertThat(nodeCache.getTree(otherRoot.getId())).isNotNull();
+    }
+
+    @Test
+    void evictAllPatchSaleIndex() {
+        final SaleIndex saleIndex = new SaleIndex(Duration.ofHours(48));
+        final Node deleted = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", category.getId(), category.getId(), 6999, offer.getDate(), null, 1, 6999);
+        saleIndex.load(List.of(copy(offer), deleted));
+        final CachingNodeRepository underTestRepository = new CachingNodeRepository(nodeRepository, nodeCache, saleIndex);
+        given(nodeRepository.findDepthNodeById(root.getId())).willReturn(tree());
+        underTestRepository.findDepthNodeById(root.getId());
+
+        final Node updated = new Node(offer.getId(), NodeType.OFFER, "jPhone 13", category.getId(), category.getId(), 69999,
+                new Date(offer.getDate().getTime() + 1000), null, 1, 69999);
+        given(nodeRepository.findAllPlainNodeById(anyCollection())).willReturn(List.of(copy(root), copy(category), updated));
+
+        underTestRepository.evictAll(List.of(root.getId(), category.getId(), offer.getId(), deleted.getId()));
+
+        assertThat(nodeCache.peek(root.getId())).isNull();
+        assertThat(nodeCache.peek(offer.getId())).isNull();
+        assertThat(saleIndex.find(updated.getDate())).extracting(Node::getPrice).containsExactly(69999);
+        assertThat(saleIndex.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    void findSaleNodeListPagesFromTransactionSnapshot() {
+        final SaleIndex saleIndex = new SaleIndex(Duration.ofHours(48));
+        final Node other = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", category.getId(), category.getId(), 6999,
+                new Date(offer.getDate().getTime() + 1000), null, 1, 6999);
+        saleIndex.load(List.of(copy(offer), other));
+        final CachingNodeRepository underTestRepository = new CachingNodeRepository(nodeRepository, nodeCache, saleIndex);
+        final Date date = new Date(offer.getDate().getTime() + 10000);
+        final List<UUID> pagedIdList = new ArrayList<>();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            final List<Node> first = underTestRepository.findSaleNodeList(date, null, 1);
+            first.forEach(node -> pagedIdList.add(node.getId()));
+            saleIndex.putAll(List.of(new Node(offer.getId(), NodeType.OFFER, "jPhone 13", category.getId(), category.getId(),
+                    69999, new Date(offer.getDate().getTime() + 2000), null, 1, 69999)));
+            Node after = first.get(0);
+            List<Node> page;
+            do {
+                page = underTestRepository.findSaleNodeList(date, after, 1);
+                page.forEach(node -> pagedIdList.add(node.getId()));
+                if (!page.isEmpty()) after = page.get(0);
+            } while (!page.isEmpty());
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(pagedIdList).containsExactly(offer.getId(), other.getId());
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+        assertThat(underTestRepository.findSaleNodeList(date, other, 1)).extracting(Node::getId).containsExactly(offer.getId());
+    }
+
+    @Test
+    void evictOverMaxSize() {
+        nodeCache = new NodeCache(2);
+        underTestRepository = new CachingNodeRepository(nodeRepository, nodeCache);
+        given(nodeRepository.findDepthNodeById(root.getId())).willReturn(tree());
+
+        underTestRepository.findDepthNodeById(root.getId());
+
+        assertThat(nodeCache.getSize()).isEqualTo(2);
+        assertThat(nodeCache.getEvictionCount()).isEqualTo(1);
+    }
+}
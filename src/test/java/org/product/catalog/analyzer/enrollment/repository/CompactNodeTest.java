@@ -0,0 +1,37 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.junit.jupiter.api.Test;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactNodeTest {
+
+    @Test
+    void toNode() {
+        final UUID parentId = UUID.randomUUID();
+        final Node offer = new Node(UUID.randomUUID(), NodeType.OFFER, "jPhone 13", parentId, parentId, 79999, new Date(), null, 1, 79999);
+
+        final CompactNode compactNode = CompactNode.of(offer);
+
+        assertThat(compactNode.isCategory()).isFalse();
+        assertThat(compactNode.isChildOf(parentId)).isTrue();
+        assertThat(compactNode.toNode()).isEqualTo(offer);
+    }
+
+    @Test
+    void toNodeWithoutNullableFields() {
+        final Node category = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Товары", null, null, null, null, null, 0, 0);
+
+        final CompactNode compactNode = CompactNode.of(category);
+
+        assertThat(compactNode.isCategory()).isTrue();
+        assertThat(compactNode.parentId()).isNull();
+        assertThat(compactNode.isChildOf(UUID.randomUUID())).isFalse();
+        assertThat(compactNode.toNode()).isEqualTo(category);
+    }
+}
@@ -0,0 +1,144 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddedNodeRepositoryTest extends AbstractNodeRepositoryTest {
+
+    @TempDir
+    Path directory;
+    EmbeddedNodeRepository repository;
+
+    private static EmbeddedNodeRepository open(Path directory, DataSize walSize) {
+        final EmbeddedNodeRepository result = new EmbeddedNodeRepository(directory.toString(), walSize, Duration.ZERO, false,
+                new RepositoryMetrics(new SimpleMeterRegistry()));
+        result.open();
+        return result;
+    }
+
+    @BeforeEach
+    @Override
+    public void setUp() {
+        repository = open(directory, DataSize.ofMegabytes(1));
+        underTestRepository = repository;
+        super.setUp();
+    }
+
+    @AfterEach
+    @Override
+    public void tearDown() {
+        super.tearDown();
+        repository.close();
+    }
+
+    @Test
+    void recoverFromWriteAheadLog() {
+        final Node expected = repository.findDepthNodeById(expectedNode.getId());
+
+        // the first repository is not closed, so the second one recovers as after a crash
+        final EmbeddedNodeRepository recovered = open(directory, DataSize.ofMegabytes(1));
+        try {
+            assertThat(recovered.findDepthNodeById(expectedNode.getId())).usingRecursiveComparison().ignoringCollectionOrder().isEqualTo(expected);
+            assertThat(recovered.findVersionById(tvCategoryId)).isEqualTo(repository.findVersionById(tvCategoryId));
+            assertThat(recovered.findStatisticNodeList(tvCategoryId, null, null)).hasSize(1);
+            assertThat(recovered.findLastChangeCursor()).isEqualTo(repository.findLastChangeCursor());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void recoverFromSnapshotAndWriteAheadLog() {
+        repository.snapshot();
+        final Node nokia = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", tvCategoryId, tvCategoryId,
+                9999, new Date(updateDate.getTime() + 60_000), null, 1, 9999);
+        repository.save(nokia);
+        final Node expected = repository.findDepthNodeById(expectedNode.getId());
+
+        final EmbeddedNodeRepository recovered = open(directory, DataSize.ofMegabytes(1));
+        try {
+            assertThat(recovered.findDepthNodeById(expectedNode.getId())).usingRecursiveComparison().ignoringCollectionOrder().isEqualTo(expected);
+            assertThat(recovered.findPlainNodeById(tvCategoryId).getOfferCount()).isEqualTo(4);
+            assertThat(recovered.findStatisticNodeList(tvCategoryId, null, null)).hasSize(2);
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void rollbackTransaction() {
+        final TransactionTemplate transaction = new TransactionTemplate(new EmbeddedTransactionManager());
+        final Node expected = repository.findDepthNodeById(expectedNode.getId());
+        final String tvVersion = repository.findVersionById(tvCategoryId);
+        final long cursor = repository.findLastChangeCursor();
+
+        assertThatThrownBy(() -> transaction.executeWithoutResult(status -> {
+            repository.updateAllParentAggregate(expectedNode.getId(), -139998, -2);
+            repository.deleteAllDescendantById(tvCategoryId);
+            repository.deleteNodeById(tvCategoryId);
+            repository.save(new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", smartphoneCategoryId,
+                    smartphoneCategoryId, 9999, new Date(), null, 1, 9999));
+            throw new IllegalStateException("Rollback");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(repository.findDepthNodeById(expectedNode.getId())).usingRecursiveComparison().ignoringCollectionOrder().isEqualTo(expected);
+        assertThat(repository.findVersionById(tvCategoryId)).isEqualTo(tvVersion);
+        assertThat(repository.findStatisticNodeList(tvCategoryId, null, null)).hasSize(1);
+        assertThat(repository.findChangeList(null, cursor, 100)).isEmpty();
+
+        transaction.executeWithoutResult(status -> repository.deleteNodeById(tvCategoryId));
+        final EmbeddedNodeRepository recovered = open(directory, DataSize.ofMegabytes(1));
+        try {
+            assertThat(recovered.findPlainNodeById(tvCategoryId)).isNull();
+            assertThat(recovered.findPlainNodeById(smartphoneCategoryId).getOfferCount()).isEqualTo(2);
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void snapshotWhenWriteAheadLogIsHalfFull() throws InterruptedException {
+        final Path small = directory.resolve("small");
+        final EmbeddedNodeRepository smallRepository = open(small, DataSize.ofKilobytes(8));
+        final Node category = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Телефоны", null, null,
+                null, updateDate, new ArrayList<>(), 0, 0);
+        smallRepository.save(category);
+        final List<Node> offers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final Node offer = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 33" + i, category.getId(), category.getId(),
+                    1000 + i, new Date(updateDate.getTime() + i), null, 1, 1000 + i);
+            smallRepository.save(offer);
+            offers.add(offer);
+        }
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(small.resolve("catalog.snapshot")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(small.resolve("catalog.snapshot")).exists();
+        smallRepository.close();
+
+        final EmbeddedNodeRepository recovered = open(small, DataSize.ofKilobytes(8));
+        assertThat(recovered.findDepthNodeById(category.getId()).getChildren()).hasSize(offers.size());
+        assertThat(recovered.findPlainNodeById(category.getId()).getOfferCount()).isEqualTo(offers.size());
+        recovered.close();
+    }
+}
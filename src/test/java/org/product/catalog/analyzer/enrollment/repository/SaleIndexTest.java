@@ -0,0 +1,121 @@
+package org.product.catalog.analyzer.enrollment.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SaleIndexTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private final long now = 1_000_000 * HOUR;
+    private SaleIndex saleIndex;
+
+    @BeforeEach
+    void setUp() {
+        saleIndex = new SaleIndex(Duration.ofHours(48));
+    }
+
+    private static Node offer(UUID id, long date) {
+        return new Node(id, NodeType.OFFER, "jPhone 13", null, null, 79999, new Date(date), null, 1, 79999);
+    }
+
+    @Test
+    void findWithinWindow() {
+        final Node fresh = offer(UUID.randomUUID(), now);
+        final Node old = offer(UUID.randomUUID(), now - 30 * HOUR);
+        saleIndex.load(List.of(fresh, old));
+
+        assertThat(saleIndex.find(new Date(now))).extracting(Node::getId).containsExactly(fresh.getId());
+        assertThat(saleIndex.find(new Date(now - 10 * HOUR))).extracting(Node::getId).containsExactly(old.getId());
+        assertThat(saleIndex.find(new Date(now - 30 * HOUR))).isNull();
+        assertThat(saleIndex.getHitCount()).isEqualTo(2);
+        assertThat(saleIndex.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void putAllMovesAndEvicts() {
+        final Node first = offer(UUID.randomUUID(), now);
+        final Node second = offer(UUID.randomUUID(), now);
+        saleIndex.load(List.of(first, second));
+
+        saleIndex.putAll(List.of(offer(first.getId(), now + 20 * HOUR)));
+        assertThat(saleIndex.find(new Date(now))).extracting(Node::getId).containsExactly(second.getId());
+        assertThat(saleIndex.find(new Date(now + 20 * HOUR))).extracting(Node::getId)
+                .containsExactly(second.getId(), first.getId());
+
+        saleIndex.putAll(List.of(offer(UUID.randomUUID(), now + 60 * HOUR)));
+        assertThat(saleIndex.getSize()).isEqualTo(2);
+        assertThat(saleIndex.find(new Date(now))).isNull();
+
+        saleIndex.removeAll(List.of(first.getId()));
+        assertThat(saleIndex.find(new Date(now + 40 * HOUR))).isEmpty();
+    }
+
+    @Test
+    void findByPage() {
+        final Node first = offer(UUID.fromString("00000000-0000-0000-0000-000000000001"), now - HOUR);
+        final Node second = offer(UUID.fromString("00000000-0000-0000-0000-000000000002"), now);
+        final Node third = offer(UUID.fromString("f0000000-0000-0000-0000-000000000000"), now);
+        saleIndex.load(List.of(third, second, first));
+
+        final List<Node> page = saleIndex.find(new Date(now), null, 2);
+        assertThat(page).extracting(Node::getId).containsExactly(first.getId(), second.getId());
+        assertThat(saleIndex.find(new Date(now), page.get(1), 2)).extracting(Node::getId)
+                .containsExactly(third.getId());
+        assertThat(saleIndex.find(new Date(now), third, 2)).isEmpty();
+    }
+
+    @Test
+    void skipOutOfOrderChanges() {
+        final Node offer = offer(UUID.randomUUID(), now);
+        saleIndex.load(List.of(offer));
+
+        final long deleteVersion = saleIndex.nextVersion();
+        final long reimportVersion = saleIndex.nextVersion();
+        saleIndex.putAll(List.of(offer(offer.getId(), now + HOUR)), reimportVersion);
+        saleIndex.release(reimportVersion);
+        saleIndex.removeAll(List.of(offer.getId()), deleteVersion);
+        saleIndex.release(deleteVersion);
+        assertThat(saleIndex.find(new Date(now + HOUR))).extracting(Node::getDate).containsExactly(new Date(now + HOUR));
+
+        final long oldVersion = saleIndex.nextVersion();
+        final long newVersion = saleIndex.nextVersion();
+        saleIndex.removeAll(List.of(offer.getId()), newVersion);
+        saleIndex.release(newVersion);
+        saleIndex.putAll(List.of(offer(offer.getId(), now + 2 * HOUR)), oldVersion);
+        saleIndex.release(oldVersion);
+        assertThat(saleIndex.getSize()).isZero();
+    }
+
+    @Test
+    void evictOverMaxSize() {
+        saleIndex = new SaleIndex(Duration.ofHours(48), 2);
+        final Node first = offer(UUID.randomUUID(), now - 2 * HOUR);
+        final Node second = offer(UUID.randomUUID(), now - HOUR);
+        final Node third = offer(UUID.randomUUID(), now);
+        saleIndex.load(List.of(first, second, third));
+
+        assertThat(saleIndex.getSize()).isEqualTo(2);
+        assertThat(saleIndex.find(new Date(now))).isNull();
+        assertThat(saleIndex.find(new Date(now - HOUR + TimeUnit.HOURS.toMillis(24)))).extracting(Node::getId)
+                .containsExactly(second.getId(), third.getId());
+    }
+
+    @Test
+    void missBeforeLoad() {
+        saleIndex.putAll(List.of(offer(UUID.randomUUID(), now)));
+
+        assertThat(saleIndex.isLoaded()).isFalse();
+        assertThat(saleIndex.find(new Date(now))).isNull();
+        assertThat(saleIndex.getSize()).isZero();
+    }
+}
@@ -0,0 +1,150 @@
+package org.product.catalog.analyzer.enrollment.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+import org.product.catalog.analyzer.enrollment.validation.exception.ArgumentNotValidException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ImportCoordinatorTest {
+
+    @Mock
+    private NodeService nodeService;
+    private ImportCoordinator underTestCoordinator;
+
+    @AfterEach
+    void tearDown() {
+        if (underTestCoordinator != null) underTestCoordinator.stop();
+    }
+
+    @Test
+    void importsInWindowAreCommittedTogether() throws Exception {
+        start(500, 64);
+        given(nodeService.importAllNodes(anyList())).willAnswer(invocation -> noErrors(invocation.getArgument(0)));
+
+        final CompletableFuture<ArgumentNotValidException> first = importAsync(offers(1));
+        final CompletableFuture<ArgumentNotValidException> second = importAsync(offers(2));
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isNull();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isNull();
+
+        verify(nodeService, times(1)).importAllNodes(anyList());
+    }
+
+    @Test
+    void maxImportsFlushesBeforeWindowCloses() throws Exception {
+        start(60_000, 2);
+        given(nodeService.importAllNodes(anyList())).willAnswer(invocation -> noErrors(invocation.getArgument(0)));
+
+        final CompletableFuture<ArgumentNotValidException> first = importAsync(offers(1));
+        final CompletableFuture<ArgumentNotValidException> second = importAsync(offers(1));
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isNull();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isNull();
+
+        verify(nodeService, times(1)).importAllNodes(anyList());
+    }
+
+    @Test
+    void validationErrorIsRoutedToItsRequest() throws Exception {
+        start(500, 64);
+        final List<Node> valid = offers(1);
+        final List<Node> invalid = offers(1);
+        final ArgumentNotValidException error = new ArgumentNotValidException("Validation Failed");
+        given(nodeService.importAllNodes(anyList())).willAnswer(invocation -> {
+            final List<List<Node>> imports = invocation.getArgument(0);
+            return imports.stream().map(nodes -> nodes == invalid ? error : null).toList();
+        });
+
+        final CompletableFuture<ArgumentNotValidException> validResult = importAsync(valid);
+        final CompletableFuture<ArgumentNotValidException> invalidResult = importAsync(invalid);
+
+        assertThat(validResult.get(5, TimeUnit.SECONDS)).isNull();
+        assertThat(invalidResult.get(5, TimeUnit.SECONDS)).isSameAs(error);
+        verify(nodeService, times(1)).importAllNodes(anyList());
+    }
+
+    @Test
+    void stopFailsQueuedImports() throws Exception {
+        start(0, 1);
+        final CountDownLatch committing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        given(nodeService.importAllNodes(anyList())).willAnswer(invocation -> {
+            committing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return noErrors(invocation.getArgument(0));
+        });
+
+        final CompletableFuture<ArgumentNotValidException> inFlight = importAsync(offers(1));
+        assertThat(committing.await(5, TimeUnit.SECONDS)).isTrue();
+        final CompletableFuture<ArgumentNotValidException> queued = importAsync(offers(1));
+        final BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(underTestCoordinator, "queue");
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.isEmpty() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+
+        underTestCoordinator.stop();
+        release.countDown();
+
+        assertThat(inFlight.get(5, TimeUnit.SECONDS)).isNull();
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> underTestCoordinator.importNodes(offers(1)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private void start(long windowMillis, int maxImports) {
+        underTestCoordinator = new ImportCoordinator(nodeService, windowMillis, maxImports, 5_000);
+        underTestCoordinator.start();
+    }
+
+    private CompletableFuture<ArgumentNotValidException> importAsync(List<Node> nodes) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                underTestCoordinator.importNodes(nodes);
+                return null;
+            } catch (ArgumentNotValidException e) {
+                return e;
+            }
+        });
+    }
+
+    private static List<ArgumentNotValidException> noErrors(List<List<Node>> imports) {
+        return imports.stream().map(nodes -> (ArgumentNotValidException) null).toList();
+    }
+
+    private static List<Node> offers(int count) {
+        final Date date = new Date();
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Node(UUID.randomUUID(), NodeType.OFFER, "offer " + i, null, null, 100, date, null, 0, 0))
+                .toList();
+    }
+}
@@ -12,12 +12,19 @@ import org.product.catalog.analyzer.enrollment.dto.NodeType;
 import org.product.catalog.analyzer.enrollment.repository.NodeRepository;
 import org.product.catalog.analyzer.enrollment.validation.exception.ArgumentNotValidException;
 import org.product.catalog.analyzer.enrollment.validation.exception.NotFindNodeException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @Slf4j
@@ -34,6 +41,22 @@ class NodeServiceImplTest {
     }
 
 
+    @Test
+    void findByIdStreaming() throws NotFindNodeException {
+        final UUID nokiaId = UUID.randomUUID();
+        final Consumer<Node> consumer = node -> {
+        };
+
+        given(nodeRepository.findDepthNodeById(nokiaId, consumer)).willReturn(1);
+        underTestService.findById(nokiaId, consumer);
+        verify(nodeRepository).findDepthNodeById(nokiaId, consumer);
+
+        final UUID unknownId = UUID.randomUUID();
+        given(nodeRepository.findDepthNodeById(unknownId, consumer)).willReturn(0);
+        assertThatThrownBy(() -> underTestService.findById(unknownId, consumer))
+                .isInstanceOf(NotFindNodeException.class);
+    }
+
     @Test
     void findById() throws NotFindNodeException {
         final UUID nokiaId = UUID.randomUUID();
@@ -97,6 +120,51 @@ class NodeServiceImplTest {
         verify(nodeRepository).saveAll(importNodeCaptorList.capture());
         List<Node> capturedNodeList = importNodeCaptorList.getValue();
         assertThat(capturedNodeList).isEqualTo(importNodeList);
+        verify(nodeRepository).findAllPlainNodeById(Set.of(phoneCategory.getId(), nokia.getId()));
+        verify(nodeRepository, never()).findPlainNodeById(any());
+    }
+
+    @Test
+    void importNodesLockRoots() throws ArgumentNotValidException {
+        final UUID rootId = UUID.randomUUID();
+        final UUID movedRootId = UUID.randomUUID();
+        final Node nokia = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", null, null, 69999, new Date(), null, 0, 0);
+        given(nodeRepository.lockAllRootById(Set.of(nokia.getId())))
+                .willReturn(Set.of(rootId), Set.of(rootId, movedRootId), Set.of(rootId, movedRootId));
+
+        underTestService.importNodes(List.of(nokia));
+        verify(nodeRepository, times(3)).lockAllRootById(Set.of(nokia.getId()));
+        verify(nodeRepository, never()).lockAll();
+
+        ReflectionTestUtils.setField(underTestService, "importLock", NodeServiceImpl.ImportLock.GLOBAL);
+        underTestService.importNodes(List.of(nokia));
+        verify(nodeRepository).lockAll();
+        verify(nodeRepository, times(3)).lockAllRootById(anyCollection());
+    }
+
+    @Test
+    void importAllNodes() {
+        final Date updateDate = new Date();
+        final Node phoneCategory = new Node(UUID.randomUUID(), NodeType.CATEGORY, "Телефоны", null, null, null, updateDate, null, 0, 0);
+        final Node nokia = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", phoneCategory.getId(), null, 69999, updateDate, null, 0, 0);
+        final Node siemens = new Node(UUID.randomUUID(), NodeType.OFFER, "Siemens C35", phoneCategory.getId(), null, 29999, updateDate, null, 0, 0);
+        final Node broken = new Node(UUID.randomUUID(), NodeType.OFFER, "Alcatel", null, null, -1, updateDate, null, 0, 0);
+        final Node storedCategory = new Node(phoneCategory.getId(), NodeType.CATEGORY, "Телефоны", null, null, null, updateDate, null, 1, 69999);
+        given(nodeRepository.findAllPlainNodeById(anyCollection()))
+                .willReturn(List.of(), List.of(), List.of(storedCategory));
+
+        final List<ArgumentNotValidException> result = underTestService.importAllNodes(List.of(
+                List.of(phoneCategory, nokia),
+                List.of(siemens),
+                List.of(broken)));
+
+        ArgumentCaptor<List<Node>> importNodeCaptorList = ArgumentCaptor.forClass(List.class);
+        verify(nodeRepository, times(2)).saveAll(importNodeCaptorList.capture());
+        assertThat(importNodeCaptorList.getAllValues().get(0)).isEqualTo(List.of(phoneCategory, nokia));
+        assertThat(importNodeCaptorList.getAllValues().get(1)).isEqualTo(List.of(siemens));
+        assertThat(result.get(0)).isNull();
+        assertThat(result.get(1)).isNull();
+        assertThat(result.get(2)).isInstanceOf(ArgumentNotValidException.class);
     }
 
     @Test
@@ -219,9 +287,9 @@ class NodeServiceImplTest {
                 69999);
         List<Node> importNodeList = Arrays.asList(phoneCategory, nokia);
 
-        given(nodeRepository.findPlainNodeById(phoneCategory.getId()))
-                .willReturn(new Node(
-                        UUID.randomUUID(),
+        given(nodeRepository.findAllPlainNodeById(anyCollection()))
+                .willReturn(List.of(new Node(
+                        phoneCategory.getId(),
                         NodeType.OFFER,
                         "Телефоны",
                         null,
@@ -230,7 +298,7 @@ class NodeServiceImplTest {
                         new Date(),
                         new ArrayList<>(),
                         0,
-                        0));
+                        0)));
 
         assertThatThrownBy(() -> underTestService.importNodes(importNodeList))
                 .isInstanceOf(ArgumentNotValidException.class)
@@ -264,11 +332,8 @@ class NodeServiceImplTest {
                 69999);
         List<Node> importNodeList = Arrays.asList(phoneCategory, nokia);
 
-        given(nodeRepository.findPlainNodeById(phoneCategory.getId()))
-                .willReturn(null);
-
-        given(nodeRepository.findPlainNodeById(phoneCategory.getParentId()))
-                .willReturn(new Node(
+        given(nodeRepository.findAllPlainNodeById(anyCollection()))
+                .willReturn(List.of(new Node(
                         nokiaId,
                         NodeType.OFFER,
                         "Nokia 3310",
@@ -278,13 +343,47 @@ class NodeServiceImplTest {
                         phoneCategory.getDate(),
                         new ArrayList<>(),
                         1,
-                        69999));
+                        69999)));
 
         assertThatThrownBy(() -> underTestService.importNodes(importNodeList))
                 .isInstanceOf(ArgumentNotValidException.class)
                 .hasMessageContaining("Category with ID: " + phoneCategory.getParentId() + " is didn't find or node is not a category!");
     }
 
+    @Test
+    void willThrowWhenImportCategoriesFormCycle() {
+        final UUID firstId = UUID.randomUUID();
+        final UUID secondId = UUID.randomUUID();
+        final Date date = new Date();
+        final List<Node> importNodeList = Arrays.asList(
+                new Node(firstId, NodeType.CATEGORY, "Телефоны", secondId, secondId, null, date, new ArrayList<>(), 0, 0),
+                new Node(secondId, NodeType.CATEGORY, "Смартфоны", firstId, firstId, null, date, new ArrayList<>(), 0, 0));
+
+        assertThatThrownBy(() -> underTestService.importNodes(importNodeList))
+                .isInstanceOf(ArgumentNotValidException.class)
+                .hasMessageContaining("can't be an ancestor of itself!");
+        verify(nodeRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void willThrowWhenCategoryMovesUnderDescendant() {
+        final UUID rootId = UUID.randomUUID();
+        final UUID childId = UUID.randomUUID();
+        final Date date = new Date();
+        final Node root = new Node(rootId, NodeType.CATEGORY, "Товары", null, null, null, date, null, 0, 0);
+        final Node child = new Node(childId, NodeType.CATEGORY, "Телефоны", rootId, rootId, null, date, null, 0, 0);
+        final List<Node> importNodeList = List.of(
+                new Node(rootId, NodeType.CATEGORY, "Товары", childId, childId, null, date, new ArrayList<>(), 0, 0));
+
+        given(nodeRepository.findAllPlainNodeById(anyCollection())).willReturn(List.of(root, child));
+        given(nodeRepository.findAllParentNodeById(Set.of(childId))).willReturn(List.of(root, child));
+
+        assertThatThrownBy(() -> underTestService.importNodes(importNodeList))
+                .isInstanceOf(ArgumentNotValidException.class)
+                .hasMessageContaining("can't be an ancestor of itself!");
+        verify(nodeRepository, never()).saveAll(any());
+    }
+
     @Test
     void deleteById() throws NotFindNodeException {
         final UUID phoneCategoryId = UUID.randomUUID();
@@ -312,6 +411,22 @@ class NodeServiceImplTest {
 
         assertThat(underTestService.deleteById(phoneCategoryId))
                 .isEqualTo(ancestorCount + descendantCount);
+        verify(nodeRepository).updateAllParentAggregate(null, 0, 0);
+    }
+
+    @Test
+    void deleteByIdNotifyChanged() throws NotFindNodeException {
+        final UUID phoneCategoryId = UUID.randomUUID();
+        given(nodeRepository.findPlainNodeById(phoneCategoryId))
+                .willReturn(new Node(phoneCategoryId, NodeType.CATEGORY, "Телефоны", null, null, null, new Date(), new ArrayList<>(), 0, 0));
+
+        ReflectionTestUtils.setField(underTestService, "invalidation", false);
+        underTestService.deleteById(phoneCategoryId);
+        verify(nodeRepository, never()).notifyAllChanged(anyCollection(), anyBoolean());
+
+        ReflectionTestUtils.setField(underTestService, "invalidation", true);
+        underTestService.deleteById(phoneCategoryId);
+        verify(nodeRepository).notifyAllChanged(List.of(phoneCategoryId), true);
     }
 
     @Test
@@ -326,4 +441,59 @@ class NodeServiceImplTest {
                 .isInstanceOf(NotFindNodeException.class)
                 .hasMessageContaining("Node with id: " + nokiaId + " didn't find!");
     }
-}
\ No newline at end of file
+
+    @Test
+    void findStatisticList() throws NotFindNodeException, ArgumentNotValidException {
+        final UUID nokiaId = UUID.randomUUID();
+        final Date dateStart = new Date(0);
+        final Date dateEnd = new Date();
+
+        given(nodeRepository.findPlainNodeById(nokiaId))
+                .willReturn(new Node(
+                        nokiaId,
+                        NodeType.OFFER,
+                        "Nokia 3310",
+                        null,
+                        null,
+                        69999,
+                        dateEnd,
+                        null,
+                        1,
+                        69999));
+
+        underTestService.findStatisticList(nokiaId, dateStart, dateEnd);
+        verify(nodeRepository).findStatisticNodeList(nokiaId, dateStart, dateEnd);
+    }
+
+    @Test
+    void findStatisticThrowWhenNotFound() {
+        final UUID nokiaId = UUID.randomUUID();
+
+        given(nodeRepository.findPlainNodeById(nokiaId))
+                .willReturn(null);
+
+        assertThatThrownBy(() -> underTestService.findStatisticList(nokiaId, null, null))
+                .isInstanceOf(NotFindNodeException.class)
+                .hasMessageContaining("Node with id: " + nokiaId + " didn't find!");
+    }
+
+    @Test
+    void findStatisticThrowWhenDateStartAfterDateEnd() {
+        assertThatThrownBy(() -> underTestService.findStatisticList(UUID.randomUUID(), new Date(), new Date(0)))
+                .isInstanceOf(ArgumentNotValidException.class);
+    }
+
+    @Test
+    void findSaleList() {
+        final Date date = new Date();
+        final Node first = new Node(UUID.randomUUID(), NodeType.OFFER, "jPhone 13", null, null, 79999, date, null, 1, 79999);
+        final Node second = new Node(UUID.randomUUID(), NodeType.OFFER, "Nokia 3310", null, null, 6999, date, null, 1, 6999);
+        given(nodeRepository.findSaleNodeList(date, null, 1)).willReturn(List.of(first));
+        given(nodeRepository.findSaleNodeList(date, first, 1)).willReturn(List.of(second));
+        given(nodeRepository.findSaleNodeList(date, second, 1)).willReturn(List.of());
+        final List<Node> result = new ArrayList<>();
+
+        underTestService.findSaleList(date, 1, result::addAll);
+        assertThat(result).isEqualTo(List.of(first, second));
+    }
+}
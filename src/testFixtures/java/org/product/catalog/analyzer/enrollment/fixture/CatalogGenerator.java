@@ -0,0 +1,206 @@
+package org.product.catalog.analyzer.enrollment.fixture;
+
+import org.product.catalog.analyzer.enrollment.dto.Node;
+import org.product.catalog.analyzer.enrollment.dto.NodeType;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Генератор синтетического каталога для нагрузочного теста и бенчмарков.
+ * Каталог задаётся формой, глубиной, шириной и количеством товаров:
+ * <ul>
+ *     <li>{@code chain} - цепочка из {@code depth} вложенных категорий, товары распределены по всем уровням цепочки;</li>
+ *     <li>{@code wide} - дерево категорий глубины {@code depth}, у каждой категории {@code fanOut} подкатегорий,
+ *     товары распределены по категориям последнего уровня.</li>
+ * </ul>
+ * Хранятся только идентификаторы узлов, элементы импорта строятся по мере отправки,
+ * поэтому каталог из миллионов товаров не требует их одновременного хранения в памяти.
+ * Для бенчмарков каталог можно получить целиком списком узлов или деревом.
+ *
+ * @author Stepanenko Stanislav
+ */
+public class CatalogGenerator {
+
+    private final List<UUID> categoryIds = new ArrayList<>();
+    private final List<UUID> categoryParentIds = new ArrayList<>();
+    private final List<UUID> leafCategoryIds = new ArrayList<>();
+    private final UUID[] offerIds;
+    private final Random random;
+
+    public CatalogGenerator(String shape, int depth, int fanOut, int offers, long seed) {
+        this.random = new Random(seed);
+        switch (shape) {
+            case "chain" -> generateChain(depth);
+            case "wide" -> generateWide(depth, fanOut);
+            default -> throw new IllegalArgumentException("Unknown catalog shape: " + shape);
+        }
+        offerIds = new UUID[offers];
+        for (int i = 0; i < offers; i++) offerIds[i] = UUID.randomUUID();
+    }
+
+    /**
+     * Каталог формы {@code wide}, у каждой категории последнего уровня {@code fanOut} товаров.
+     *
+     * @param depth  - количество уровней категорий над товарами.
+     * @param fanOut - количество потомков каждой категории.
+     * @return генератор каталога.
+     */
+    public static CatalogGenerator wide(int depth, int fanOut) {
+        return new CatalogGenerator("wide", depth, fanOut, (int) Math.pow(fanOut, depth), depth * 31L + fanOut);
+    }
+
+    private void generateChain(int depth) {
+        UUID parentId = null;
+        for (int i = 0; i < depth; i++) {
+            final UUID id = UUID.randomUUID();
+            addCategory(id, parentId);
+            leafCategoryIds.add(id);
+            parentId = id;
+        }
+    }
+
+    private void generateWide(int depth, int fanOut) {
+        List<UUID> level = List.of(UUID.randomUUID());
+        addCategory(level.get(0), null);
+        for (int i = 1; i < depth; i++) {
+            final List<UUID> nextLevel = new ArrayList<>(level.size() * fanOut);
+            for (UUID parentId : level) {
+                for (int j = 0; j < fanOut; j++) {
+                    final UUID id = UUID.randomUUID();
+                    addCategory(id, parentId);
+                    nextLevel.add(id);
+                }
+            }
+            level = nextLevel;
+        }
+        leafCategoryIds.addAll(level);
+    }
+
+    private void addCategory(UUID id, UUID parentId) {
+        categoryIds.add(id);
+        categoryParentIds.add(parentId);
+    }
+
+    public UUID getRootId() {
+        return categoryIds.get(0);
+    }
+
+    public List<UUID> getCategoryIds() {
+        return categoryIds;
+    }
+
+    public int getOfferCount() {
+        return offerIds.length;
+    }
+
+    public UUID getOfferId(int index) {
+        return offerIds[index];
+    }
+
+    /**
+     * Передача всего каталога пачками элементов импорта, категории передаются раньше товаров,
+     * родительские категории раньше дочерних.
+     *
+     * @param batchSize - максимальный размер пачки.
+     * @param consumer  - обработчик пачки элементов импорта.
+     */
+    public void forEachBatch(int batchSize, Consumer<List<Map<String, Object>>> consumer) {
+        List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < categoryIds.size(); i++) {
+            batch.add(item(categoryIds.get(i), NodeType.CATEGORY, "Категория " + i, categoryParentIds.get(i), null));
+            if (batch.size() == batchSize) {
+                consumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        for (int i = 0; i < offerIds.length; i++) {
+            batch.add(offer(i));
+            if (batch.size() == batchSize) {
+                consumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) consumer.accept(batch);
+    }
+
+    /**
+     * Элемент импорта товара с новой случайной ценой и прежним родителем.
+     *
+     * @param index - порядковый номер товара.
+     * @return элемент импорта.
+     */
+    public Map<String, Object> offer(int index) {
+        return item(offerIds[index], NodeType.OFFER, "Товар " + index, offerParentId(index), price());
+    }
+
+    /**
+     * Весь каталог списком узлов для импорта, родители в списке всегда предшествуют потомкам.
+     * Первый элемент списка корневая категория.
+     *
+     * @param date - дата обновления узлов.
+     * @return список узлов каталога.
+     */
+    public List<Node> nodes(Date date) {
+        final List<Node> result = new ArrayList<>(categoryIds.size() + offerIds.length);
+        for (int i = 0; i < categoryIds.size(); i++) {
+            result.add(new Node(categoryIds.get(i), NodeType.CATEGORY, "Категория " + i, categoryParentIds.get(i), null, null, date, null, 0, 0));
+        }
+        for (int i = 0; i < offerIds.length; i++) {
+            result.add(new Node(offerIds[i], NodeType.OFFER, "Товар " + i, offerParentId(i), null, price(), date, null, 0, 0));
+        }
+        return result;
+    }
+
+    /**
+     * Весь каталог деревом со связанными потомками и вычисленными средними ценами категорий,
+     * в том виде, в котором оно возвращается методом получения узла.
+     *
+     * @param date - дата обновления узлов.
+     * @return корневая категория со всеми потомками.
+     */
+    public Node tree(Date date) {
+        final List<Node> nodes = nodes(date);
+        final Map<UUID, Node> nodeMap = new HashMap<>(nodes.size() * 2);
+        for (Node node : nodes) {
+            if (NodeType.CATEGORY.equals(node.getType())) node.setChildren(new ArrayList<>());
+            nodeMap.put(node.getId(), node);
+            if (node.getParentId() != null) nodeMap.get(node.getParentId()).getChildren().add(node);
+        }
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            final Node node = nodes.get(i);
+            if (NodeType.OFFER.equals(node.getType())) {
+                node.setSum(node.getPrice());
+                node.setOfferCount(1);
+            } else if (node.getOfferCount() != 0) {
+                node.setPrice((int) (node.getSum() / node.getOfferCount()));
+            }
+            if (node.getParentId() != null) {
+                final Node parent = nodeMap.get(node.getParentId());
+                parent.setSum(parent.getSum() + node.getSum());
+                parent.setOfferCount(parent.getOfferCount() + node.getOfferCount());
+            }
+        }
+        return nodes.get(0);
+    }
+
+    private UUID offerParentId(int index) {
+        return leafCategoryIds.get(index % leafCategoryIds.size());
+    }
+
+    private int price() {
+        synchronized (random) {
+            return random.nextInt(100000);
+        }
+    }
+
+    private static Map<String, Object> item(UUID id, String type, String name, UUID parentId, Integer price) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", id);
+        result.put("type", type);
+        result.put("name", name);
+        result.put("parentId", parentId);
+        result.put("price", price);
+        return result;
+    }
+}